@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/*
+    Compares WeatherProvider.bulkInsert, which binds every row to one compiled statement, with
+    the db.insert per row loop it replaced.  The timings are logged; the row counts of both
+    paths have to be identical.
+ */
+public class TestBulkInsertPerformance extends AndroidTestCase {
+    public static final String LOG_TAG = TestBulkInsertPerformance.class.getSimpleName();
+
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // Through the provider, which keeps its database open, so both paths write to the
+        // same file
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+    }
+
+    public void testBulkInsert14Rows() {
+        compareBulkInsert(14);
+    }
+
+    public void testBulkInsert1000Rows() {
+        compareBulkInsert(1000);
+    }
+
+    // A deployment that keeps its history around for a long time
+    public void testBulkInsert100000Rows() {
+        compareBulkInsert(100000);
+    }
+
+    private void compareBulkInsert(int rows) {
+        long locationRowId = insertLocation();
+
+        ContentValues[] values = createWeatherValues(locationRowId, rows);
+        long start = SystemClock.elapsedRealtime();
+        int legacyCount = insertRowByRow(values);
+        long legacyMillis = SystemClock.elapsedRealtime() - start;
+
+        deleteWeather();
+
+        values = createWeatherValues(locationRowId, rows);
+        start = SystemClock.elapsedRealtime();
+        int compiledCount = mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, values);
+        long compiledMillis = SystemClock.elapsedRealtime() - start;
+
+        Log.i(LOG_TAG, rows + " rows: db.insert per row " + legacyMillis + " ms, "
+                + "compiled statement " + compiledMillis + " ms");
+
+        assertEquals(rows, legacyCount);
+        assertEquals(legacyCount, compiledCount);
+    }
+
+    /**
+     * How WeatherProvider.bulkInsert used to write the rows.
+     */
+    private int insertRowByRow(ContentValues[] values) {
+        WeatherDbHelper dbHelper = new WeatherDbHelper(mContext);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        int returnCount = 0;
+        db.beginTransaction();
+        try {
+            for (ContentValues value : values) {
+                long dateValue = value.getAsLong(WeatherEntry.COLUMN_DATE);
+                value.put(WeatherEntry.COLUMN_DATE, WeatherContract.normalizeDate(dateValue));
+                long _id = db.insert(WeatherEntry.TABLE_NAME, null, value);
+                if (_id != -1) {
+                    returnCount++;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        dbHelper.close();
+        return returnCount;
+    }
+
+    private long insertLocation() {
+        Uri locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI,
+                TestUtilities.createNorthPoleLocationValues());
+        return ContentUris.parseId(locationUri);
+    }
+
+    private void deleteWeather() {
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+    }
+
+    private static ContentValues[] createWeatherValues(long locationRowId, int rows) {
+        ContentValues[] values = new ContentValues[rows];
+        long date = TestUtilities.TEST_DATE;
+        for (int i = 0; i < rows; i++, date += DAY_IN_MILLIS) {
+            ContentValues weatherValues = TestUtilities.createWeatherValues(locationRowId);
+            weatherValues.put(WeatherEntry.COLUMN_DATE, date);
+            values[i] = weatherValues;
+        }
+        return values;
+    }
+}
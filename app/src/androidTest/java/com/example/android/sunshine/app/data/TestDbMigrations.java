@@ -0,0 +1,173 @@
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+    Builds a database with the schema of every version WeatherDbMigrations migrates from, fills
+    it, and opens it with WeatherDbHelper.  The rows have to survive, and the schema has to end
+    up the same as a new database's.
+ */
+public class TestDbMigrations extends AndroidTestCase {
+
+    // The schema of every version since OLDEST_MIGRATED_VERSION, as WeatherDbHelper.onCreate
+    // created it.  Never change these; when the schema changes, add the one being replaced.
+    private static final String[][] HISTORICAL_SCHEMAS = {
+            // Version 2
+            {
+                    "CREATE TABLE location (_id INTEGER PRIMARY KEY,location_setting TEXT UNIQUE " +
+                            "NOT NULL, city_name TEXT NOT NULL, coord_lat REAL NOT NULL, " +
+                            "coord_long REAL NOT NULL  );",
+                    "CREATE TABLE weather (_id INTEGER PRIMARY KEY AUTOINCREMENT,location_id " +
+                            "INTEGER NOT NULL, date INTEGER NOT NULL, short_desc TEXT NOT NULL, " +
+                            "weather_id INTEGER NOT NULL,min REAL NOT NULL, max REAL NOT NULL, " +
+                            "humidity REAL NOT NULL, pressure REAL NOT NULL, wind REAL NOT NULL, " +
+                            "degrees REAL NOT NULL,  FOREIGN KEY (location_id) REFERENCES " +
+                            "location (_id),  UNIQUE (date, location_id) ON CONFLICT REPLACE);"
+            },
+            // Version 3
+            {
+                    "CREATE TABLE location (_id INTEGER PRIMARY KEY,location_setting TEXT UNIQUE " +
+                            "NOT NULL, city_name TEXT NOT NULL, coord_lat REAL NOT NULL, " +
+                            "coord_long REAL NOT NULL  );",
+                    "CREATE TABLE weather (_id INTEGER PRIMARY KEY AUTOINCREMENT,location_id " +
+                            "INTEGER NOT NULL, date INTEGER NOT NULL, short_desc TEXT NOT NULL, " +
+                            "weather_id INTEGER NOT NULL,min REAL NOT NULL, max REAL NOT NULL, " +
+                            "humidity REAL NOT NULL, pressure REAL NOT NULL, wind REAL NOT NULL, " +
+                            "degrees REAL NOT NULL,  FOREIGN KEY (location_id) REFERENCES " +
+                            "location (_id),  UNIQUE (date, location_id) ON CONFLICT REPLACE);",
+                    "CREATE INDEX IF NOT EXISTS weather_location_date ON weather (location_id, " +
+                            "date);"
+            }
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+        super.tearDown();
+    }
+
+    public void testEveryVersionHasASchema() {
+        assertEquals("Error: Add the schema of the version being replaced",
+                WeatherDbHelper.DATABASE_VERSION - WeatherDbMigrations.OLDEST_MIGRATED_VERSION,
+                HISTORICAL_SCHEMAS.length);
+    }
+
+    public void testMigratesFromEveryVersion() {
+        List<String> expectedSchema = describeNewSchema();
+        for (int i = 0; i < HISTORICAL_SCHEMAS.length; i++) {
+            int version = WeatherDbMigrations.OLDEST_MIGRATED_VERSION + i;
+            mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+            SQLiteDatabase db = createDatabase(version, HISTORICAL_SCHEMAS[i]);
+            long locationRowId = db.insert(LocationEntry.TABLE_NAME, null,
+                    TestUtilities.createNorthPoleLocationValues());
+            ContentValues weatherValues = TestUtilities.createWeatherValues(locationRowId);
+            db.insert(WeatherEntry.TABLE_NAME, null, weatherValues);
+            db.close();
+
+            WeatherDbHelper dbHelper = new WeatherDbHelper(mContext);
+            db = dbHelper.getReadableDatabase();
+            assertEquals(WeatherDbHelper.DATABASE_VERSION, db.getVersion());
+            assertEquals("Error: The schema migrated from version " + version
+                    + " differs from a new one", expectedSchema, describeSchema(db));
+
+            TestUtilities.validateCursor("Error: Location lost migrating from version " + version,
+                    db.query(LocationEntry.TABLE_NAME, null, null, null, null, null, null),
+                    TestUtilities.createNorthPoleLocationValues());
+            TestUtilities.validateCursor("Error: Weather lost migrating from version " + version,
+                    db.query(WeatherEntry.TABLE_NAME, null, null, null, null, null, null),
+                    weatherValues);
+            dbHelper.close();
+        }
+    }
+
+    public void testDiscardsVersionsTooOldToMigrate() {
+        List<String> expectedSchema = describeNewSchema();
+        mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+        SQLiteDatabase db = createDatabase(WeatherDbMigrations.OLDEST_MIGRATED_VERSION - 1,
+                new String[]{"CREATE TABLE weather (_id INTEGER PRIMARY KEY, forecast TEXT);"});
+        db.execSQL("INSERT INTO weather (forecast) VALUES ('Asteroids')");
+        db.close();
+
+        WeatherDbHelper dbHelper = new WeatherDbHelper(mContext);
+        db = dbHelper.getReadableDatabase();
+        assertEquals(expectedSchema, describeSchema(db));
+        Cursor cursor = db.query(WeatherEntry.TABLE_NAME, null, null, null, null, null, null);
+        assertEquals(0, cursor.getCount());
+        cursor.close();
+        dbHelper.close();
+    }
+
+    public void testMissingStepFails() {
+        SQLiteDatabase db = new WeatherDbHelper(mContext).getWritableDatabase();
+        try {
+            WeatherDbMigrations.migrate(db, WeatherDbHelper.DATABASE_VERSION,
+                    WeatherDbHelper.DATABASE_VERSION + 1);
+            fail("Error: Migrated to a version without a step");
+        } catch (IllegalStateException e) {
+            // Expected
+        } finally {
+            db.close();
+        }
+    }
+
+    private SQLiteDatabase createDatabase(int version, String[] schema) {
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(
+                mContext.getDatabasePath(WeatherDbHelper.DATABASE_NAME), null);
+        for (String sql : schema) {
+            db.execSQL(sql);
+        }
+        db.setVersion(version);
+        return db;
+    }
+
+    private List<String> describeNewSchema() {
+        mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+        WeatherDbHelper dbHelper = new WeatherDbHelper(mContext);
+        List<String> schema = describeSchema(dbHelper.getReadableDatabase());
+        dbHelper.close();
+        return schema;
+    }
+
+    /**
+     * @return every table, index and column, and what it is, sorted.
+     */
+    private static List<String> describeSchema(SQLiteDatabase db) {
+        List<String> schema = new ArrayList<>();
+        Cursor objects = db.rawQuery("SELECT type, name, tbl_name FROM sqlite_master WHERE "
+                + "name NOT IN ('android_metadata', 'sqlite_sequence')", null);
+        while (objects.moveToNext()) {
+            String type = objects.getString(0);
+            String name = objects.getString(1);
+            schema.add(type + " " + name + " on " + objects.getString(2));
+            Cursor columns = db.rawQuery("PRAGMA " + ("table".equals(type) ? "table_info"
+                    : "index_info") + "(" + name + ")", null);
+            while (columns.moveToNext()) {
+                StringBuilder column = new StringBuilder(name);
+                for (int i = 0; i < columns.getColumnCount(); i++) {
+                    column.append(' ').append(columns.getString(i));
+                }
+                schema.add(column.toString());
+            }
+            columns.close();
+        }
+        objects.close();
+        Collections.sort(schema);
+        return schema;
+    }
+}
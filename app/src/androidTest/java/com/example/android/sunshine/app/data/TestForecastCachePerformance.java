@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentProviderClient;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/*
+    Runs the query ForecastFragment's loader makes over and over, through WeatherProvider and
+    its snapshot cache, and as the SQL JOIN every query used to run.  The timings and the
+    cache's hit and miss counts are logged; both paths have to return the same rows.
+ */
+public class TestForecastCachePerformance extends AndroidTestCase {
+    public static final String LOG_TAG = TestForecastCachePerformance.class.getSimpleName();
+
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+    private static final int DAYS = 14;
+    private static final int QUERIES = 1000;
+
+    private static final String[] FORECAST_COLUMNS = {
+            WeatherEntry.TABLE_NAME + "." + WeatherEntry._ID,
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            LocationEntry.COLUMN_LOCATION_SETTING,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            LocationEntry.COLUMN_COORD_LAT,
+            LocationEntry.COLUMN_COORD_LONG
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+    }
+
+    public void testRepeatedForecastQueries() {
+        long locationRowId = insertForecast();
+        Uri uri = WeatherEntry.buildWeatherLocationWithStartDate(
+                TestUtilities.TEST_LOCATION, TestUtilities.TEST_DATE);
+        String sortOrder = WeatherEntry.COLUMN_DATE + " ASC";
+
+        WeatherDbHelper dbHelper = new WeatherDbHelper(mContext);
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        long start = SystemClock.elapsedRealtime();
+        int sqlRows = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            sqlRows += readAll(queryJoin(db, sortOrder));
+        }
+        long sqlMillis = SystemClock.elapsedRealtime() - start;
+
+        ContentProviderClient client =
+                mContext.getContentResolver().acquireContentProviderClient(uri);
+        ForecastSnapshotCache cache =
+                TestProvider.getLocalWeatherProvider(client).getForecastCache();
+        long hits = cache.getHits();
+        long misses = cache.getMisses();
+        start = SystemClock.elapsedRealtime();
+        int cachedRows = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            cachedRows += readAll(mContext.getContentResolver().query(
+                    uri, FORECAST_COLUMNS, null, null, sortOrder));
+        }
+        long cachedMillis = SystemClock.elapsedRealtime() - start;
+        hits = cache.getHits() - hits;
+        misses = cache.getMisses() - misses;
+        client.release();
+
+        Log.i(LOG_TAG, QUERIES + " queries of " + DAYS + " days: SQL join " + sqlMillis + " ms, "
+                + "snapshot cache " + cachedMillis + " ms, " + hits + " hits, "
+                + misses + " misses");
+
+        assertEquals(QUERIES * DAYS, sqlRows);
+        assertEquals(sqlRows, cachedRows);
+        assertEquals("Only the first query reads the database", 1, misses);
+        assertEquals(QUERIES - 1, hits);
+
+        // Same columns and values as SQLite returns them
+        Cursor expected = queryJoin(db, sortOrder);
+        Cursor cached = mContext.getContentResolver().query(
+                uri, FORECAST_COLUMNS, null, null, sortOrder);
+        assertEquals(expected.getCount(), cached.getCount());
+        while (expected.moveToNext() && cached.moveToNext()) {
+            for (int i = 0; i < FORECAST_COLUMNS.length; i++) {
+                assertEquals(expected.getColumnName(i), cached.getColumnName(i));
+                assertEquals(expected.getString(i), cached.getString(i));
+            }
+        }
+        expected.close();
+        cached.close();
+        dbHelper.close();
+
+        // A write is seen by the next query
+        ContentValues values = TestUtilities.createWeatherValues(locationRowId);
+        values.put(WeatherEntry.COLUMN_DATE, TestUtilities.TEST_DATE + DAYS * DAY_IN_MILLIS);
+        mContext.getContentResolver().insert(WeatherEntry.CONTENT_URI, values);
+        assertEquals(DAYS + 1, readAll(mContext.getContentResolver().query(
+                uri, FORECAST_COLUMNS, null, null, sortOrder)));
+    }
+
+    /**
+     * The query WeatherProvider ran for every location query before the cache.
+     */
+    private static Cursor queryJoin(SQLiteDatabase db, String sortOrder) {
+        SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
+        builder.setTables(WeatherEntry.TABLE_NAME + " INNER JOIN " + LocationEntry.TABLE_NAME
+                + " ON " + WeatherEntry.TABLE_NAME + "." + WeatherEntry.COLUMN_LOC_KEY
+                + " = " + LocationEntry.TABLE_NAME + "." + LocationEntry._ID);
+        return builder.query(db, FORECAST_COLUMNS,
+                LocationEntry.TABLE_NAME + "." + LocationEntry.COLUMN_LOCATION_SETTING
+                        + " = ? AND " + WeatherEntry.COLUMN_DATE + " >= ? ",
+                new String[]{TestUtilities.TEST_LOCATION,
+                        Long.toString(WeatherContract.normalizeDate(TestUtilities.TEST_DATE))},
+                null, null, sortOrder);
+    }
+
+    private static int readAll(Cursor cursor) {
+        int rows = 0;
+        while (cursor.moveToNext()) {
+            cursor.getLong(0);
+            cursor.getString(2);
+            cursor.getDouble(3);
+            rows++;
+        }
+        cursor.close();
+        return rows;
+    }
+
+    private long insertForecast() {
+        Uri locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI,
+                TestUtilities.createNorthPoleLocationValues());
+        long locationRowId = ContentUris.parseId(locationUri);
+        ContentValues[] values = new ContentValues[DAYS];
+        long date = TestUtilities.TEST_DATE;
+        for (int i = 0; i < DAYS; i++, date += DAY_IN_MILLIS) {
+            values[i] = TestUtilities.createWeatherValues(locationRowId);
+            values[i].put(WeatherEntry.COLUMN_DATE, date);
+        }
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, values);
+        return locationRowId;
+    }
+}
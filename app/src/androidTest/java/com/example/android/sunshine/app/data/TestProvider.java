@@ -16,6 +16,7 @@
 package com.example.android.sunshine.app.data;
 
 import android.content.ComponentName;
+import android.content.ContentProviderClient;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.pm.PackageManager;
@@ -28,7 +29,12 @@ import android.test.AndroidTestCase;
 import android.util.Log;
 
 import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.SyncHistoryEntry;
 import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.core.ForecastBatch;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /*
     Note: This is not a complete set of tests of the Sunshine ContentProvider, but it does test
@@ -160,6 +166,12 @@ public class TestProvider extends AndroidTestCase {
         // vnd.android.cursor.dir/com.example.android.sunshine.app/location
         assertEquals("Error: the LocationEntry CONTENT_URI should return LocationEntry.CONTENT_TYPE",
                 LocationEntry.CONTENT_TYPE, type);
+
+        // content://com.example.android.sunshine.app/sync_history/
+        type = mContext.getContentResolver().getType(SyncHistoryEntry.CONTENT_URI);
+        // vnd.android.cursor.dir/com.example.android.sunshine.app/sync_history
+        assertEquals("Error: the SyncHistoryEntry CONTENT_URI should return SyncHistoryEntry.CONTENT_TYPE",
+                SyncHistoryEntry.CONTENT_TYPE, type);
     }
 
 
@@ -512,4 +524,222 @@ public class TestProvider extends AndroidTestCase {
         }
         cursor.close();
     }
+
+    static ForecastBatch createBulkInsertForecastBatch(long locationRowId) {
+        ContentValues[] values = createBulkInsertWeatherValues(locationRowId);
+        ForecastBatch batch = new ForecastBatch(values.length);
+        batch.setLocationId(locationRowId);
+        for (ContentValues value : values) {
+            batch.add(value.getAsLong(WeatherEntry.COLUMN_DATE),
+                    value.getAsInteger(WeatherEntry.COLUMN_WEATHER_ID),
+                    value.getAsString(WeatherEntry.COLUMN_SHORT_DESC),
+                    value.getAsDouble(WeatherEntry.COLUMN_MIN_TEMP),
+                    value.getAsDouble(WeatherEntry.COLUMN_MAX_TEMP),
+                    value.getAsDouble(WeatherEntry.COLUMN_HUMIDITY).intValue(),
+                    value.getAsDouble(WeatherEntry.COLUMN_PRESSURE),
+                    value.getAsDouble(WeatherEntry.COLUMN_WIND_SPEED),
+                    value.getAsDouble(WeatherEntry.COLUMN_DEGREES));
+        }
+        return batch;
+    }
+
+    static WeatherProvider getLocalWeatherProvider(ContentProviderClient client) {
+        return (WeatherProvider) client.getLocalContentProvider();
+    }
+
+    /*
+        The sync adapter writes through WeatherProvider.writeForecast(ForecastBatch), make sure it
+        stores the same rows and notifies the same observers as the ContentValues path.
+     */
+    public void testWriteForecastBatch() {
+        ContentValues testValues = TestUtilities.createNorthPoleLocationValues();
+        Uri locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, testValues);
+        long locationRowId = ContentUris.parseId(locationUri);
+
+        ForecastBatch batch = createBulkInsertForecastBatch(locationRowId);
+
+        TestUtilities.TestContentObserver weatherObserver = TestUtilities.getTestContentObserver();
+        mContext.getContentResolver().registerContentObserver(WeatherEntry.CONTENT_URI, true, weatherObserver);
+
+        ContentProviderClient client =
+                mContext.getContentResolver().acquireContentProviderClient(WeatherEntry.CONTENT_URI);
+        int insertCount = getLocalWeatherProvider(client).writeForecast(batch);
+        client.release();
+
+        weatherObserver.waitForNotificationOrFail();
+        mContext.getContentResolver().unregisterContentObserver(weatherObserver);
+
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, insertCount);
+
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherEntry.CONTENT_URI,
+                null,
+                null,
+                null,
+                WeatherEntry.COLUMN_DATE + " ASC"
+        );
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, cursor.getCount());
+
+        ContentValues[] expectedValues = createBulkInsertWeatherValues(locationRowId);
+        cursor.moveToFirst();
+        for (int i = 0; i < BULK_INSERT_RECORDS_TO_INSERT; i++, cursor.moveToNext()) {
+            // humidity is an int in the batch
+            expectedValues[i].put(WeatherEntry.COLUMN_HUMIDITY, (double) batch.getHumidity(i));
+            expectedValues[i].put(WeatherEntry.COLUMN_DATE,
+                    WeatherContract.normalizeDate(batch.getDate(i)));
+            TestUtilities.validateCurrentRecord("testWriteForecastBatch.  Error validating WeatherEntry " + i,
+                    cursor, expectedValues[i]);
+        }
+        cursor.close();
+    }
+
+    /*
+        Writing the same forecast again must not touch the database, and a changed day must be
+        updated in place, keeping its _ID.
+     */
+    public void testWriteForecastOnlyWritesChangedDays() {
+        ContentValues testValues = TestUtilities.createNorthPoleLocationValues();
+        Uri locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, testValues);
+        long locationRowId = ContentUris.parseId(locationUri);
+
+        ContentProviderClient client =
+                mContext.getContentResolver().acquireContentProviderClient(WeatherEntry.CONTENT_URI);
+        WeatherProvider provider = getLocalWeatherProvider(client);
+
+        ForecastBatch batch = createBulkInsertForecastBatch(locationRowId);
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, provider.writeForecast(batch));
+        assertEquals("Rewriting an identical forecast should not write any row",
+                0, provider.writeForecast(createBulkInsertForecastBatch(locationRowId)));
+
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherEntry.CONTENT_URI,
+                new String[]{WeatherEntry._ID},
+                null,
+                null,
+                WeatherEntry.COLUMN_DATE + " ASC"
+        );
+        assertTrue(cursor.moveToPosition(2));
+        long changedRowId = cursor.getLong(0);
+        cursor.close();
+
+        // Same forecast with a warmer third day
+        ForecastBatch changed = new ForecastBatch();
+        changed.setLocationId(locationRowId);
+        for (int i = 0; i < batch.size(); i++) {
+            changed.add(batch.getDate(i), batch.getWeatherId(i), batch.getShortDesc(i),
+                    batch.getMinTemp(i), batch.getMaxTemp(i) + (i == 2 ? 1 : 0),
+                    batch.getHumidity(i), batch.getPressure(i), batch.getWindSpeed(i),
+                    batch.getDegrees(i));
+        }
+        assertEquals("Only the changed day should be written", 1, provider.writeForecast(changed));
+        client.release();
+
+        cursor = mContext.getContentResolver().query(
+                WeatherEntry.CONTENT_URI,
+                new String[]{WeatherEntry._ID, WeatherEntry.COLUMN_MAX_TEMP},
+                null,
+                null,
+                WeatherEntry.COLUMN_DATE + " ASC"
+        );
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, cursor.getCount());
+        assertTrue(cursor.moveToPosition(2));
+        assertEquals("The changed day should keep its _ID", changedRowId, cursor.getLong(0));
+        assertEquals(batch.getMaxTemp(2) + 1, cursor.getDouble(1));
+        cursor.close();
+    }
+
+    /*
+        The sync adapter stores all its locations with one writeForecasts call.  Locations it
+        hasn't seen yet must be added, and observers notified once for the whole sync.
+     */
+    public void testWriteForecastsAddsLocations() {
+        ForecastBatch first = createBulkInsertForecastBatch(-1);
+        first.setLocationId(-1);
+        first.setLocation(TestUtilities.TEST_LOCATION, "North Pole", 64.7488, -147.353);
+        ForecastBatch second = createBulkInsertForecastBatch(-1);
+        second.setLocationId(-1);
+        second.setLocation("94043", "Mountain View", 37.4056, -122.0775);
+
+        TestUtilities.TestContentObserver weatherObserver = TestUtilities.getTestContentObserver();
+        mContext.getContentResolver().registerContentObserver(WeatherEntry.CONTENT_URI, true, weatherObserver);
+
+        ContentProviderClient client =
+                mContext.getContentResolver().acquireContentProviderClient(WeatherEntry.CONTENT_URI);
+        List<ForecastBatch> batches = new ArrayList<>();
+        batches.add(first);
+        batches.add(second);
+        int insertCount = getLocalWeatherProvider(client).writeForecasts(batches, Long.MIN_VALUE);
+        client.release();
+
+        weatherObserver.waitForNotificationOrFail();
+        mContext.getContentResolver().unregisterContentObserver(weatherObserver);
+
+        assertEquals(2 * BULK_INSERT_RECORDS_TO_INSERT, insertCount);
+        assertTrue(first.getLocationId() != -1);
+        assertTrue(second.getLocationId() != first.getLocationId());
+
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherEntry.buildWeatherLocation("94043"),
+                null,
+                null,
+                null,
+                null
+        );
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, cursor.getCount());
+        cursor.close();
+    }
+
+    static ContentValues createSyncHistoryValues(long startTime) {
+        ContentValues values = new ContentValues();
+        values.put(SyncHistoryEntry.COLUMN_START_TIME, startTime);
+        values.put(SyncHistoryEntry.COLUMN_TOTAL_MILLIS, 1200);
+        values.put(SyncHistoryEntry.COLUMN_FETCH_MILLIS, 900);
+        values.put(SyncHistoryEntry.COLUMN_PARSE_MILLIS, 150);
+        values.put(SyncHistoryEntry.COLUMN_WRITE_MILLIS, 40);
+        values.put(SyncHistoryEntry.COLUMN_WEARABLE_MILLIS, 2);
+        values.put(SyncHistoryEntry.COLUMN_WIDGETS_MILLIS, 1);
+        values.put(SyncHistoryEntry.COLUMN_MUZEI_MILLIS, 1);
+        values.put(SyncHistoryEntry.COLUMN_NOTIFY_MILLIS, 0);
+        values.put(SyncHistoryEntry.COLUMN_BYTES_RECEIVED, 6885);
+        values.put(SyncHistoryEntry.COLUMN_ROWS_WRITTEN, 14);
+        values.put(SyncHistoryEntry.COLUMN_LOCATIONS, 1);
+        values.put(SyncHistoryEntry.COLUMN_ALLOCATED_BYTES, 250000);
+        values.put(SyncHistoryEntry.COLUMN_NETWORK_TYPE, "MOBILE/LTE");
+        values.put(SyncHistoryEntry.COLUMN_STATUS, 0);
+        return values;
+    }
+
+    /*
+        The sync adapter adds a row per sync.  They are read back newest first, only the last
+        MAX_ROWS are kept, and writing them leaves the forecast alone.
+     */
+    public void testSyncHistory() {
+        ContentValues weatherValues = TestUtilities.createWeatherValues(
+                TestUtilities.insertNorthPoleLocationValues(mContext));
+        mContext.getContentResolver().insert(WeatherEntry.CONTENT_URI, weatherValues);
+
+        int syncs = SyncHistoryEntry.MAX_ROWS + 3;
+        ContentValues newest = null;
+        for (int i = 0; i < syncs; i++) {
+            newest = createSyncHistoryValues(1000L * i);
+            mContext.getContentResolver().insert(SyncHistoryEntry.CONTENT_URI, newest);
+        }
+
+        Cursor cursor = mContext.getContentResolver().query(
+                SyncHistoryEntry.CONTENT_URI, null, null, null, null);
+        assertEquals("Error: Only the most recent syncs should be kept",
+                SyncHistoryEntry.MAX_ROWS, cursor.getCount());
+        assertTrue(cursor.moveToFirst());
+        TestUtilities.validateCurrentRecord("testSyncHistory.  Error validating newest sync",
+                cursor, newest);
+        cursor.moveToLast();
+        assertEquals(1000L * (syncs - SyncHistoryEntry.MAX_ROWS),
+                cursor.getLong(cursor.getColumnIndex(SyncHistoryEntry.COLUMN_START_TIME)));
+        cursor.close();
+
+        cursor = mContext.getContentResolver().query(
+                WeatherEntry.CONTENT_URI, null, null, null, null);
+        TestUtilities.validateCursor("testSyncHistory.  Error validating WeatherEntry.",
+                cursor, weatherValues);
+    }
 }
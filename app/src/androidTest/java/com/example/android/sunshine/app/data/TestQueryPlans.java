@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+/*
+    Asks SQLite how it runs each of WeatherProvider's queries, and fails if any of them reads a
+    whole table or index instead of searching one.
+ */
+public class TestQueryPlans extends AndroidTestCase {
+    public static final String LOG_TAG = TestQueryPlans.class.getSimpleName();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+    }
+
+    public void testNoFullTableScans() {
+        WeatherDbHelper dbHelper = new WeatherDbHelper(mContext);
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        for (String sql : WeatherProvider.buildHotQueries()) {
+            Cursor plan = db.rawQuery("EXPLAIN QUERY PLAN " + sql, createArgs(sql));
+            int detailIndex = plan.getColumnIndex("detail");
+            assertTrue("Error: No query plan for " + sql, plan.moveToFirst());
+            do {
+                String detail = plan.getString(detailIndex);
+                Log.d(LOG_TAG, sql + ": " + detail);
+                // "SCAN TABLE weather", or "SCAN weather" on newer versions of SQLite
+                assertFalse("Error: " + detail + " in " + sql, detail.startsWith("SCAN"));
+            } while (plan.moveToNext());
+            plan.close();
+        }
+        dbHelper.close();
+    }
+
+    private static String[] createArgs(String sql) {
+        int count = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            if (sql.charAt(i) == '?') {
+                count++;
+            }
+        }
+        String[] args = new String[count];
+        for (int i = 0; i < count; i++) {
+            args[i] = "1";
+        }
+        return args;
+    }
+}
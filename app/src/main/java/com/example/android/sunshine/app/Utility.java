@@ -16,17 +16,26 @@
 package com.example.android.sunshine.app;
 
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
+import android.os.BatteryManager;
 import android.preference.PreferenceManager;
+import android.support.v4.net.ConnectivityManagerCompat;
 import android.text.format.Time;
+import android.util.Base64;
 
 import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
+import com.example.android.sunshine.core.Temperatures;
+import com.example.android.sunshine.core.WeatherCondition;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 
 public class Utility {
@@ -46,10 +55,7 @@ public class Utility {
     public static String formatTemperature(Context context, double temperature) {
         // Data stored in Celsius by default.  If user prefers to see in Fahrenheit, convert
         // the values here.
-        String suffix = "\u00B0";
-        if (!isMetric(context)) {
-            temperature = (temperature * 1.8) + 32;
-        }
+        temperature = Temperatures.toPreferredUnits(temperature, isMetric(context));
 
         // For presentation, assume the user doesn't care about tenths of a degree.
         return String.format(context.getString(R.string.format_temperature), temperature);
@@ -207,30 +213,28 @@ public class Utility {
      * @return resource id for the corresponding icon. -1 if no relation is found.
      */
     public static int getIconResourceForWeatherCondition(int weatherId) {
-        // Based on weather code data found at:
-        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
-        if (weatherId >= 200 && weatherId <= 232) {
-            return R.drawable.ic_storm;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return R.drawable.ic_light_rain;
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return R.drawable.ic_rain;
-        } else if (weatherId == 511) {
-            return R.drawable.ic_snow;
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return R.drawable.ic_rain;
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return R.drawable.ic_snow;
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return R.drawable.ic_fog;
-        } else if (weatherId == 761 || weatherId == 781) {
-            return R.drawable.ic_storm;
-        } else if (weatherId == 800) {
-            return R.drawable.ic_clear;
-        } else if (weatherId == 801) {
-            return R.drawable.ic_light_clouds;
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return R.drawable.ic_cloudy;
+        WeatherCondition condition = WeatherCondition.forWeatherId(weatherId);
+        if (condition == null) {
+            return -1;
+        }
+        switch (condition) {
+            case STORM:
+            case TORNADO:
+                return R.drawable.ic_storm;
+            case LIGHT_RAIN:
+                return R.drawable.ic_light_rain;
+            case RAIN:
+                return R.drawable.ic_rain;
+            case SNOW:
+                return R.drawable.ic_snow;
+            case FOG:
+                return R.drawable.ic_fog;
+            case CLEAR:
+                return R.drawable.ic_clear;
+            case LIGHT_CLOUDS:
+                return R.drawable.ic_light_clouds;
+            case CLOUDS:
+                return R.drawable.ic_cloudy;
         }
         return -1;
     }
@@ -257,36 +261,14 @@ public class Utility {
      * @return url for the corresponding weather artwork. null if no relation is found.
      */
     public static String getArtUrlForWeatherCondition(Context context, int weatherId) {
+        WeatherCondition condition = WeatherCondition.forWeatherId(weatherId);
+        if (condition == null) {
+            return null;
+        }
         SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
         String formatArtUrl = prefs.getString(context.getString(R.string.pref_art_pack_key),
                 context.getString(R.string.pref_art_pack_sunshine));
-
-        // Based on weather code data found at:
-        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
-        if (weatherId >= 200 && weatherId <= 232) {
-            return String.format(Locale.US, formatArtUrl, "storm");
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return String.format(Locale.US, formatArtUrl, "light_rain");
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return String.format(Locale.US, formatArtUrl, "rain");
-        } else if (weatherId == 511) {
-            return String.format(Locale.US, formatArtUrl, "snow");
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return String.format(Locale.US, formatArtUrl, "rain");
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return String.format(Locale.US, formatArtUrl, "snow");
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return String.format(Locale.US, formatArtUrl, "fog");
-        } else if (weatherId == 761 || weatherId == 781) {
-            return String.format(Locale.US, formatArtUrl, "storm");
-        } else if (weatherId == 800) {
-            return String.format(Locale.US, formatArtUrl, "clear");
-        } else if (weatherId == 801) {
-            return String.format(Locale.US, formatArtUrl, "light_clouds");
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return String.format(Locale.US, formatArtUrl, "clouds");
-        }
-        return null;
+        return String.format(Locale.US, formatArtUrl, condition.getArtName());
     }
 
     /**
@@ -296,30 +278,28 @@ public class Utility {
      * @return resource id for the corresponding icon. -1 if no relation is found.
      */
     public static int getArtResourceForWeatherCondition(int weatherId) {
-        // Based on weather code data found at:
-        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
-        if (weatherId >= 200 && weatherId <= 232) {
-            return R.drawable.art_storm;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return R.drawable.art_light_rain;
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return R.drawable.art_rain;
-        } else if (weatherId == 511) {
-            return R.drawable.art_snow;
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return R.drawable.art_rain;
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return R.drawable.art_snow;
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return R.drawable.art_fog;
-        } else if (weatherId == 761 || weatherId == 781) {
-            return R.drawable.art_storm;
-        } else if (weatherId == 800) {
-            return R.drawable.art_clear;
-        } else if (weatherId == 801) {
-            return R.drawable.art_light_clouds;
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return R.drawable.art_clouds;
+        WeatherCondition condition = WeatherCondition.forWeatherId(weatherId);
+        if (condition == null) {
+            return -1;
+        }
+        switch (condition) {
+            case STORM:
+            case TORNADO:
+                return R.drawable.art_storm;
+            case LIGHT_RAIN:
+                return R.drawable.art_light_rain;
+            case RAIN:
+                return R.drawable.art_rain;
+            case SNOW:
+                return R.drawable.art_snow;
+            case FOG:
+                return R.drawable.art_fog;
+            case CLEAR:
+                return R.drawable.art_clear;
+            case LIGHT_CLOUDS:
+                return R.drawable.art_light_clouds;
+            case CLOUDS:
+                return R.drawable.art_clouds;
         }
         return -1;
     }
@@ -510,32 +490,8 @@ public class Utility {
      * @return A string URL to an appropriate image or null if no mapping is found
      */
     public static String getImageUrlForWeatherCondition(int weatherId) {
-        // Based on weather code data found at:
-        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
-        if (weatherId >= 200 && weatherId <= 232) {
-            return "http://upload.wikimedia.org/wikipedia/commons/2/28/Thunderstorm_in_Annemasse,_France.jpg";
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return "http://upload.wikimedia.org/wikipedia/commons/a/a0/Rain_on_leaf_504605006.jpg";
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return "http://upload.wikimedia.org/wikipedia/commons/6/6c/Rain-on-Thassos.jpg";
-        } else if (weatherId == 511) {
-            return "http://upload.wikimedia.org/wikipedia/commons/b/b8/Fresh_snow.JPG";
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return "http://upload.wikimedia.org/wikipedia/commons/6/6c/Rain-on-Thassos.jpg";
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return "http://upload.wikimedia.org/wikipedia/commons/b/b8/Fresh_snow.JPG";
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return "http://upload.wikimedia.org/wikipedia/commons/e/e6/Westminster_fog_-_London_-_UK.jpg";
-        } else if (weatherId == 761 || weatherId == 781) {
-            return "http://upload.wikimedia.org/wikipedia/commons/d/dc/Raised_dust_ahead_of_a_severe_thunderstorm_1.jpg";
-        } else if (weatherId == 800) {
-            return "http://upload.wikimedia.org/wikipedia/commons/7/7e/A_few_trees_and_the_sun_(6009964513).jpg";
-        } else if (weatherId == 801) {
-            return "http://upload.wikimedia.org/wikipedia/commons/e/e7/Cloudy_Blue_Sky_(5031259890).jpg";
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return "http://upload.wikimedia.org/wikipedia/commons/5/54/Cloudy_hills_in_Elis,_Greece_2.jpg";
-        }
-        return null;
+        WeatherCondition condition = WeatherCondition.forWeatherId(weatherId);
+        return condition == null ? null : condition.getImageUrl();
     }
 
     /**
@@ -553,6 +509,48 @@ public class Utility {
                 activeNetwork.isConnectedOrConnecting();
     }
 
+    /**
+     * @param c Context used to get the ConnectivityManager
+     * @return the type of the active network, such as "WIFI" or "MOBILE/LTE", "NONE" if there
+     * is none.
+     */
+    public static String getNetworkType(Context c) {
+        ConnectivityManager cm =
+                (ConnectivityManager)c.getSystemService(Context.CONNECTIVITY_SERVICE);
+
+        NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
+        if (activeNetwork == null) {
+            return "NONE";
+        }
+        String subtype = activeNetwork.getSubtypeName();
+        if (subtype == null || subtype.length() == 0) {
+            return activeNetwork.getTypeName();
+        }
+        return activeNetwork.getTypeName() + "/" + subtype;
+    }
+
+    /**
+     * @param c Context used to get the ConnectivityManager
+     * @return true if the active network is unmetered, false if it's metered or there is none.
+     */
+    public static boolean isUnmetered(Context c) {
+        ConnectivityManager cm =
+                (ConnectivityManager)c.getSystemService(Context.CONNECTIVITY_SERVICE);
+        return cm.getActiveNetworkInfo() != null
+                && !ConnectivityManagerCompat.isActiveNetworkMetered(cm);
+    }
+
+    /**
+     * @param c Context used to read the battery state
+     * @return true if the device is plugged in.
+     */
+    public static boolean isCharging(Context c) {
+        // The battery broadcast is sticky, registering no receiver just returns the last one
+        Intent battery = c.getApplicationContext().registerReceiver(null,
+                new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        return battery != null && battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+    }
+
     /**
      *
      * @param c Context used to get the SharedPreferences
@@ -577,88 +575,138 @@ public class Utility {
     }
 
     /**
-     * Set the wearable high temperature status so we can compare it later
+     * Save what the wearable forecast channel sent and what the wearable acknowledged, as
+     * frames of the wearable forecast codec, so the next process can carry on from there.
      *
-     * @param context  Context used to get the SharedPreferences
-     * @param highTemp Integer Today's high temperature
+     * @param context Context used to get the SharedPreferences
+     * @param sent    the last frame sent, or null
+     * @param acked   the last frame the wearable applied, or null
      */
-    static public void setWearableHighTempStatus(Context context, String highTemp) {
+    static public void setWearableFrames(Context context, byte[] sent, byte[] acked) {
         SharedPreferences sharedPreferences =
                 PreferenceManager.getDefaultSharedPreferences(context);
         SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putString(context.getString(R.string.pref_wearable_high_temp_status_key), highTemp);
+        putFrame(editor, context.getString(R.string.pref_wearable_sent_frame_key), sent);
+        putFrame(editor, context.getString(R.string.pref_wearable_acked_frame_key), acked);
         editor.apply();
     }
 
     /**
-     * Get the wearable high temperature status
-     *
      * @param  context Context used to get the SharedPreferences
-     * @return Integer The saved today's high temperature
+     * @return the last frame sent to the wearable, or null
      */
-    static public String getWearableHighTempStatus(Context context) {
-        SharedPreferences sharedPreferences =
-                PreferenceManager.getDefaultSharedPreferences(context);
-        return sharedPreferences.getString(
-                context.getString(R.string.pref_wearable_high_temp_status_key), "-1"
-        );
+    static public byte[] getWearableSentFrame(Context context) {
+        return getFrame(context, R.string.pref_wearable_sent_frame_key);
+    }
+
+    /**
+     * @param  context Context used to get the SharedPreferences
+     * @return the last frame the wearable acknowledged, or null
+     */
+    static public byte[] getWearableAckedFrame(Context context) {
+        return getFrame(context, R.string.pref_wearable_acked_frame_key);
     }
 
     /**
-     * Set the wearable low temperature status so we can compare it later
+     * Save when the forecast handed to the wearable forecast channel was synced.
      *
      * @param context Context used to get the SharedPreferences
-     * @param lowTemp Integer Today's low temperature
+     * @param time    the time of the sync, in milliseconds
      */
-    static public void setWearableLowTempStatus(Context context, String lowTemp) {
+    static public void setWearableForecastTime(Context context, long time) {
         SharedPreferences sharedPreferences =
                 PreferenceManager.getDefaultSharedPreferences(context);
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putString(context.getString(R.string.pref_wearable_low_temp_status_key), lowTemp);
-        editor.apply();
+        sharedPreferences.edit()
+                .putLong(context.getString(R.string.pref_wearable_forecast_time_key), time)
+                .apply();
+    }
+
+    /**
+     * @param  context Context used to get the SharedPreferences
+     * @return when the forecast of the wearable was synced, or 0 if it never was
+     */
+    static public long getWearableForecastTime(Context context) {
+        return PreferenceManager.getDefaultSharedPreferences(context)
+                .getLong(context.getString(R.string.pref_wearable_forecast_time_key), 0);
     }
 
     /**
-     * Get the wearable low temperature status
+     * Save when the forecast was last looked at, in the app or on the wearable.
      *
+     * @param context Context used to get the SharedPreferences
+     * @param time    the time of the view, in milliseconds
+     */
+    static public void setLastViewTime(Context context, long time) {
+        PreferenceManager.getDefaultSharedPreferences(context).edit()
+                .putLong(context.getString(R.string.pref_last_view_time_key), time)
+                .apply();
+    }
+
+    /**
      * @param  context Context used to get the SharedPreferences
-     * @return Integer The saved today's low temperature
+     * @return when the forecast was last looked at, or 0 if it never was
      */
-    static public String getWearableLowTempStatus(Context context) {
-        SharedPreferences sharedPreferences =
-                PreferenceManager.getDefaultSharedPreferences(context);
-        return sharedPreferences.getString(
-                context.getString(R.string.pref_wearable_low_temp_status_key), "-1"
-        );
+    static public long getLastViewTime(Context context) {
+        return PreferenceManager.getDefaultSharedPreferences(context)
+                .getLong(context.getString(R.string.pref_last_view_time_key), 0);
     }
 
     /**
-     * Set the wearable weather condition status so we can compare it later
+     * Save the locations the user keeps besides the preferred one, which the sync keeps current
+     * too.  They are stored one per line, string sets need Honeycomb.
      *
      * @param context   Context used to get the SharedPreferences
-     * @param condition Integer Today's weather condition
+     * @param locations the location settings, most recently saved first
      */
-    static public void setWearableWeatherConditionStatus(Context context, Integer condition) {
-        SharedPreferences sharedPreferences =
-                PreferenceManager.getDefaultSharedPreferences(context);
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putInt(context.getString(
-                R.string.pref_wearable_weather_condition_status_key), condition
-        );
-        editor.apply();
+    static public void setSavedLocations(Context context, List<String> locations) {
+        StringBuilder joined = new StringBuilder();
+        for (String location : locations) {
+            if (joined.length() > 0) {
+                joined.append('\n');
+            }
+            joined.append(location);
+        }
+        PreferenceManager.getDefaultSharedPreferences(context).edit()
+                .putString(context.getString(R.string.pref_saved_locations_key),
+                        joined.toString())
+                .apply();
     }
 
     /**
-     * Get the wearable weather condition status
-     *
      * @param  context Context used to get the SharedPreferences
-     * @return Integer The saved today's weather condition
+     * @return the locations the user keeps besides the preferred one, most recently saved
+     * first.  Empty unless the user saved some.
      */
-    static public Integer getWearableWeatherConditionStatus(Context context) {
-        SharedPreferences sharedPreferences =
-                PreferenceManager.getDefaultSharedPreferences(context);
-        return sharedPreferences.getInt(
-                context.getString(R.string.pref_wearable_weather_condition_status_key), -1
-        );
+    static public List<String> getSavedLocations(Context context) {
+        String joined = PreferenceManager.getDefaultSharedPreferences(context)
+                .getString(context.getString(R.string.pref_saved_locations_key), "");
+        List<String> locations = new ArrayList<>();
+        for (String location : joined.split("\n")) {
+            if (!location.isEmpty()) {
+                locations.add(location);
+            }
+        }
+        return locations;
+    }
+
+    private static void putFrame(SharedPreferences.Editor editor, String key, byte[] frame) {
+        if (frame == null) {
+            editor.remove(key);
+        } else {
+            editor.putString(key, Base64.encodeToString(frame, Base64.NO_WRAP));
+        }
+    }
+
+    private static byte[] getFrame(Context context, int keyId) {
+        String frame = PreferenceManager.getDefaultSharedPreferences(context)
+                .getString(context.getString(keyId), null);
+        if (frame == null) {
+            return null;
+        }
+        try {
+            return Base64.decode(frame, Base64.NO_WRAP);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
     }
 }
\ No newline at end of file
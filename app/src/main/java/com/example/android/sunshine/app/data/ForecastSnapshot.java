@@ -0,0 +1,177 @@
+package com.example.android.sunshine.app.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Every stored day of one location, with the location's columns joined in, as the location
+ * queries of WeatherProvider join them.  Immutable, and tagged with the version of the
+ * {@link ForecastSnapshotCache} it was loaded at, so it can be read by any number of queries
+ * at once and never outlives a write.
+ */
+public final class ForecastSnapshot {
+
+    public static final int TYPE_LONG = 0;
+    public static final int TYPE_DOUBLE = 1;
+    public static final int TYPE_STRING = 2;
+
+    // The columns of every row, qualified so projections can name them with or without table
+    public static final String[] COLUMNS = {
+            WeatherContract.WeatherEntry.TABLE_NAME + "." + WeatherContract.WeatherEntry._ID,
+            WeatherContract.WeatherEntry.TABLE_NAME + "."
+                    + WeatherContract.WeatherEntry.COLUMN_LOC_KEY,
+            WeatherContract.WeatherEntry.TABLE_NAME + "."
+                    + WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.TABLE_NAME + "."
+                    + WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherContract.WeatherEntry.TABLE_NAME + "."
+                    + WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.TABLE_NAME + "."
+                    + WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherContract.WeatherEntry.TABLE_NAME + "."
+                    + WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.TABLE_NAME + "."
+                    + WeatherContract.WeatherEntry.COLUMN_HUMIDITY,
+            WeatherContract.WeatherEntry.TABLE_NAME + "."
+                    + WeatherContract.WeatherEntry.COLUMN_PRESSURE,
+            WeatherContract.WeatherEntry.TABLE_NAME + "."
+                    + WeatherContract.WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherContract.WeatherEntry.TABLE_NAME + "."
+                    + WeatherContract.WeatherEntry.COLUMN_DEGREES,
+            WeatherContract.LocationEntry.TABLE_NAME + "." + WeatherContract.LocationEntry._ID,
+            WeatherContract.LocationEntry.TABLE_NAME + "."
+                    + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING,
+            WeatherContract.LocationEntry.TABLE_NAME + "."
+                    + WeatherContract.LocationEntry.COLUMN_CITY_NAME,
+            WeatherContract.LocationEntry.TABLE_NAME + "."
+                    + WeatherContract.LocationEntry.COLUMN_COORD_LAT,
+            WeatherContract.LocationEntry.TABLE_NAME + "."
+                    + WeatherContract.LocationEntry.COLUMN_COORD_LONG
+    };
+
+    // How to read each of COLUMNS from the database
+    public static final int[] COLUMN_TYPES = {
+            TYPE_LONG, TYPE_LONG, TYPE_LONG, TYPE_STRING, TYPE_LONG, TYPE_DOUBLE, TYPE_DOUBLE,
+            TYPE_DOUBLE, TYPE_DOUBLE, TYPE_DOUBLE, TYPE_DOUBLE,
+            TYPE_LONG, TYPE_STRING, TYPE_STRING, TYPE_DOUBLE, TYPE_DOUBLE
+    };
+
+    // these indices must match COLUMNS
+    static final int COL_DATE = 2;
+
+    private final String mLocationSetting;
+    private final long mVersion;
+    // In COLUMNS order, sorted by date
+    private final Object[][] mRows;
+
+    /**
+     * @param rows the rows, in COLUMNS order and sorted by date.  They are copied.
+     */
+    public ForecastSnapshot(String locationSetting, long version, List<Object[]> rows) {
+        mLocationSetting = locationSetting;
+        mVersion = version;
+        mRows = new Object[rows.size()][];
+        for (int i = 0; i < mRows.length; i++) {
+            mRows[i] = rows.get(i).clone();
+        }
+    }
+
+    public String getLocationSetting() {
+        return mLocationSetting;
+    }
+
+    public long getVersion() {
+        return mVersion;
+    }
+
+    public int size() {
+        return mRows.length;
+    }
+
+    /**
+     * @return whether a snapshot can answer a query with this projection.  It can't for a
+     * null projection, nor for expressions, unknown columns, or a bare _id which SQLite would
+     * find ambiguous.
+     */
+    public static boolean canSelect(String[] projection) {
+        if (projection == null) {
+            return false;
+        }
+        for (String column : projection) {
+            if (indexOf(column) == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return whether rows in the order of dates satisfy a sort order.  Without one the order
+     * is up to the database, so dates do too.
+     */
+    public static boolean isDateOrder(String sortOrder) {
+        if (sortOrder == null) {
+            return true;
+        }
+        String order = sortOrder.trim().toLowerCase(Locale.US);
+        if (order.endsWith(" asc")) {
+            order = order.substring(0, order.length() - " asc".length()).trim();
+        }
+        return order.equals(WeatherContract.WeatherEntry.COLUMN_DATE)
+                || order.equals(COLUMNS[COL_DATE]);
+    }
+
+    /**
+     * @return the name SQLite gives a projection column in a cursor, without its table.
+     */
+    public static String cursorColumnName(String column) {
+        String name = column.trim();
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * Select the rows dated from minDate to maxDate, in the order of dates.
+     *
+     * @param projection columns which {@link #canSelect} accepted
+     * @return a new array of values for every row, in projection order.
+     */
+    public List<Object[]> select(String[] projection, long minDate, long maxDate) {
+        int[] indices = new int[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            indices[i] = indexOf(projection[i]);
+        }
+        List<Object[]> rows = new ArrayList<>(mRows.length);
+        for (Object[] row : mRows) {
+            long date = (Long) row[COL_DATE];
+            if (date < minDate || date > maxDate) {
+                continue;
+            }
+            Object[] values = new Object[indices.length];
+            for (int i = 0; i < indices.length; i++) {
+                values[i] = row[indices[i]];
+            }
+            rows.add(values);
+        }
+        return rows;
+    }
+
+    /**
+     * @return the index of a projection column in COLUMNS, -1 if there's no single one.
+     */
+    static int indexOf(String column) {
+        String name = column.trim();
+        boolean qualified = name.indexOf('.') != -1;
+        int found = -1;
+        for (int i = 0; i < COLUMNS.length; i++) {
+            String candidate = qualified ? COLUMNS[i] : cursorColumnName(COLUMNS[i]);
+            if (candidate.equalsIgnoreCase(name)) {
+                if (found != -1) {
+                    return -1;
+                }
+                found = i;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.android.sunshine.app.data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Read-through cache of the {@link ForecastSnapshot}s of the MAX_SNAPSHOTS locations queried
+ * last, in front of WeatherProvider's location queries.  Every write invalidates them all and
+ * moves the version on, and only a snapshot loaded at the current version is put, so one read
+ * from the database while a write ran is never cached.  Thread safe.
+ */
+public class ForecastSnapshotCache {
+    // The preferred location, and room for a few more the user switches between
+    static final int MAX_SNAPSHOTS = 4;
+
+    private final Map<String, ForecastSnapshot> mSnapshots =
+            new LinkedHashMap<String, ForecastSnapshot>(MAX_SNAPSHOTS * 2, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ForecastSnapshot> eldest) {
+                    return size() > MAX_SNAPSHOTS;
+                }
+            };
+
+    private long mVersion;
+    private long mHits;
+    private long mMisses;
+
+    /**
+     * @return the snapshot of a location, or null if it has to be loaded.
+     */
+    public synchronized ForecastSnapshot get(String locationSetting) {
+        ForecastSnapshot snapshot = mSnapshots.get(locationSetting);
+        if (snapshot == null) {
+            mMisses++;
+        } else {
+            mHits++;
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return the version to load a snapshot at, read before reading the database.
+     */
+    public synchronized long getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * Cache a snapshot, unless something was written since its version.
+     *
+     * @return true if it was cached.
+     */
+    public synchronized boolean put(ForecastSnapshot snapshot) {
+        if (snapshot.getVersion() != mVersion) {
+            return false;
+        }
+        mSnapshots.put(snapshot.getLocationSetting(), snapshot);
+        return true;
+    }
+
+    /**
+     * Drop every snapshot, after a write.
+     */
+    public synchronized void invalidate() {
+        mVersion++;
+        mSnapshots.clear();
+    }
+
+    public synchronized long getHits() {
+        return mHits;
+    }
+
+    public synchronized long getMisses() {
+        return mMisses;
+    }
+}
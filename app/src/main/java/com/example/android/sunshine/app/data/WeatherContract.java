@@ -19,7 +19,10 @@ import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.net.Uri;
 import android.provider.BaseColumns;
-import android.text.format.Time;
+
+import com.example.android.sunshine.core.ForecastDates;
+
+import java.util.TimeZone;
 
 /**
  * Defines table and column names for the weather database.
@@ -43,15 +46,25 @@ public class WeatherContract {
     // At least, let's hope not.  Don't be that dev, reader.  Don't be that dev.
     public static final String PATH_WEATHER = "weather";
     public static final String PATH_LOCATION = "location";
+    public static final String PATH_SYNC_HISTORY = "sync_history";
 
     // To make it easy to query for the exact date, we normalize all dates that go into
     // the database to the start of the the Julian day at UTC.
     public static long normalizeDate(long startDate) {
-        // normalize the start date to the beginning of the (UTC) day
-        Time time = new Time();
-        time.set(startDate);
-        int julianDay = Time.getJulianDay(startDate, time.gmtoff);
-        return time.setJulianDay(julianDay);
+        return normalizeDate(startDate, TimeZone.getDefault());
+    }
+
+    /**
+     * Same as {@link #normalizeDate(long)}, for callers normalizing many dates at once: the time
+     * zone is looked up once by the caller, and the day start is computed arithmetically instead
+     * of going through a new {@link android.text.format.Time} for every date.
+     *
+     * @param startDate the date in milliseconds since the epoch
+     * @param timeZone  the zone whose day boundaries to use, normally the default one
+     * @return the start of the day containing startDate
+     */
+    public static long normalizeDate(long startDate, TimeZone timeZone) {
+        return ForecastDates.normalizeDate(startDate, timeZone);
     }
 
     /* Inner class that defines the table contents of the location table */
@@ -165,4 +178,46 @@ public class WeatherContract {
                 return 0;
         }
     }
+
+    /* Inner class that defines the table contents of the sync_history table */
+    public static final class SyncHistoryEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_SYNC_HISTORY).build();
+
+        public static final String CONTENT_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SYNC_HISTORY;
+
+        public static final String TABLE_NAME = "sync_history";
+
+        // Only the most recent syncs are kept
+        public static final int MAX_ROWS = 200;
+
+        // When the sync started, in milliseconds since the epoch
+        public static final String COLUMN_START_TIME = "start_time";
+        // How long the whole sync took, in milliseconds
+        public static final String COLUMN_TOTAL_MILLIS = "total_millis";
+
+        // How long each stage took, in milliseconds.  Fetch and parse run for several locations
+        // at once and are summed over them.
+        public static final String COLUMN_FETCH_MILLIS = "fetch_millis";
+        public static final String COLUMN_PARSE_MILLIS = "parse_millis";
+        public static final String COLUMN_WRITE_MILLIS = "write_millis";
+        public static final String COLUMN_WEARABLE_MILLIS = "wearable_millis";
+        public static final String COLUMN_WIDGETS_MILLIS = "widgets_millis";
+        public static final String COLUMN_MUZEI_MILLIS = "muzei_millis";
+        public static final String COLUMN_NOTIFY_MILLIS = "notify_millis";
+
+        // Bytes read from the network, and forecast days written to the database
+        public static final String COLUMN_BYTES_RECEIVED = "bytes_received";
+        public static final String COLUMN_ROWS_WRITTEN = "rows_written";
+        // The number of locations synced
+        public static final String COLUMN_LOCATIONS = "locations";
+        // Rough estimate of the bytes allocated, from the growth of the heap
+        public static final String COLUMN_ALLOCATED_BYTES = "allocated_bytes";
+        // The active network, such as "WIFI" or "MOBILE/LTE"
+        public static final String COLUMN_NETWORK_TYPE = "network_type";
+        // The location status of the preferred location after the sync
+        public static final String COLUMN_STATUS = "status";
+    }
 }
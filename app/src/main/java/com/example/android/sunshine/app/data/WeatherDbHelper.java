@@ -20,6 +20,7 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
 import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.SyncHistoryEntry;
 import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
 
 /**
@@ -28,7 +29,8 @@ import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
 public class WeatherDbHelper extends SQLiteOpenHelper {
 
     // If you change the database schema, you must increment the database version.
-    private static final int DATABASE_VERSION = 2;
+    // And add the step from the previous version to WeatherDbMigrations.
+    static final int DATABASE_VERSION = 4;
 
     static final String DATABASE_NAME = "weather.db";
 
@@ -81,18 +83,24 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
 
         sqLiteDatabase.execSQL(SQL_CREATE_LOCATION_TABLE);
         sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_TABLE);
+        sqLiteDatabase.execSQL(WeatherDbMigrations.SQL_CREATE_WEATHER_LOCATION_DATE_INDEX);
+        sqLiteDatabase.execSQL(WeatherDbMigrations.SQL_CREATE_SYNC_HISTORY_TABLE);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
-        // This database is only a cache for online data, so its upgrade policy is
-        // to simply to discard the data and start over
         // Note that this only fires if you change the version number for your database.
         // It does NOT depend on the version number for your application.
-        // If you want to update the schema without wiping data, commenting out the next 2 lines
-        // should be your top priority before modifying this method.
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + LocationEntry.TABLE_NAME);
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
-        onCreate(sqLiteDatabase);
+        if (!WeatherDbMigrations.canMigrate(oldVersion)) {
+            // This database is only a cache for online data, and we don't know the first
+            // schema well enough to migrate it, so discard it and start over
+            sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + LocationEntry.TABLE_NAME);
+            sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
+            sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + SyncHistoryEntry.TABLE_NAME);
+            onCreate(sqLiteDatabase);
+            return;
+        }
+        // Keep the stored forecast, the sync only has to bring what changed
+        WeatherDbMigrations.migrate(sqLiteDatabase, oldVersion, newVersion);
     }
 }
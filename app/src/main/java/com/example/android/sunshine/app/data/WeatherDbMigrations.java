@@ -0,0 +1,94 @@
+package com.example.android.sunshine.app.data;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.android.sunshine.app.data.WeatherContract.SyncHistoryEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/**
+ * The schema changes of the weather database, one step per version, so an upgrade keeps the
+ * stored forecast instead of making every user sync from scratch on the day of a release.
+ * <p/>
+ * To change the schema: change WeatherDbHelper.onCreate, increment DATABASE_VERSION, add the
+ * step from the old version here, and add the old schema to TestDbMigrations.  Steps run in
+ * the transaction SQLiteOpenHelper wraps onUpgrade in, so an upgrade which fails leaves the
+ * database as it was.
+ */
+class WeatherDbMigrations {
+
+    // The first version whose schema we know, older databases are discarded
+    static final int OLDEST_MIGRATED_VERSION = 2;
+
+    // Every location query looks up its location and then a range of its dates.  The UNIQUE
+    // (date, location_id) index leads with the date, so it only serves the cleanup of old days.
+    // location_setting needs no index of its own, its UNIQUE constraint has one.
+    static final String WEATHER_LOCATION_DATE_INDEX = "weather_location_date";
+    static final String SQL_CREATE_WEATHER_LOCATION_DATE_INDEX =
+            "CREATE INDEX IF NOT EXISTS " + WEATHER_LOCATION_DATE_INDEX + " ON " +
+                    WeatherEntry.TABLE_NAME + " (" + WeatherEntry.COLUMN_LOC_KEY + ", " +
+                    WeatherEntry.COLUMN_DATE + ");";
+
+    // One row per sync, written by the sync adapter and read newest first
+    static final String SQL_CREATE_SYNC_HISTORY_TABLE =
+            "CREATE TABLE " + SyncHistoryEntry.TABLE_NAME + " (" +
+                    SyncHistoryEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    SyncHistoryEntry.COLUMN_START_TIME + " INTEGER NOT NULL, " +
+                    SyncHistoryEntry.COLUMN_TOTAL_MILLIS + " INTEGER NOT NULL, " +
+                    SyncHistoryEntry.COLUMN_FETCH_MILLIS + " INTEGER NOT NULL, " +
+                    SyncHistoryEntry.COLUMN_PARSE_MILLIS + " INTEGER NOT NULL, " +
+                    SyncHistoryEntry.COLUMN_WRITE_MILLIS + " INTEGER NOT NULL, " +
+                    SyncHistoryEntry.COLUMN_WEARABLE_MILLIS + " INTEGER NOT NULL, " +
+                    SyncHistoryEntry.COLUMN_WIDGETS_MILLIS + " INTEGER NOT NULL, " +
+                    SyncHistoryEntry.COLUMN_MUZEI_MILLIS + " INTEGER NOT NULL, " +
+                    SyncHistoryEntry.COLUMN_NOTIFY_MILLIS + " INTEGER NOT NULL, " +
+                    SyncHistoryEntry.COLUMN_BYTES_RECEIVED + " INTEGER NOT NULL, " +
+                    SyncHistoryEntry.COLUMN_ROWS_WRITTEN + " INTEGER NOT NULL, " +
+                    SyncHistoryEntry.COLUMN_LOCATIONS + " INTEGER NOT NULL, " +
+                    SyncHistoryEntry.COLUMN_ALLOCATED_BYTES + " INTEGER NOT NULL, " +
+                    SyncHistoryEntry.COLUMN_NETWORK_TYPE + " TEXT NOT NULL, " +
+                    SyncHistoryEntry.COLUMN_STATUS + " INTEGER NOT NULL);";
+
+    private WeatherDbMigrations() {
+    }
+
+    /**
+     * @return whether a database of this version can be migrated, rather than recreated.
+     */
+    static boolean canMigrate(int oldVersion) {
+        return oldVersion >= OLDEST_MIGRATED_VERSION;
+    }
+
+    /**
+     * Run the steps from oldVersion up to newVersion, in order.
+     *
+     * @throws IllegalStateException if a step is missing, which a test catches before release.
+     */
+    static void migrate(SQLiteDatabase db, int oldVersion, int newVersion) {
+        for (int version = oldVersion; version < newVersion; version++) {
+            switch (version) {
+                case 2:
+                    migrate2To3(db);
+                    break;
+                case 3:
+                    migrate3To4(db);
+                    break;
+                default:
+                    throw new IllegalStateException("No migration from version " + version);
+            }
+        }
+    }
+
+    /**
+     * Index weather by location and date.
+     */
+    private static void migrate2To3(SQLiteDatabase db) {
+        db.execSQL(SQL_CREATE_WEATHER_LOCATION_DATE_INDEX);
+    }
+
+    /**
+     * Add the history of syncs.
+     */
+    private static void migrate3To4(SQLiteDatabase db) {
+        db.execSQL(SQL_CREATE_SYNC_HISTORY_TABLE);
+    }
+}
@@ -17,23 +17,39 @@ package com.example.android.sunshine.app.data;
 
 import android.annotation.TargetApi;
 import android.content.ContentProvider;
+import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
 
+import com.example.android.sunshine.core.ForecastBatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+
 public class WeatherProvider extends ContentProvider {
 
     // The URI Matcher used by this content provider.
     private static final UriMatcher sUriMatcher = buildUriMatcher();
     private WeatherDbHelper mOpenHelper;
 
+    // Answers the location queries, which every screen, widget and the watch run, from memory
+    private final ForecastSnapshotCache mForecastCache = new ForecastSnapshotCache();
+
     static final int WEATHER = 100;
     static final int WEATHER_WITH_LOCATION = 101;
     static final int WEATHER_WITH_LOCATION_AND_DATE = 102;
     static final int LOCATION = 300;
+    static final int SYNC_HISTORY = 400;
 
     private static final SQLiteQueryBuilder sWeatherByLocationSettingQueryBuilder;
 
@@ -68,10 +84,116 @@ public class WeatherProvider extends ContentProvider {
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
                     WeatherContract.WeatherEntry.COLUMN_DATE + " = ? ";
 
+    //_id DESC
+    private static final String sSyncHistoryNewestFirst =
+            WeatherContract.SyncHistoryEntry._ID + " DESC";
+
+    //_id <= ?
+    private static final String sSyncHistoryBeforeSelection =
+            WeatherContract.SyncHistoryEntry._ID + " <= ?";
+
+    // Columns bound, in this order, by the compiled insert statements of bulkInsert
+    private static final String[] sWeatherInsertColumns = {
+            WeatherContract.WeatherEntry.COLUMN_LOC_KEY,
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_HUMIDITY,
+            WeatherContract.WeatherEntry.COLUMN_PRESSURE,
+            WeatherContract.WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherContract.WeatherEntry.COLUMN_DEGREES
+    };
+
+    //INSERT INTO weather (location_id, date, ...) VALUES (?, ?, ...)
+    private static final String sInsertWeatherSql =
+            buildInsertSql(WeatherContract.WeatherEntry.TABLE_NAME, sWeatherInsertColumns);
+
+    //UPDATE weather SET short_desc = ?, ... WHERE location_id = ? AND date = ?
+    private static final String sUpdateWeatherSql =
+            "UPDATE " + WeatherContract.WeatherEntry.TABLE_NAME + " SET " +
+                    WeatherContract.WeatherEntry.COLUMN_SHORT_DESC + " = ?, " +
+                    WeatherContract.WeatherEntry.COLUMN_WEATHER_ID + " = ?, " +
+                    WeatherContract.WeatherEntry.COLUMN_MIN_TEMP + " = ?, " +
+                    WeatherContract.WeatherEntry.COLUMN_MAX_TEMP + " = ?, " +
+                    WeatherContract.WeatherEntry.COLUMN_HUMIDITY + " = ?, " +
+                    WeatherContract.WeatherEntry.COLUMN_PRESSURE + " = ?, " +
+                    WeatherContract.WeatherEntry.COLUMN_WIND_SPEED + " = ?, " +
+                    WeatherContract.WeatherEntry.COLUMN_DEGREES + " = ? WHERE " +
+                    WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ? AND " +
+                    WeatherContract.WeatherEntry.COLUMN_DATE + " = ?";
+
+    //location_id = ? AND date >= ? AND date <= ?
+    private static final String sLocationIdWithDateRangeSelection =
+            WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ? AND " +
+                    WeatherContract.WeatherEntry.COLUMN_DATE + " >= ? AND " +
+                    WeatherContract.WeatherEntry.COLUMN_DATE + " <= ? ";
+
+    // The stored values writeForecast compares against
+    private static final String[] STORED_FORECAST_COLUMNS = {
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_HUMIDITY,
+            WeatherContract.WeatherEntry.COLUMN_PRESSURE,
+            WeatherContract.WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherContract.WeatherEntry.COLUMN_DEGREES
+    };
+
+    // these indices must match the projection
+    private static final int COL_STORED_DATE = 0;
+    private static final int COL_STORED_SHORT_DESC = 1;
+    private static final int COL_STORED_WEATHER_ID = 2;
+    private static final int COL_STORED_MIN_TEMP = 3;
+    private static final int COL_STORED_MAX_TEMP = 4;
+    private static final int COL_STORED_HUMIDITY = 5;
+    private static final int COL_STORED_PRESSURE = 6;
+    private static final int COL_STORED_WIND_SPEED = 7;
+    private static final int COL_STORED_DEGREES = 8;
+
+    /**
+     * The SQL of every query the provider runs for its URIs and for writeForecasts, with '?'
+     * for the arguments.  TestQueryPlans checks that none of them scans a whole table.
+     */
+    static String[] buildHotQueries() {
+        String byDate = WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
+        return new String[]{
+                SQLiteQueryBuilder.buildQueryString(false,
+                        sWeatherByLocationSettingQueryBuilder.getTables(), ForecastSnapshot.COLUMNS,
+                        sLocationSettingSelection, null, null, byDate, null),
+                SQLiteQueryBuilder.buildQueryString(false,
+                        sWeatherByLocationSettingQueryBuilder.getTables(), ForecastSnapshot.COLUMNS,
+                        sLocationSettingWithStartDateSelection, null, null, byDate, null),
+                SQLiteQueryBuilder.buildQueryString(false,
+                        sWeatherByLocationSettingQueryBuilder.getTables(), ForecastSnapshot.COLUMNS,
+                        sLocationSettingAndDaySelection, null, null, null, null),
+                SQLiteQueryBuilder.buildQueryString(false,
+                        WeatherContract.WeatherEntry.TABLE_NAME, STORED_FORECAST_COLUMNS,
+                        sLocationIdWithDateRangeSelection, null, null, byDate, null),
+                sUpdateWeatherSql,
+                "DELETE FROM " + WeatherContract.WeatherEntry.TABLE_NAME + " WHERE " +
+                        WeatherContract.WeatherEntry.COLUMN_DATE + " < ?",
+                SQLiteQueryBuilder.buildQueryString(false,
+                        WeatherContract.LocationEntry.TABLE_NAME,
+                        new String[]{WeatherContract.LocationEntry._ID},
+                        WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                        null, null, null, null)
+        };
+    }
+
     private Cursor getWeatherByLocationSetting(Uri uri, String[] projection, String sortOrder) {
         String locationSetting = WeatherContract.WeatherEntry.getLocationSettingFromUri(uri);
         long startDate = WeatherContract.WeatherEntry.getStartDateFromUri(uri);
 
+        Cursor cached = getWeatherFromSnapshot(locationSetting, projection, sortOrder,
+                startDate == 0 ? Long.MIN_VALUE : startDate, Long.MAX_VALUE);
+        if (cached != null) {
+            return cached;
+        }
+
         String[] selectionArgs;
         String selection;
 
@@ -98,6 +220,11 @@ public class WeatherProvider extends ContentProvider {
         String locationSetting = WeatherContract.WeatherEntry.getLocationSettingFromUri(uri);
         long date = WeatherContract.WeatherEntry.getDateFromUri(uri);
 
+        Cursor cached = getWeatherFromSnapshot(locationSetting, projection, sortOrder, date, date);
+        if (cached != null) {
+            return cached;
+        }
+
         return sWeatherByLocationSettingQueryBuilder.query(mOpenHelper.getReadableDatabase(),
                 projection,
                 sLocationSettingAndDaySelection,
@@ -108,6 +235,79 @@ public class WeatherProvider extends ContentProvider {
         );
     }
 
+    /**
+     * Answer a location query from the cached snapshot of the location, loading it first if
+     * needed.  The cursor has the columns SQLite would give it, so projections and column
+     * indices keep working.
+     *
+     * @return the cursor, or null if the query needs SQL: a projection or sort order the
+     * snapshot can't answer for.
+     */
+    private Cursor getWeatherFromSnapshot(String locationSetting, String[] projection,
+                                          String sortOrder, long minDate, long maxDate) {
+        if (!ForecastSnapshot.canSelect(projection) || !ForecastSnapshot.isDateOrder(sortOrder)) {
+            return null;
+        }
+        ForecastSnapshot snapshot = mForecastCache.get(locationSetting);
+        if (snapshot == null) {
+            snapshot = loadForecastSnapshot(locationSetting);
+            mForecastCache.put(snapshot);
+        }
+
+        List<Object[]> rows = snapshot.select(projection, minDate, maxDate);
+        String[] columnNames = new String[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            columnNames[i] = ForecastSnapshot.cursorColumnName(projection[i]);
+        }
+        MatrixCursor cursor = new MatrixCursor(columnNames, rows.size());
+        for (Object[] row : rows) {
+            cursor.addRow(row);
+        }
+        return cursor;
+    }
+
+    private ForecastSnapshot loadForecastSnapshot(String locationSetting) {
+        // Before reading, so a write while we read makes the snapshot too old to cache
+        long version = mForecastCache.getVersion();
+        Cursor cursor = sWeatherByLocationSettingQueryBuilder.query(
+                mOpenHelper.getReadableDatabase(),
+                ForecastSnapshot.COLUMNS,
+                sLocationSettingSelection,
+                new String[]{locationSetting},
+                null,
+                null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        try {
+            List<Object[]> rows = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                Object[] row = new Object[ForecastSnapshot.COLUMNS.length];
+                for (int i = 0; i < row.length; i++) {
+                    switch (ForecastSnapshot.COLUMN_TYPES[i]) {
+                        case ForecastSnapshot.TYPE_LONG:
+                            row[i] = cursor.getLong(i);
+                            break;
+                        case ForecastSnapshot.TYPE_DOUBLE:
+                            row[i] = cursor.getDouble(i);
+                            break;
+                        default:
+                            row[i] = cursor.getString(i);
+                    }
+                }
+                rows.add(row);
+            }
+            return new ForecastSnapshot(locationSetting, version, rows);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * @return the cache of the location queries, for its hit and miss counts.
+     */
+    public ForecastSnapshotCache getForecastCache() {
+        return mForecastCache;
+    }
+
     /*
         Students: Here is where you need to create the UriMatcher. This UriMatcher will
         match each URI to the WEATHER, WEATHER_WITH_LOCATION, WEATHER_WITH_LOCATION_AND_DATE,
@@ -130,6 +330,7 @@ public class WeatherProvider extends ContentProvider {
         matcher.addURI(authority, WeatherContract.PATH_WEATHER + "/*/#", WEATHER_WITH_LOCATION_AND_DATE);
 
         matcher.addURI(authority, WeatherContract.PATH_LOCATION, LOCATION);
+        matcher.addURI(authority, WeatherContract.PATH_SYNC_HISTORY, SYNC_HISTORY);
         return matcher;
     }
 
@@ -164,6 +365,8 @@ public class WeatherProvider extends ContentProvider {
                 return WeatherContract.WeatherEntry.CONTENT_TYPE;
             case LOCATION:
                 return WeatherContract.LocationEntry.CONTENT_TYPE;
+            case SYNC_HISTORY:
+                return WeatherContract.SyncHistoryEntry.CONTENT_TYPE;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
@@ -213,6 +416,19 @@ public class WeatherProvider extends ContentProvider {
                 );
                 break;
             }
+            // "sync_history"
+            case SYNC_HISTORY: {
+                retCursor = mOpenHelper.getReadableDatabase().query(
+                        WeatherContract.SyncHistoryEntry.TABLE_NAME,
+                        projection,
+                        selection,
+                        selectionArgs,
+                        null,
+                        null,
+                        sortOrder != null ? sortOrder : sSyncHistoryNewestFirst
+                );
+                break;
+            }
 
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
@@ -248,9 +464,16 @@ public class WeatherProvider extends ContentProvider {
                     throw new android.database.SQLException("Failed to insert row into " + uri);
                 break;
             }
+            case SYNC_HISTORY: {
+                // Not forecast data, so the cache stays valid
+                returnUri = insertSyncHistory(db, values);
+                getContext().getContentResolver().notifyChange(uri, null);
+                return returnUri;
+            }
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
+        mForecastCache.invalidate();
         getContext().getContentResolver().notifyChange(uri, null);
         return returnUri;
     }
@@ -276,16 +499,42 @@ public class WeatherProvider extends ContentProvider {
         }
         // Because a null deletes all rows
         if (rowsDeleted != 0) {
+            mForecastCache.invalidate();
             getContext().getContentResolver().notifyChange(uri, null);
         }
         return rowsDeleted;
     }
 
+    /**
+     * Add the record of a sync, and drop the oldest ones beyond MAX_ROWS, in one transaction.
+     */
+    private Uri insertSyncHistory(SQLiteDatabase db, ContentValues values) {
+        db.beginTransaction();
+        try {
+            long _id = db.insert(WeatherContract.SyncHistoryEntry.TABLE_NAME, null, values);
+            if (_id <= 0) {
+                throw new android.database.SQLException("Failed to insert row into "
+                        + WeatherContract.SyncHistoryEntry.CONTENT_URI);
+            }
+            db.delete(WeatherContract.SyncHistoryEntry.TABLE_NAME, sSyncHistoryBeforeSelection,
+                    new String[]{Long.toString(_id - WeatherContract.SyncHistoryEntry.MAX_ROWS)});
+            db.setTransactionSuccessful();
+            return ContentUris.withAppendedId(WeatherContract.SyncHistoryEntry.CONTENT_URI, _id);
+        } finally {
+            db.endTransaction();
+        }
+    }
+
     private void normalizeDate(ContentValues values) {
+        normalizeDate(values, TimeZone.getDefault());
+    }
+
+    private void normalizeDate(ContentValues values, TimeZone timeZone) {
         // normalize the date value
         if (values.containsKey(WeatherContract.WeatherEntry.COLUMN_DATE)) {
             long dateValue = values.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
-            values.put(WeatherContract.WeatherEntry.COLUMN_DATE, WeatherContract.normalizeDate(dateValue));
+            values.put(WeatherContract.WeatherEntry.COLUMN_DATE,
+                    WeatherContract.normalizeDate(dateValue, timeZone));
         }
     }
 
@@ -310,6 +559,7 @@ public class WeatherProvider extends ContentProvider {
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
         if (rowsUpdated != 0) {
+            mForecastCache.invalidate();
             getContext().getContentResolver().notifyChange(uri, null);
         }
         return rowsUpdated;
@@ -321,20 +571,38 @@ public class WeatherProvider extends ContentProvider {
         final int match = sUriMatcher.match(uri);
         switch (match) {
             case WEATHER:
+                // Look the time zone up once, instead of for every date
+                final TimeZone timeZone = TimeZone.getDefault();
                 db.beginTransaction();
+                // One compiled statement for the whole transaction, instead of db.insert
+                // building the SQL again for every row
+                SQLiteStatement insert = db.compileStatement(sInsertWeatherSql);
                 int returnCount = 0;
                 try {
                     for (ContentValues value : values) {
-                        normalizeDate(value);
-                        long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
+                        normalizeDate(value, timeZone);
+                        long _id;
+                        if (bindInsert(insert, sWeatherInsertColumns, value)) {
+                            try {
+                                _id = insert.executeInsert();
+                            } catch (android.database.SQLException e) {
+                                // db.insert reports a constraint violation as -1 too
+                                _id = -1;
+                            }
+                        } else {
+                            // The row has columns the statement doesn't know about
+                            _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
+                        }
                         if (_id != -1) {
                             returnCount++;
                         }
                     }
                     db.setTransactionSuccessful();
                 } finally {
+                    insert.close();
                     db.endTransaction();
                 }
+                mForecastCache.invalidate();
                 getContext().getContentResolver().notifyChange(uri, null);
                 return returnCount;
             default:
@@ -342,6 +610,244 @@ public class WeatherProvider extends ContentProvider {
         }
     }
 
+    private static String buildInsertSql(String table, String[] columns) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i == 0 ? "" : ", ").append(columns[i]);
+        }
+        sql.append(") VALUES (");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        return sql.append(")").toString();
+    }
+
+    /**
+     * Bind a row to an insert statement built by {@link #buildInsertSql}.  Columns missing
+     * from the row are bound to NULL, as db.insert would insert them.
+     *
+     * @return false if the row contains a column which isn't part of the statement.
+     */
+    private static boolean bindInsert(SQLiteStatement insert, String[] columns,
+                                      ContentValues value) {
+        int bound = 0;
+        for (int i = 0; i < columns.length; i++) {
+            if (value.containsKey(columns[i])) {
+                bound++;
+            }
+        }
+        if (bound != value.size()) {
+            return false;
+        }
+        insert.clearBindings();
+        for (int i = 0; i < columns.length; i++) {
+            DatabaseUtils.bindObjectToProgram(insert, i + 1, value.get(columns[i]));
+        }
+        return true;
+    }
+
+    /**
+     * Fast path for the sync adapter, which runs in the same process as the provider.  The batch
+     * is compared with the rows already stored for its location, and only days which are new or
+     * whose values changed are written, with compiled statements inside a single transaction.
+     * <p/>
+     * A changed day is updated in place rather than inserted, which would make the
+     * ON CONFLICT REPLACE constraint delete and reinsert the row under a new _ID.  Observers are
+     * only notified when something was written.
+     *
+     * <p/>
+     * Needs API 11 for SQLiteStatement.executeUpdateDelete(), callers check SDK_INT first.
+     *
+     * @param batch the forecast to store, with either its location id or its location set.
+     * @return the number of rows inserted or updated, 0 if the stored forecast was identical.
+     */
+    @TargetApi(11)
+    public int writeForecast(ForecastBatch batch) {
+        return writeForecasts(Collections.singletonList(batch), Long.MIN_VALUE);
+    }
+
+    /**
+     * Store the forecasts of several locations the way {@link #writeForecast} stores one, all in
+     * a single transaction, and delete the days which are over.  Locations which aren't in the
+     * database yet are added.  Observers of weather and location are notified once each, after
+     * the transaction, and only if something changed.  Needs API 11, like writeForecast.
+     *
+     * @param batches      the forecasts, each with either its location id or its location set.
+     *                     The ids of added locations are set on their batches.
+     * @param deleteBefore weather rows dated before this are deleted, Long.MIN_VALUE keeps them.
+     * @return the number of weather rows inserted or updated, not counting deleted ones.
+     */
+    @TargetApi(11)
+    public int writeForecasts(List<ForecastBatch> batches, long deleteBefore) {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        TimeZone timeZone = TimeZone.getDefault();
+        int returnCount = 0;
+        int deleted = 0;
+        boolean locationAdded = false;
+        db.beginTransaction();
+        SQLiteStatement insert = db.compileStatement(sInsertWeatherSql);
+        SQLiteStatement update = db.compileStatement(sUpdateWeatherSql);
+        try {
+            for (ForecastBatch batch : batches) {
+                if (batch.getLocationId() == -1) {
+                    locationAdded |= resolveLocation(db, batch);
+                }
+                returnCount += writeForecast(db, insert, update, batch, timeZone);
+            }
+            if (deleteBefore != Long.MIN_VALUE) {
+                deleted = db.delete(WeatherContract.WeatherEntry.TABLE_NAME,
+                        WeatherContract.WeatherEntry.COLUMN_DATE + " < ?",
+                        new String[]{Long.toString(deleteBefore)});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            insert.close();
+            update.close();
+            db.endTransaction();
+        }
+        if (locationAdded || returnCount > 0 || deleted > 0) {
+            mForecastCache.invalidate();
+        }
+        if (locationAdded) {
+            getContext().getContentResolver().notifyChange(
+                    WeatherContract.LocationEntry.CONTENT_URI, null);
+        }
+        if (returnCount > 0 || deleted > 0) {
+            getContext().getContentResolver().notifyChange(
+                    WeatherContract.WeatherEntry.CONTENT_URI, null);
+        }
+        return returnCount;
+    }
+
+    /**
+     * Set the location id of a batch from its location setting, adding the location if needed.
+     *
+     * @return true if the location was added.
+     */
+    private boolean resolveLocation(SQLiteDatabase db, ForecastBatch batch) {
+        String locationSetting = batch.getLocationSetting();
+        if (locationSetting == null) {
+            throw new IllegalArgumentException("ForecastBatch has neither location id nor setting");
+        }
+        Cursor cursor = db.query(WeatherContract.LocationEntry.TABLE_NAME,
+                new String[]{WeatherContract.LocationEntry._ID},
+                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                new String[]{locationSetting},
+                null,
+                null,
+                null);
+        try {
+            if (cursor.moveToFirst()) {
+                batch.setLocationId(cursor.getLong(0));
+                return false;
+            }
+        } finally {
+            cursor.close();
+        }
+
+        ContentValues locationValues = new ContentValues();
+        locationValues.put(WeatherContract.LocationEntry.COLUMN_CITY_NAME, batch.getCityName());
+        locationValues.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, locationSetting);
+        locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, batch.getCoordLat());
+        locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, batch.getCoordLong());
+        long _id = db.insert(WeatherContract.LocationEntry.TABLE_NAME, null, locationValues);
+        if (_id == -1) {
+            throw new android.database.SQLException("Failed to add location " + locationSetting);
+        }
+        batch.setLocationId(_id);
+        return true;
+    }
+
+    @TargetApi(11)
+    private int writeForecast(SQLiteDatabase db, SQLiteStatement insert, SQLiteStatement update,
+                              ForecastBatch batch, TimeZone timeZone) {
+        int size = batch.size();
+        if (size == 0) {
+            return 0;
+        }
+        long locationId = batch.getLocationId();
+        long[] dates = new long[size];
+        long firstDate = Long.MAX_VALUE;
+        long lastDate = Long.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            dates[i] = WeatherContract.normalizeDate(batch.getDate(i), timeZone);
+            firstDate = Math.min(firstDate, dates[i]);
+            lastDate = Math.max(lastDate, dates[i]);
+        }
+
+        // Hashes of the rows already stored for these dates, sorted by date
+        long[] storedDates;
+        long[] storedHashes;
+        Cursor cursor = db.query(WeatherContract.WeatherEntry.TABLE_NAME,
+                STORED_FORECAST_COLUMNS,
+                sLocationIdWithDateRangeSelection,
+                new String[]{Long.toString(locationId),
+                        Long.toString(firstDate), Long.toString(lastDate)},
+                null,
+                null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        try {
+            storedDates = new long[cursor.getCount()];
+            storedHashes = new long[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                storedDates[i] = cursor.getLong(COL_STORED_DATE);
+                storedHashes[i] = ForecastBatch.contentHash(
+                        cursor.getInt(COL_STORED_WEATHER_ID),
+                        cursor.getString(COL_STORED_SHORT_DESC),
+                        cursor.getDouble(COL_STORED_MIN_TEMP),
+                        cursor.getDouble(COL_STORED_MAX_TEMP),
+                        cursor.getInt(COL_STORED_HUMIDITY),
+                        cursor.getDouble(COL_STORED_PRESSURE),
+                        cursor.getDouble(COL_STORED_WIND_SPEED),
+                        cursor.getDouble(COL_STORED_DEGREES));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        int returnCount = 0;
+        for (int i = 0; i < size; i++) {
+            int stored = Arrays.binarySearch(storedDates, dates[i]);
+            if (stored >= 0) {
+                if (storedHashes[stored] == batch.contentHash(i)) {
+                    // Nothing changed for this day
+                    continue;
+                }
+                bindForecastValues(update, batch, i, 1);
+                // Bound in sUpdateWeatherSql order
+                update.bindLong(9, locationId);
+                update.bindLong(10, dates[i]);
+                if (update.executeUpdateDelete() > 0) {
+                    returnCount++;
+                }
+            } else {
+                // Bound in sWeatherInsertColumns order
+                insert.bindLong(1, locationId);
+                insert.bindLong(2, dates[i]);
+                bindForecastValues(insert, batch, i, 3);
+                if (insert.executeInsert() != -1) {
+                    returnCount++;
+                }
+            }
+        }
+        return returnCount;
+    }
+
+    /**
+     * Bind the values of day i, short_desc through degrees, starting at index first.
+     */
+    private static void bindForecastValues(SQLiteStatement statement, ForecastBatch batch, int i,
+                                           int first) {
+        statement.bindString(first, batch.getShortDesc(i));
+        statement.bindLong(first + 1, batch.getWeatherId(i));
+        statement.bindDouble(first + 2, batch.getMinTemp(i));
+        statement.bindDouble(first + 3, batch.getMaxTemp(i));
+        statement.bindLong(first + 4, batch.getHumidity(i));
+        statement.bindDouble(first + 5, batch.getPressure(i));
+        statement.bindDouble(first + 6, batch.getWindSpeed(i));
+        statement.bindDouble(first + 7, batch.getDegrees(i));
+    }
+
     // You do not need to call this method. This is a method specifically to assist the testing
     // framework in running smoothly. You can read more at:
     // http://developer.android.com/reference/android/content/ContentProvider.html#shutdown()
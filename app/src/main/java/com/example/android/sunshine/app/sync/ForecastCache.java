@@ -0,0 +1,460 @@
+package com.example.android.sunshine.app.sync;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * On-disk cache of forecast responses.  Every response body is kept with its ETag,
+ * Last-Modified, the time it was fetched and the max-age the server allowed, keyed by the
+ * request URL without its APPID.
+ * <p/>
+ * While an entry is fresh the network isn't used at all.  Once it is stale the request is sent
+ * with If-None-Match / If-Modified-Since, so an unchanged forecast only costs a 304, and the
+ * caller is told it doesn't have to parse anything.
+ */
+public class ForecastCache {
+    private static final String META_SUFFIX = ".meta";
+    private static final String BODY_SUFFIX = ".body";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    // Bump when the meta file layout changes, older entries are then ignored
+    private static final int META_VERSION = 1;
+
+    // Entries kept before the least recently fetched ones are evicted
+    private static final int MAX_ENTRIES = 64;
+
+    private static final String APPID_PARAM = "APPID";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final File mDirectory;
+    private final HttpTransport mTransport;
+
+    public ForecastCache(File directory, HttpTransport transport) {
+        mDirectory = directory;
+        mTransport = transport;
+    }
+
+    /**
+     * @return the key a request URL is cached under, the URL without its APPID parameter so
+     * changing the API key doesn't throw the cache away.
+     */
+    public static String cacheKey(String url) {
+        int query = url.indexOf('?');
+        if (query == -1) {
+            return url;
+        }
+        StringBuilder key = new StringBuilder(url.length());
+        key.append(url, 0, query + 1);
+        boolean first = true;
+        for (String parameter : url.substring(query + 1).split("&")) {
+            if (parameter.isEmpty() || parameter.equals(APPID_PARAM)
+                    || parameter.startsWith(APPID_PARAM + "=")) {
+                continue;
+            }
+            if (!first) {
+                key.append('&');
+            }
+            key.append(parameter);
+            first = false;
+        }
+        return key.toString();
+    }
+
+    /**
+     * Fetch a forecast, from the cache if it's still fresh, otherwise with a conditional request.
+     * The returned response must always be closed.
+     *
+     * @throws IOException if the request fails, or the server answered anything but 200 or 304.
+     */
+    public Response fetch(URL url) throws IOException {
+        String key = cacheKey(url.toString());
+        String fileName = fileName(key);
+        Entry entry = readEntry(fileName, key);
+        long now = currentTimeMillis();
+
+        if (entry != null && now - entry.validatedTime < entry.maxAge) {
+            return new Response(this, fileName, entry, null, Response.FRESH);
+        }
+
+        Map<String, String> conditions = new HashMap<>();
+        if (entry != null) {
+            if (entry.etag != null) {
+                conditions.put("If-None-Match", entry.etag);
+            }
+            if (entry.lastModified != null) {
+                conditions.put("If-Modified-Since", entry.lastModified);
+            }
+        }
+        HttpTransport.Response httpResponse = mTransport.get(url, conditions);
+        boolean handedOver = false;
+        try {
+            int responseCode = httpResponse.getCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && entry != null) {
+                // Same body, but the server may have extended its lifetime
+                entry.validatedTime = now;
+                entry.maxAge = maxAge(httpResponse.getHeader("Cache-Control"), entry.maxAge);
+                writeMeta(fileName, entry);
+                return new Response(this, fileName, entry, null, Response.NOT_MODIFIED);
+            }
+
+            // For any error code this throws, the same as an uncached request would
+            InputStream body = httpResponse.getBody();
+
+            Entry fetched = null;
+            String cacheControl = httpResponse.getHeader("Cache-Control");
+            if (responseCode == HttpURLConnection.HTTP_OK && !isNoStore(cacheControl)) {
+                fetched = new Entry(key);
+                fetched.etag = httpResponse.getHeader("ETag");
+                fetched.lastModified = httpResponse.getHeader("Last-Modified");
+                fetched.fetchTime = now;
+                fetched.validatedTime = now;
+                fetched.maxAge = maxAge(cacheControl, 0);
+            }
+            Response response = new Response(this, fileName, fetched, httpResponse,
+                    Response.NETWORK);
+            response.mBody = fetched == null ? body : response.new TeeInputStream(body);
+            handedOver = true;
+            return response;
+        } finally {
+            if (!handedOver) {
+                httpResponse.close();
+            }
+        }
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * @return the max-age of a Cache-Control header in milliseconds, 0 for no-cache, or
+     * defaultMaxAge if the header doesn't say.
+     */
+    static long maxAge(String cacheControl, long defaultMaxAge) {
+        if (cacheControl == null) {
+            return defaultMaxAge;
+        }
+        for (String directive : cacheControl.toLowerCase(Locale.US).split(",")) {
+            directive = directive.trim();
+            if (directive.equals("no-cache") || directive.equals("no-store")) {
+                return 0;
+            }
+            if (directive.startsWith("max-age=")) {
+                try {
+                    return Math.max(0, Long.parseLong(directive.substring(8).trim())) * 1000;
+                } catch (NumberFormatException e) {
+                    return defaultMaxAge;
+                }
+            }
+        }
+        return defaultMaxAge;
+    }
+
+    private static boolean isNoStore(String cacheControl) {
+        return cacheControl != null
+                && cacheControl.toLowerCase(Locale.US).contains("no-store");
+    }
+
+    private static String fileName(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes("UTF-8"));
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xf];
+                hex[i * 2 + 1] = HEX_DIGITS[digest[i] & 0xf];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException | IOException e) {
+            // Every platform has SHA-1 and UTF-8
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Entry readEntry(String fileName, String key) {
+        File meta = new File(mDirectory, fileName + META_SUFFIX);
+        if (!meta.exists() || !new File(mDirectory, fileName + BODY_SUFFIX).exists()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(meta));
+            if (in.readInt() != META_VERSION || !key.equals(in.readUTF())) {
+                return null;
+            }
+            Entry entry = new Entry(key);
+            entry.etag = emptyToNull(in.readUTF());
+            entry.lastModified = emptyToNull(in.readUTF());
+            entry.fetchTime = in.readLong();
+            entry.validatedTime = in.readLong();
+            entry.maxAge = in.readLong();
+            return entry;
+        } catch (IOException e) {
+            // A damaged entry is the same as no entry
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private void writeMeta(String fileName, Entry entry) throws IOException {
+        File temp = new File(mDirectory, fileName + META_SUFFIX + TEMP_SUFFIX);
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(temp));
+        try {
+            out.writeInt(META_VERSION);
+            out.writeUTF(entry.key);
+            out.writeUTF(entry.etag == null ? "" : entry.etag);
+            out.writeUTF(entry.lastModified == null ? "" : entry.lastModified);
+            out.writeLong(entry.fetchTime);
+            out.writeLong(entry.validatedTime);
+            out.writeLong(entry.maxAge);
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(new File(mDirectory, fileName + META_SUFFIX))) {
+            temp.delete();
+            throw new IOException("Could not store cache entry " + fileName);
+        }
+    }
+
+    private void commit(String fileName, Entry entry, File body) throws IOException {
+        // The old meta has to go first, it must never describe a body it wasn't written for
+        new File(mDirectory, fileName + META_SUFFIX).delete();
+        if (!body.renameTo(new File(mDirectory, fileName + BODY_SUFFIX))) {
+            body.delete();
+            throw new IOException("Could not store cache entry " + fileName);
+        }
+        writeMeta(fileName, entry);
+        trim();
+    }
+
+    /**
+     * Evict the least recently fetched entries beyond MAX_ENTRIES.
+     */
+    private void trim() {
+        File[] metas = mDirectory.listFiles();
+        if (metas == null) {
+            return;
+        }
+        int count = 0;
+        for (File file : metas) {
+            if (file.getName().endsWith(META_SUFFIX)) {
+                metas[count++] = file;
+            }
+        }
+        if (count <= MAX_ENTRIES) {
+            return;
+        }
+        metas = Arrays.copyOf(metas, count);
+        Arrays.sort(metas, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long lhsModified = lhs.lastModified();
+                long rhsModified = rhs.lastModified();
+                return lhsModified < rhsModified ? -1 : (lhsModified == rhsModified ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < count - MAX_ENTRIES; i++) {
+            String name = metas[i].getName();
+            metas[i].delete();
+            new File(mDirectory, name.substring(0, name.length() - META_SUFFIX.length())
+                    + BODY_SUFFIX).delete();
+        }
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Nothing left to do
+            }
+        }
+    }
+
+    private static class Entry {
+        final String key;
+        String etag;
+        String lastModified;
+        // When the body was fetched, and when the server last confirmed it
+        long fetchTime;
+        long validatedTime;
+        long maxAge;
+
+        Entry(String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * The outcome of {@link #fetch}.  A response read from the network is only stored once the
+     * caller has consumed it successfully and calls {@link #commit()}.
+     */
+    public static class Response {
+        /**
+         * The cached entry was still fresh, the network wasn't used.
+         */
+        public static final int FRESH = 0;
+        /**
+         * The server answered 304, the cached body is still current.
+         */
+        public static final int NOT_MODIFIED = 1;
+        /**
+         * A new body was fetched.
+         */
+        public static final int NETWORK = 2;
+
+        private final ForecastCache mCache;
+        private final String mFileName;
+        private final Entry mEntry;
+        private final HttpTransport.Response mHttpResponse;
+        private final int mSource;
+
+        private InputStream mBody;
+        private File mTempBody;
+        private OutputStream mTempOut;
+
+        Response(ForecastCache cache, String fileName, Entry entry,
+                 HttpTransport.Response httpResponse, int source) {
+            mCache = cache;
+            mFileName = fileName;
+            mEntry = entry;
+            mHttpResponse = httpResponse;
+            mSource = source;
+        }
+
+        /**
+         * @return FRESH, NOT_MODIFIED or NETWORK.
+         */
+        public int getSource() {
+            return mSource;
+        }
+
+        /**
+         * @return true if the body is the one a previous sync already read.
+         */
+        public boolean isUnchanged() {
+            return mSource != NETWORK;
+        }
+
+        /**
+         * @return when the body was fetched from the server, which for an unchanged response can
+         * be long before it was last confirmed.  The forecast's days are relative to this time.
+         */
+        public long getFetchTime() {
+            return mEntry != null ? mEntry.fetchTime : mCache.currentTimeMillis();
+        }
+
+        /**
+         * @return the response body, the cached copy for an unchanged response.
+         */
+        public InputStream getBody() throws IOException {
+            if (mBody == null) {
+                try {
+                    mBody = new FileInputStream(new File(mCache.mDirectory, mFileName + BODY_SUFFIX));
+                } catch (FileNotFoundException e) {
+                    throw new IOException("Cached forecast body is gone", e);
+                }
+            }
+            return mBody;
+        }
+
+        /**
+         * Store a body fetched from the network, reading whatever the caller left of it.  Does
+         * nothing for unchanged responses, or when the server didn't allow caching.
+         */
+        public void commit() throws IOException {
+            if (mSource != NETWORK || mEntry == null || mBody == null) {
+                return;
+            }
+            byte[] buffer = new byte[1024];
+            while (mBody.read(buffer) != -1) {
+                // Drain into the tee
+            }
+            mTempOut.close();
+            mTempOut = null;
+            mCache.commit(mFileName, mEntry, mTempBody);
+            mTempBody = null;
+        }
+
+        public void close() {
+            if (mHttpResponse != null) {
+                // Leaves the connection to the pool
+                mHttpResponse.close();
+            } else {
+                closeQuietly(mBody);
+            }
+            closeQuietly(mTempOut);
+            if (mTempBody != null) {
+                mTempBody.delete();
+            }
+        }
+
+        /**
+         * Copies everything read from the network into a temporary body file.
+         */
+        private class TeeInputStream extends FilterInputStream {
+            TeeInputStream(InputStream in) throws IOException {
+                super(in);
+                if (!mCache.mDirectory.isDirectory() && !mCache.mDirectory.mkdirs()) {
+                    throw new IOException("Could not create " + mCache.mDirectory);
+                }
+                mTempBody = new File(mCache.mDirectory, mFileName + BODY_SUFFIX + TEMP_SUFFIX);
+                mTempOut = new FileOutputStream(mTempBody);
+            }
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b != -1) {
+                    mTempOut.write(b);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int count) throws IOException {
+                int read = super.read(buffer, offset, count);
+                if (read > 0) {
+                    mTempOut.write(buffer, offset, read);
+                }
+                return read;
+            }
+
+            @Override
+            public long skip(long count) throws IOException {
+                // Skipped bytes have to reach the copy too
+                byte[] buffer = new byte[(int) Math.min(count, 1024)];
+                int read = read(buffer, 0, buffer.length);
+                return Math.max(read, 0);
+            }
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        }
+    }
+}
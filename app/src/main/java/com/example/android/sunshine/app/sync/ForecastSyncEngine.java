@@ -0,0 +1,116 @@
+package com.example.android.sunshine.app.sync;
+
+import com.example.android.sunshine.core.ForecastBatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches and parses the forecasts of many locations concurrently, on a small bounded pool, so
+ * a sync of 30 cities costs about as long as the slowest few instead of the sum of all of them.
+ * Storing the results is left to the caller, which does it in one transaction.
+ */
+public class ForecastSyncEngine {
+
+    /**
+     * Fetches and parses the forecast of one location.  Called on the engine's threads, for
+     * several locations at once.
+     */
+    public interface Fetcher {
+        /**
+         * Must not throw, failures are reported through the result's status.
+         */
+        LocationResult fetch(String locationSetting);
+    }
+
+    /**
+     * The outcome of syncing one location.
+     */
+    public static class LocationResult {
+        public final String locationSetting;
+        /**
+         * One of the SunshineSyncAdapter LOCATION_STATUS values.
+         */
+        public final int status;
+        /**
+         * The parsed forecast, null if the request failed or the stored forecast is current.
+         */
+        public final ForecastBatch batch;
+
+        public LocationResult(String locationSetting, int status, ForecastBatch batch) {
+            this.locationSetting = locationSetting;
+            this.status = status;
+            this.batch = batch;
+        }
+    }
+
+    // Idle threads are let go after this, syncs are hours apart
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final ThreadPoolExecutor mExecutor;
+
+    /**
+     * @param parallelism the most locations fetched at the same time.
+     */
+    public ForecastSyncEngine(int parallelism) {
+        mExecutor = new ThreadPoolExecutor(parallelism, parallelism,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger mCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable,
+                                "ForecastSync #" + mCount.incrementAndGet());
+                        thread.setPriority(Thread.MIN_PRIORITY);
+                        return thread;
+                    }
+                });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Fetch every location and wait for all of them.
+     *
+     * @return one result per location, in the order of locationSettings.
+     * @throws InterruptedException if the sync was cancelled while waiting, the fetches still
+     *                              running are interrupted.
+     */
+    public List<LocationResult> fetchAll(List<String> locationSettings, final Fetcher fetcher)
+            throws InterruptedException {
+        List<Callable<LocationResult>> tasks = new ArrayList<>(locationSettings.size());
+        for (final String locationSetting : locationSettings) {
+            tasks.add(new Callable<LocationResult>() {
+                @Override
+                public LocationResult call() {
+                    return fetcher.fetch(locationSetting);
+                }
+            });
+        }
+
+        List<Future<LocationResult>> futures = mExecutor.invokeAll(tasks);
+        List<LocationResult> results = new ArrayList<>(futures.size());
+        for (Future<LocationResult> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                // The fetcher broke its contract, that's a bug rather than a failed sync
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        return results;
+    }
+
+    public void shutdown() {
+        mExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,268 @@
+package com.example.android.sunshine.app.sync;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * HTTP GETs for the sync, shared by every request it makes.
+ * <p/>
+ * Connections are never disconnect()ed: a response body is read to its end and closed, which
+ * hands the connection back to HttpURLConnection's keep-alive pool, so the next sync to the same
+ * host skips the TCP (and TLS) handshake.  Responses are requested gzipped and inflated here,
+ * requests time out instead of hanging a sync thread, and failed attempts are retried with
+ * exponential backoff and full jitter, so devices which lost the server at the same time don't
+ * come back in lockstep.
+ */
+public class HttpTransport {
+    // Bodies left unread up to this size are drained so the connection can be reused,
+    // larger ones are cheaper to drop along with their connection
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    private final int mConnectTimeoutMillis;
+    private final int mReadTimeoutMillis;
+    private final int mMaxAttempts;
+    private final long mInitialBackoffMillis;
+    private final long mMaxBackoffMillis;
+    private final Random mRandom = new Random();
+
+    private final AtomicLong mBytesReceived = new AtomicLong();
+    private final AtomicLong mAttempts = new AtomicLong();
+
+    /**
+     * @param maxAttempts          how often a request is tried before its failure is reported,
+     *                             at least 1.
+     * @param initialBackoffMillis the most the first retry waits, doubled for every retry after.
+     * @param maxBackoffMillis     the most any retry waits.
+     */
+    public HttpTransport(int connectTimeoutMillis, int readTimeoutMillis, int maxAttempts,
+                         long initialBackoffMillis, long maxBackoffMillis) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+        mConnectTimeoutMillis = connectTimeoutMillis;
+        mReadTimeoutMillis = readTimeoutMillis;
+        mMaxAttempts = maxAttempts;
+        mInitialBackoffMillis = initialBackoffMillis;
+        mMaxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * GET a URL.  Connection failures, timeouts, server errors (5xx) and 429s are retried, any
+     * other response is returned as is.  The response must always be closed.
+     *
+     * @param requestHeaders extra headers, such as the conditional ones.
+     * @throws IOException if the last attempt failed to connect or got no response.  A last
+     *                     attempt answered with an error is returned, its getBody() throws.
+     */
+    public Response get(URL url, Map<String, String> requestHeaders) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            mAttempts.incrementAndGet();
+            try {
+                Response response = execute(url, requestHeaders);
+                if (!isRetryable(response.getCode()) || attempt == mMaxAttempts) {
+                    return response;
+                }
+                response.close();
+            } catch (IOException e) {
+                // Timeouts are SocketTimeoutExceptions, which are InterruptedIOExceptions too
+                // but worth retrying.  Only a cancelled sync gives up right away.
+                boolean cancelled = Thread.currentThread().isInterrupted()
+                        || (e instanceof InterruptedIOException
+                        && !(e instanceof SocketTimeoutException));
+                if (cancelled || attempt == mMaxAttempts) {
+                    throw e;
+                }
+            }
+            sleep(backoffMillis(attempt));
+        }
+    }
+
+    public Response get(URL url) throws IOException {
+        return get(url, Collections.<String, String>emptyMap());
+    }
+
+    /**
+     * @return the bytes read off the network so far, before inflating.
+     */
+    public long getBytesReceived() {
+        return mBytesReceived.get();
+    }
+
+    /**
+     * @return the requests sent so far, retries included.
+     */
+    public long getAttempts() {
+        return mAttempts.get();
+    }
+
+    private Response execute(URL url, Map<String, String> requestHeaders) throws IOException {
+        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        urlConnection.setConnectTimeout(mConnectTimeoutMillis);
+        urlConnection.setReadTimeout(mReadTimeoutMillis);
+        urlConnection.setRequestMethod("GET");
+        // Asking for gzip explicitly turns off Android's transparent decompression, which
+        // would otherwise hide the encoding from us on some versions and not on others
+        urlConnection.setRequestProperty("Accept-Encoding", "gzip");
+        for (Map.Entry<String, String> header : requestHeaders.entrySet()) {
+            urlConnection.setRequestProperty(header.getKey(), header.getValue());
+        }
+        urlConnection.connect();
+        return new Response(this, urlConnection, urlConnection.getResponseCode());
+    }
+
+    private static boolean isRetryable(int code) {
+        return code >= 500 || code == 429;
+    }
+
+    /**
+     * @return a random wait before retry number attempt, up to initial * 2^(attempt - 1).
+     */
+    long backoffMillis(int attempt) {
+        long ceiling = mInitialBackoffMillis << Math.min(attempt - 1, 30);
+        if (ceiling <= 0 || ceiling > mMaxBackoffMillis) {
+            ceiling = mMaxBackoffMillis;
+        }
+        synchronized (mRandom) {
+            return (long) (mRandom.nextDouble() * ceiling);
+        }
+    }
+
+    protected void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while backing off");
+        }
+    }
+
+    /**
+     * The status, headers and body of one response.
+     */
+    public static class Response implements Closeable {
+        private final HttpTransport mTransport;
+        private final HttpURLConnection mConnection;
+        private final int mCode;
+        private InputStream mRawBody;
+        private InputStream mBody;
+
+        Response(HttpTransport transport, HttpURLConnection connection, int code) {
+            mTransport = transport;
+            mConnection = connection;
+            mCode = code;
+        }
+
+        public int getCode() {
+            return mCode;
+        }
+
+        public String getHeader(String name) {
+            return mConnection.getHeaderField(name);
+        }
+
+        /**
+         * @return the body, inflated if the server gzipped it.
+         * @throws IOException for error responses, FileNotFoundException for 404 and 410, the
+         *                     same as HttpURLConnection.getInputStream().
+         */
+        public InputStream getBody() throws IOException {
+            if (mBody != null) {
+                return mBody;
+            }
+            if (mCode >= 400) {
+                openRaw();
+                if (mCode == HttpURLConnection.HTTP_NOT_FOUND
+                        || mCode == HttpURLConnection.HTTP_GONE) {
+                    throw new FileNotFoundException(mConnection.getURL().toString());
+                }
+                throw new IOException("Server returned HTTP response code: " + mCode
+                        + " for URL: " + mConnection.getURL());
+            }
+            InputStream raw = openRaw();
+            String encoding = mConnection.getContentEncoding();
+            if (encoding != null && encoding.toLowerCase(Locale.US).contains("gzip")) {
+                mBody = new GZIPInputStream(raw);
+            } else {
+                mBody = raw;
+            }
+            return mBody;
+        }
+
+        private InputStream openRaw() throws IOException {
+            if (mRawBody == null) {
+                InputStream in = mCode >= 400
+                        ? mConnection.getErrorStream() : mConnection.getInputStream();
+                mRawBody = new CountingInputStream(in == null ? EMPTY : in);
+            }
+            return mRawBody;
+        }
+
+        /**
+         * Read what's left of the body and close it, which returns the connection to the pool.
+         */
+        @Override
+        public void close() {
+            try {
+                // Through the inflater if there is one, which also releases it on close
+                InputStream in = mBody != null ? mBody : openRaw();
+                byte[] buffer = new byte[1024];
+                int drained = 0;
+                int read;
+                while (drained < MAX_DRAIN_BYTES && (read = in.read(buffer)) != -1) {
+                    drained += read;
+                }
+                if (drained >= MAX_DRAIN_BYTES) {
+                    mConnection.disconnect();
+                }
+                in.close();
+            } catch (IOException e) {
+                // A broken connection isn't pooled anyway
+                mConnection.disconnect();
+            }
+        }
+
+        private class CountingInputStream extends FilterInputStream {
+            CountingInputStream(InputStream in) {
+                super(in);
+            }
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b != -1) {
+                    mTransport.mBytesReceived.incrementAndGet();
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int count) throws IOException {
+                int read = super.read(buffer, offset, count);
+                if (read > 0) {
+                    mTransport.mBytesReceived.addAndGet(read);
+                }
+                return read;
+            }
+        }
+    }
+
+    private static final InputStream EMPTY = new InputStream() {
+        @Override
+        public int read() {
+            return -1;
+        }
+    };
+}
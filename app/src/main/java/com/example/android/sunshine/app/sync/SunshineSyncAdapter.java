@@ -5,7 +5,10 @@ import android.accounts.AccountManager;
 import android.annotation.SuppressLint;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
 import android.content.AbstractThreadedSyncAdapter;
+import android.content.ComponentName;
+import android.content.ContentProvider;
 import android.content.ContentProviderClient;
 import android.content.ContentResolver;
 import android.content.ContentUris;
@@ -22,6 +25,8 @@ import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.preference.PreferenceManager;
 import android.support.annotation.IntDef;
 import android.support.v4.app.NotificationCompat;
@@ -35,34 +40,31 @@ import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.Utility;
 import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.data.WeatherProvider;
 import com.example.android.sunshine.app.muzei.WeatherMuzeiSource;
-import com.example.android.sunshine.app.wearable.UpdateWearableForecast;
-import com.google.android.gms.common.ConnectionResult;
-import com.google.android.gms.common.api.GoogleApiClient;
-import com.google.android.gms.common.api.ResultCallback;
-import com.google.android.gms.common.server.converter.StringToIntConverter;
-import com.google.android.gms.wearable.DataApi;
-import com.google.android.gms.wearable.PutDataMapRequest;
-import com.google.android.gms.wearable.PutDataRequest;
-import com.google.android.gms.wearable.Wearable;
-
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
+import com.example.android.sunshine.app.wearable.WearableForecastChannel;
+import com.example.android.sunshine.app.wearable.WearableForecastQuery;
+import com.example.android.sunshine.app.widget.DetailWidgetProvider;
+import com.example.android.sunshine.app.widget.TodayWidgetProvider;
+import com.example.android.sunshine.core.ForecastBatch;
+import com.example.android.sunshine.core.ForecastParser;
+import com.example.android.sunshine.core.MalformedJsonException;
+import com.example.android.sunshine.core.WearForecast;
+
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.util.Vector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
 import java.util.concurrent.ExecutionException;
 
 public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
-    public final String LOG_TAG = SunshineSyncAdapter.class.getSimpleName();
+    public static final String LOG_TAG = SunshineSyncAdapter.class.getSimpleName();
 
     final String KEY_HIGH = "highTemp";
     final String KEY_LOW = "lowTemp";
@@ -70,14 +72,37 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
 
     public static final String ACTION_DATA_UPDATED =
             "com.example.android.sunshine.app.ACTION_DATA_UPDATED";
-    // Interval at which to sync with the weather, in seconds.
-    // 60 seconds (1 minute) * 180 = 3 hours
-    public static final int SYNC_INTERVAL = 60 * 180;
+    // Interval at which to sync with the weather until the schedule policy knows better, in
+    // seconds.  After every sync SyncSchedulePolicy moves it between 1 and 12 hours.
+    public static final int SYNC_INTERVAL =
+            (int) (SyncSchedulePolicy.DEFAULT_INTERVAL_MILLIS / 1000);
     public static final int SYNC_FLEXTIME = SYNC_INTERVAL / 3;
     private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
     private static final int WEATHER_NOTIFICATION_ID = 3004;
 
-    private UpdateWearableForecast mUpdateWearableForecast;
+    // Directory in the app's cache dir holding the last response for each forecast URL
+    private static final String FORECAST_CACHE_DIR = "forecast";
+    private final ForecastCache mForecastCache;
+
+    // Network settings of every request the sync makes
+    private static final int CONNECT_TIMEOUT_MILLIS = 15 * 1000;
+    private static final int READ_TIMEOUT_MILLIS = 20 * 1000;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long INITIAL_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 30 * 1000;
+    private final HttpTransport mHttpTransport = new HttpTransport(CONNECT_TIMEOUT_MILLIS,
+            READ_TIMEOUT_MILLIS, MAX_ATTEMPTS, INITIAL_BACKOFF_MILLIS, MAX_BACKOFF_MILLIS);
+
+    // Locations synced together, and how many of them are fetched at the same time
+    private static final int MAX_SYNCED_LOCATIONS = 32;
+    private static final int SYNC_PARALLELISM = 4;
+    private final ForecastSyncEngine mSyncEngine = new ForecastSyncEngine(SYNC_PARALLELISM);
+
+    // The stage times of the recent syncs, kept for the life of the process
+    private static final SyncMetrics sSyncMetrics = new SyncMetrics();
+
+    // Every sync request of the process goes through it, see getSyncCoordinator
+    private static SyncCoordinator sSyncCoordinator;
 
     private static final String[] NOTIFY_WEATHER_PROJECTION = new String[]{
             WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
@@ -105,6 +130,8 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
 
     public SunshineSyncAdapter(Context context, boolean autoInitialize) {
         super(context, autoInitialize);
+        mForecastCache = new ForecastCache(
+                new File(context.getCacheDir(), FORECAST_CACHE_DIR), mHttpTransport);
     }
 
     @Override
@@ -112,15 +139,266 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
         if (Log.isLoggable(LOG_TAG, Log.DEBUG)) {
             Log.d(LOG_TAG, "Starting sync");
         }
+        // Requests made while this sync runs join it, unless they are for another location
         String locationQuery = Utility.getPreferredLocation(getContext());
+        SyncCoordinator coordinator = getSyncCoordinator(getContext());
+        coordinator.onSyncStarted(locationQuery);
+        int status = LOCATION_STATUS_UNKNOWN;
+        try {
+            status = performSync(provider, locationQuery);
+        } finally {
+            coordinator.onSyncFinished(locationQuery, status);
+        }
+    }
+
+    /**
+     * Sync the preferred location and the saved ones.
+     *
+     * @return the status of the preferred location.
+     */
+    @LocationStatus
+    private int performSync(ContentProviderClient provider, String locationQuery) {
+        Runtime runtime = Runtime.getRuntime();
+        long heapAtStart = runtime.totalMemory() - runtime.freeMemory();
+        long bytesAtStart = mHttpTransport.getBytesReceived();
+        final SyncMetrics.Record record = new SyncMetrics.Record(System.currentTimeMillis(),
+                System.nanoTime(), Utility.getNetworkType(getContext()));
+
+        List<String> locationSettings = getSyncedLocations(locationQuery);
+
+        List<ForecastSyncEngine.LocationResult> results;
+        try {
+            results = mSyncEngine.fetchAll(locationSettings, new ForecastSyncEngine.Fetcher() {
+                @Override
+                public ForecastSyncEngine.LocationResult fetch(String locationSetting) {
+                    return fetchForecast(locationSetting, record);
+                }
+            });
+        } catch (InterruptedException e) {
+            // The sync was cancelled
+            Thread.currentThread().interrupt();
+            return LOCATION_STATUS_UNKNOWN;
+        }
+
+        // The preferred location comes first, it's the one the wearable and the status are for
+        ForecastSyncEngine.LocationResult preferred = results.get(0);
+        if (preferred.batch != null) {
+            long start = System.nanoTime();
+            updateWearable(preferred.batch);
+            record.endStage(SyncMetrics.STAGE_WEARABLE, start);
+        }
+
+        List<ForecastBatch> batches = new ArrayList<>(results.size());
+        boolean anySucceeded = false;
+        for (ForecastSyncEngine.LocationResult result : results) {
+            if (result.batch != null && result.batch.size() > 0) {
+                batches.add(result.batch);
+            }
+            anySucceeded |= result.status == LOCATION_STATUS_OK;
+        }
+
+        // add to database, and delete old data so we don't build up an endless history
+        int changed = 0;
+        if (anySucceeded) {
+            long start = System.nanoTime();
+            changed = writeForecasts(provider, batches,
+                    WeatherContract.normalizeDate(System.currentTimeMillis()));
+            deleteUnsyncedLocations(locationSettings);
+            start = record.endStage(SyncMetrics.STAGE_WRITE, start);
+
+            // Widgets, Muzei and the notification already show an identical forecast
+            if (changed > 0) {
+                updateWidgets();
+                start = record.endStage(SyncMetrics.STAGE_WIDGETS, start);
+                updateMuzei();
+                start = record.endStage(SyncMetrics.STAGE_MUZEI, start);
+                notifyWeather();
+                record.endStage(SyncMetrics.STAGE_NOTIFY, start);
+            }
+        }
+        if (Log.isLoggable(LOG_TAG, Log.DEBUG)) {
+            Log.d(LOG_TAG, "Sync Complete. " + results.size() + " locations, "
+                    + batches.size() + " parsed, " + changed + " days changed");
+        }
+        setLocationStatus(getContext(), preferred.status);
+
+        record.finish(preferred.status, results.size(),
+                mHttpTransport.getBytesReceived() - bytesAtStart, changed,
+                runtime.totalMemory() - runtime.freeMemory() - heapAtStart);
+        sSyncMetrics.add(record);
+        saveSyncRecord(record);
+        if (Log.isLoggable(LOG_TAG, Log.DEBUG)) {
+            Log.d(LOG_TAG, "Sync metrics: " + record);
+        }
+
+        // A sync that didn't reach the server says nothing about how often the forecast changes
+        SyncSchedulePolicy policy = loadSchedulePolicy(getContext());
+        if (anySucceeded) {
+            policy.onSync(System.currentTimeMillis(), changed > 0);
+            saveSchedulePolicy(getContext(), policy);
+        }
+        schedulePeriodicSync(getContext(), policy, true);
+        return preferred.status;
+    }
+
+    /**
+     * Record that the forecast was looked at, in the app or on the wearable, and bring the next
+     * sync closer if it was put off while nobody was looking.
+     */
+    public static void onForecastViewed(Context context) {
+        Utility.setLastViewTime(context, System.currentTimeMillis());
+        schedulePeriodicSync(context, loadSchedulePolicy(context), false);
+    }
+
+    /**
+     * Move the periodic sync to the interval the schedule policy wants now.
+     *
+     * @param synced whether a sync just finished.  Otherwise the sync is only ever brought
+     *               closer, every reschedule restarts the period and would put it off.
+     */
+    private static void schedulePeriodicSync(Context context, SyncSchedulePolicy policy,
+                                             boolean synced) {
+        long now = System.currentTimeMillis();
+        // A widget can't tell when it's looked at.  One on the home screen is seen whenever the
+        // home screen is, so while one is placed the forecast counts as viewed.
+        long lastViewTime = hasWidgets(context) ? now : Utility.getLastViewTime(context);
+        long interval = policy.getIntervalMillis(now, lastViewTime, Utility.isCharging(context),
+                Utility.isUnmetered(context));
+
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        String intervalKey = context.getString(R.string.pref_sync_interval_key);
+        long scheduled = sp.getLong(intervalKey, SyncSchedulePolicy.DEFAULT_INTERVAL_MILLIS);
+        if (SyncSchedulePolicy.isWorthRescheduling(scheduled, interval)
+                && (synced || interval < scheduled)) {
+            int syncInterval = (int) (interval / 1000);
+            configurePeriodicSync(context, syncInterval, syncInterval / 3);
+            sp.edit().putLong(intervalKey, interval).apply();
+            if (Log.isLoggable(LOG_TAG, Log.DEBUG)) {
+                Log.d(LOG_TAG, "Periodic sync moved from " + scheduled / 60000 + " to "
+                        + interval / 60000 + " minutes");
+            }
+        }
+    }
+
+    private static boolean hasWidgets(Context context) {
+        AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+        return appWidgetManager.getAppWidgetIds(
+                new ComponentName(context, TodayWidgetProvider.class)).length > 0
+                || appWidgetManager.getAppWidgetIds(
+                new ComponentName(context, DetailWidgetProvider.class)).length > 0;
+    }
+
+    private static SyncSchedulePolicy loadSchedulePolicy(Context context) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        return new SyncSchedulePolicy(
+                sp.getLong(context.getString(R.string.pref_sync_change_millis_key), 0),
+                sp.getLong(context.getString(R.string.pref_sync_last_change_key), 0),
+                sp.getLong(context.getString(R.string.pref_sync_last_sync_key), 0));
+    }
+
+    private static void saveSchedulePolicy(Context context, SyncSchedulePolicy policy) {
+        PreferenceManager.getDefaultSharedPreferences(context).edit()
+                .putLong(context.getString(R.string.pref_sync_change_millis_key),
+                        policy.getMeanChangeMillis())
+                .putLong(context.getString(R.string.pref_sync_last_change_key),
+                        policy.getLastChangeTime())
+                .putLong(context.getString(R.string.pref_sync_last_sync_key),
+                        policy.getLastSyncTime())
+                .apply();
+    }
+
+    /**
+     * @return the stage times of the syncs run since the process started, the older ones are in
+     * the sync_history table.
+     */
+    public static SyncMetrics getSyncMetrics() {
+        return sSyncMetrics;
+    }
 
-        // These two need to be declared outside the try/catch
-        // so that they can be closed in the finally block.
-        HttpURLConnection urlConnection = null;
-        BufferedReader reader = null;
+    /**
+     * Add a finished sync to the sync_history table.
+     */
+    private void saveSyncRecord(SyncMetrics.Record record) {
+        ContentValues values = new ContentValues();
+        values.put(WeatherContract.SyncHistoryEntry.COLUMN_START_TIME, record.getStartTime());
+        values.put(WeatherContract.SyncHistoryEntry.COLUMN_TOTAL_MILLIS, record.getTotalMillis());
+        values.put(WeatherContract.SyncHistoryEntry.COLUMN_FETCH_MILLIS,
+                record.getStageMillis(SyncMetrics.STAGE_FETCH));
+        values.put(WeatherContract.SyncHistoryEntry.COLUMN_PARSE_MILLIS,
+                record.getStageMillis(SyncMetrics.STAGE_PARSE));
+        values.put(WeatherContract.SyncHistoryEntry.COLUMN_WRITE_MILLIS,
+                record.getStageMillis(SyncMetrics.STAGE_WRITE));
+        values.put(WeatherContract.SyncHistoryEntry.COLUMN_WEARABLE_MILLIS,
+                record.getStageMillis(SyncMetrics.STAGE_WEARABLE));
+        values.put(WeatherContract.SyncHistoryEntry.COLUMN_WIDGETS_MILLIS,
+                record.getStageMillis(SyncMetrics.STAGE_WIDGETS));
+        values.put(WeatherContract.SyncHistoryEntry.COLUMN_MUZEI_MILLIS,
+                record.getStageMillis(SyncMetrics.STAGE_MUZEI));
+        values.put(WeatherContract.SyncHistoryEntry.COLUMN_NOTIFY_MILLIS,
+                record.getStageMillis(SyncMetrics.STAGE_NOTIFY));
+        values.put(WeatherContract.SyncHistoryEntry.COLUMN_BYTES_RECEIVED,
+                record.getBytesReceived());
+        values.put(WeatherContract.SyncHistoryEntry.COLUMN_ROWS_WRITTEN, record.getRowsWritten());
+        values.put(WeatherContract.SyncHistoryEntry.COLUMN_LOCATIONS, record.getLocations());
+        values.put(WeatherContract.SyncHistoryEntry.COLUMN_ALLOCATED_BYTES,
+                record.getAllocatedBytes());
+        values.put(WeatherContract.SyncHistoryEntry.COLUMN_NETWORK_TYPE, record.getNetworkType());
+        values.put(WeatherContract.SyncHistoryEntry.COLUMN_STATUS, record.getStatus());
+        getContext().getContentResolver().insert(
+                WeatherContract.SyncHistoryEntry.CONTENT_URI, values);
+    }
 
-        // Will contain the raw JSON response as a string.
-        String forecastJsonStr = null;
+    /**
+     * @return the locations to sync: the preferred one first, followed by the ones the user
+     * saved, up to MAX_SYNCED_LOCATIONS.  Locations the app merely fetched once, before the
+     * preferred location was changed, aren't synced any more.
+     */
+    private List<String> getSyncedLocations(String preferredLocation) {
+        List<String> locationSettings = new ArrayList<>();
+        locationSettings.add(preferredLocation);
+        for (String saved : Utility.getSavedLocations(getContext())) {
+            if (locationSettings.size() == MAX_SYNCED_LOCATIONS) {
+                break;
+            }
+            if (!locationSettings.contains(saved)) {
+                locationSettings.add(saved);
+            }
+        }
+        return locationSettings;
+    }
+
+    /**
+     * Delete the locations which aren't synced any more, and their forecasts.
+     */
+    private void deleteUnsyncedLocations(List<String> locationSettings) {
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < locationSettings.size(); i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
+        }
+        String[] selectionArgs = locationSettings.toArray(new String[locationSettings.size()]);
+        String unsynced = WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING
+                + " NOT IN (" + placeholders + ")";
+
+        // The forecasts first, they refer to their location
+        ContentResolver resolver = getContext().getContentResolver();
+        resolver.delete(WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " IN (SELECT "
+                        + WeatherContract.LocationEntry._ID + " FROM "
+                        + WeatherContract.LocationEntry.TABLE_NAME + " WHERE " + unsynced + ")",
+                selectionArgs);
+        resolver.delete(WeatherContract.LocationEntry.CONTENT_URI, unsynced, selectionArgs);
+    }
+
+    /**
+     * Fetch and parse the forecast of one location.  Runs on the sync engine's threads.
+     *
+     * @param record gets the time spent fetching and parsing added.
+     */
+    private ForecastSyncEngine.LocationResult fetchForecast(String locationQuery,
+                                                            SyncMetrics.Record record) {
+        // This needs to be declared outside the try/catch
+        // so that it can be closed in the finally block.
+        ForecastCache.Response response = null;
 
         String format = "json";
         String units = "metric";
@@ -148,269 +426,211 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
 
             URL url = new URL(builtUri.toString());
 
-            // Create the request to OpenWeatherMap, and open the connection
-            urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setRequestMethod("GET");
-            urlConnection.connect();
-
-            // Read the input stream into a String
-            InputStream inputStream = urlConnection.getInputStream();
-            StringBuffer buffer = new StringBuffer();
-            if (inputStream == null) {
-                // Nothing to do.
-                return;
-            }
-            reader = new BufferedReader(new InputStreamReader(inputStream));
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                // Since it's JSON, adding a newline isn't necessary (it won't affect parsing)
-                // But it does make debugging a *lot* easier if you print out the completed
-                // buffer for debugging.
-                buffer.append(line + "\n");
+            // Request the forecast from OpenWeatherMap, unless the cached one is still fresh
+            long start = System.nanoTime();
+            response = mForecastCache.fetch(url);
+            start = record.endStage(SyncMetrics.STAGE_FETCH, start);
+
+            if (response.isUnchanged() && hasForecast(locationQuery, response.getFetchTime())) {
+                // The stored forecast came from this very response, there is nothing to parse
+                return new ForecastSyncEngine.LocationResult(
+                        locationQuery, LOCATION_STATUS_OK, null);
             }
 
-            if (buffer.length() == 0) {
-                // Stream was empty.  No point in parsing.
-                setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
-                return;
+            // Parse the response while it is being read, instead of buffering it into a String
+            ForecastSyncEngine.LocationResult result = getWeatherDataFromStream(
+                    response.getBody(), response.getFetchTime(), locationQuery);
+            // An error body must not be replayed as the forecast until it goes stale
+            if (result.status == LOCATION_STATUS_OK) {
+                response.commit();
             }
-            forecastJsonStr = buffer.toString();
-            getWeatherDataFromJson(forecastJsonStr, locationQuery);
+            record.endStage(SyncMetrics.STAGE_PARSE, start);
+            return result;
+        } catch (MalformedJsonException e) {
+            Log.e(LOG_TAG, e.getMessage(), e);
+            return new ForecastSyncEngine.LocationResult(
+                    locationQuery, LOCATION_STATUS_SERVER_INVALID, null);
         } catch (IOException e) {
             Log.e(LOG_TAG, "Error ", e);
             // If the code didn't successfully get the weather data, there's no point in attempting
             // to parse it.
-            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
-        } catch (JSONException e) {
-            Log.e(LOG_TAG, e.getMessage(), e);
-            e.printStackTrace();
-            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_INVALID);
+            return new ForecastSyncEngine.LocationResult(
+                    locationQuery, LOCATION_STATUS_SERVER_DOWN, null);
         } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
-            }
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (final IOException e) {
-                    Log.e(LOG_TAG, "Error closing stream", e);
-                }
+            if (response != null) {
+                response.close();
             }
         }
-        return;
     }
 
     /**
-     * Take the String representing the complete forecast in JSON Format and
-     * pull out the data we need to construct the Strings needed for the wireframes.
-     * <p/>
-     * Fortunately parsing is easy:  constructor takes the JSON string and converts it
-     * into an Object hierarchy for us.
+     * @return true if the database still holds the forecast for the location fetched at
+     * fetchTime.  It can be gone after a database upgrade, in which case the cached body has to
+     * be parsed again.
      */
-    private void getWeatherDataFromJson(String forecastJsonStr,
-                                        String locationSetting)
-            throws JSONException {
-
-        // Now we have a String representing the complete forecast in JSON Format.
-        // Fortunately parsing is easy:  constructor takes the JSON string and converts it
-        // into an Object hierarchy for us.
-
-        // These are the names of the JSON objects that need to be extracted.
-
-        // Location information
-        final String OWM_CITY = "city";
-        final String OWM_CITY_NAME = "name";
-        final String OWM_COORD = "coord";
-
-        // Location coordinate
-        final String OWM_LATITUDE = "lat";
-        final String OWM_LONGITUDE = "lon";
-
-        // Weather information.  Each day's forecast info is an element of the "list" array.
-        final String OWM_LIST = "list";
-
-        final String OWM_PRESSURE = "pressure";
-        final String OWM_HUMIDITY = "humidity";
-        final String OWM_WINDSPEED = "speed";
-        final String OWM_WIND_DIRECTION = "deg";
-
-        // All temperatures are children of the "temp" object.
-        final String OWM_TEMPERATURE = "temp";
-        final String OWM_MAX = "max";
-        final String OWM_MIN = "min";
-
-        final String OWM_WEATHER = "weather";
-        final String OWM_DESCRIPTION = "main";
-        final String OWM_WEATHER_ID = "id";
-
-        final String OWM_MESSAGE_CODE = "cod";
-
+    private boolean hasForecast(String locationSetting, long fetchTime) {
+        Cursor cursor = getContext().getContentResolver().query(
+                WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                        locationSetting, WeatherContract.normalizeDate(fetchTime)),
+                new String[]{WeatherContract.WeatherEntry.TABLE_NAME + "." +
+                        WeatherContract.WeatherEntry._ID},
+                null,
+                null,
+                null);
+        if (cursor == null) {
+            return false;
+        }
         try {
-            JSONObject forecastJson = new JSONObject(forecastJsonStr);
-
-            // do we have an error?
-            if (forecastJson.has(OWM_MESSAGE_CODE)) {
-                int errorCode = forecastJson.getInt(OWM_MESSAGE_CODE);
-
-                switch (errorCode) {
-                    case HttpURLConnection.HTTP_OK:
-                        break;
-                    case HttpURLConnection.HTTP_NOT_FOUND:
-                        setLocationStatus(getContext(), LOCATION_STATUS_INVALID);
-                        return;
-                    default:
-                        setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
-                        return;
-                }
-            }
-
-            JSONArray weatherArray = forecastJson.getJSONArray(OWM_LIST);
-
-            JSONObject cityJson = forecastJson.getJSONObject(OWM_CITY);
-            String cityName = cityJson.getString(OWM_CITY_NAME);
-
-            JSONObject cityCoord = cityJson.getJSONObject(OWM_COORD);
-            double cityLatitude = cityCoord.getDouble(OWM_LATITUDE);
-            double cityLongitude = cityCoord.getDouble(OWM_LONGITUDE);
-
-            long locationId = addLocation(locationSetting, cityName, cityLatitude, cityLongitude);
-
-            // Insert the new weather information into the database
-            Vector<ContentValues> cVVector = new Vector<ContentValues>(weatherArray.length());
-
-            // OWM returns daily forecasts based upon the local time of the city that is being
-            // asked for, which means that we need to know the GMT offset to translate this data
-            // properly.
-
-            // Since this data is also sent in-order and the first day is always the
-            // current day, we're going to take advantage of that to get a nice
-            // normalized UTC date for all of our weather.
-
-            Time dayTime = new Time();
-            dayTime.setToNow();
+            return cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
 
-            // we start at the day returned by local time. Otherwise this is a mess.
-            int julianStartDay = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
+    /**
+     * Read the forecast from the response stream.  The days are collected into a
+     * {@link ForecastBatch} as the stream is parsed, so the response is never held in memory as a
+     * whole and no ContentValues are built.
+     *
+     * @param fetchTime when the response was fetched, its first day is the local day at that time.
+     * @return the status of the location, with the batch if the response had a forecast.
+     */
+    private ForecastSyncEngine.LocationResult getWeatherDataFromStream(InputStream forecastStream,
+                                                                      long fetchTime,
+                                                                      String locationSetting)
+            throws IOException {
+
+        // OWM returns daily forecasts based upon the local time of the city that is being
+        // asked for, which means that we need to know the GMT offset to translate this data
+        // properly.
+
+        // Since this data is also sent in-order and the first day is always the
+        // current day, we're going to take advantage of that to get a nice
+        // normalized UTC date for all of our weather.
+
+        Time dayTime = new Time();
+        dayTime.set(fetchTime);
+
+        // we start at the day returned by local time. Otherwise this is a mess.
+        final int julianStartDay = Time.getJulianDay(fetchTime, dayTime.gmtoff);
+
+        // now we work exclusively in UTC
+        final Time utcDayTime = new Time();
+
+        final ForecastBatch batch = new ForecastBatch();
+        final String[] cityName = new String[1];
+        final double[] cityCoord = new double[2];
+
+        int messageCode = ForecastParser.parse(forecastStream, new ForecastParser.Callback() {
+            @Override
+            public void onCity(String name, double latitude, double longitude) {
+                cityName[0] = name;
+                cityCoord[0] = latitude;
+                cityCoord[1] = longitude;
+            }
 
-            // now we work exclusively in UTC
-            dayTime = new Time();
+            @Override
+            public void onDay(int index, int weatherId, String description, double high,
+                              double low, double pressure, int humidity, double windSpeed,
+                              double windDirection) {
+                // Cheating to convert this to UTC time, which is what we want anyhow
+                long dateTime = utcDayTime.setJulianDay(julianStartDay + index);
 
-            for (int i = 0; i < weatherArray.length(); i++) {
-                // These are the values that will be collected.
-                long dateTime;
-                double pressure;
-                int humidity;
-                double windSpeed;
-                double windDirection;
+                batch.add(dateTime, weatherId, description, low, high,
+                        humidity, pressure, windSpeed, windDirection);
+            }
+        });
+
+        // do we have an error?
+        switch (messageCode) {
+            case HttpURLConnection.HTTP_OK:
+                break;
+            case HttpURLConnection.HTTP_NOT_FOUND:
+                return new ForecastSyncEngine.LocationResult(
+                        locationSetting, LOCATION_STATUS_INVALID, null);
+            default:
+                return new ForecastSyncEngine.LocationResult(
+                        locationSetting, LOCATION_STATUS_SERVER_DOWN, null);
+        }
 
-                double high;
-                double low;
+        batch.setLocation(locationSetting, cityName[0], cityCoord[0], cityCoord[1]);
+        return new ForecastSyncEngine.LocationResult(locationSetting, LOCATION_STATUS_OK, batch);
+    }
 
-                String description;
-                int weatherId;
+    /**
+     * Hand the forecast, as the watch face will render it, to the wearable channel.  The watch
+     * keeps every day of it and moves on to the next one at midnight by itself.  The channel
+     * coalesces it with other updates and only sends it if it renders differently.
+     */
+    private void updateWearable(ForecastBatch batch) {
+        int days = Math.min(batch.size(), WearableForecastQuery.MAX_DAYS);
+        if (days > 0) {
+            boolean isMetric = Utility.isMetric(getContext());
+            int[] weatherIds = new int[days];
+            int[] highs = new int[days];
+            int[] lows = new int[days];
+            for (int i = 0; i < days; i++) {
+                weatherIds[i] = batch.getWeatherId(i);
+                highs[i] = WearableForecastQuery.toWearableTemperature(batch.getMaxTemp(i),
+                        isMetric);
+                lows[i] = WearableForecastQuery.toWearableTemperature(batch.getMinTemp(i),
+                        isMetric);
+            }
+            WearForecast forecast = new WearForecast(
+                    WearForecast.localEpochDay(batch.getDate(0), TimeZone.getDefault()),
+                    weatherIds, highs, lows);
+            WearableForecastChannel.getInstance(getContext()).post(forecast);
+        }
+    }
 
-                // Get the JSON object representing the day
-                JSONObject dayForecast = weatherArray.getJSONObject(i);
+    /**
+     * Store the forecasts through the provider's ForecastBatch fast path, which only writes the
+     * days that changed since the last sync, for all locations in one transaction.  The provider
+     * lives in our own process, so this only falls back to a ContentValues bulkInsert per
+     * location, rewriting every day, on platforms that can't hand us the provider instance.
+     *
+     * @param deleteBefore forecasts for days before this are deleted.
+     * @return the number of days written.
+     */
+    private int writeForecasts(ContentProviderClient provider, List<ForecastBatch> batches,
+                               long deleteBefore) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB && provider != null) {
+            ContentProvider localProvider = provider.getLocalContentProvider();
+            if (localProvider instanceof WeatherProvider) {
+                return ((WeatherProvider) localProvider).writeForecasts(batches, deleteBefore);
+            }
+        }
 
-                // Cheating to convert this to UTC time, which is what we want anyhow
-                dateTime = dayTime.setJulianDay(julianStartDay + i);
-
-                pressure = dayForecast.getDouble(OWM_PRESSURE);
-                humidity = dayForecast.getInt(OWM_HUMIDITY);
-                windSpeed = dayForecast.getDouble(OWM_WINDSPEED);
-                windDirection = dayForecast.getDouble(OWM_WIND_DIRECTION);
-
-                // Description is in a child array called "weather", which is 1 element long.
-                // That element also contains a weather code.
-                JSONObject weatherObject =
-                        dayForecast.getJSONArray(OWM_WEATHER).getJSONObject(0);
-                description = weatherObject.getString(OWM_DESCRIPTION);
-                weatherId = weatherObject.getInt(OWM_WEATHER_ID);
-
-                // Temperatures are in a child object called "temp".  Try not to name variables
-                // "temp" when working with temperature.  It confuses everybody.
-                JSONObject temperatureObject = dayForecast.getJSONObject(OWM_TEMPERATURE);
-                high = temperatureObject.getDouble(OWM_MAX);
-                low = temperatureObject.getDouble(OWM_MIN);
+        int inserted = 0;
+        for (ForecastBatch batch : batches) {
+            long locationId = addLocation(batch.getLocationSetting(), batch.getCityName(),
+                    batch.getCoordLat(), batch.getCoordLong());
 
+            ContentValues[] cvArray = new ContentValues[batch.size()];
+            for (int i = 0; i < batch.size(); i++) {
                 ContentValues weatherValues = new ContentValues();
 
                 weatherValues.put(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationId);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, dateTime);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, humidity);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, pressure);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, windSpeed);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, windDirection);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, high);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, low);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, description);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherId);
-
-                cVVector.add(weatherValues);
-
-                // Check the Wearable status and send an update if needed
-
-                String currentWearableHigh = Utility.getWearableHighTempStatus(getContext());
-                String currentWearableLow = Utility.getWearableLowTempStatus(getContext());
-                Integer currentWearableId = Utility.getWearableWeatherConditionStatus(getContext());
-
-                // Format the temperatures for easier comparison
-                String formattedHigh = Utility.formatTemperature(getContext(), high);
-                String formattedLow = Utility.formatTemperature(getContext(), low);
-
-                // For the values of Today
-                if (i == 0) {
-                    // Compare the values and if not equal then send an update
-                    if (currentWearableHigh.equals(formattedHigh) ||
-                            currentWearableLow.equals(formattedLow) ||
-                            currentWearableId != weatherId) {
-                        Log.d(LOG_TAG, "Wearable will be updated");
-
-                        mUpdateWearableForecast = new UpdateWearableForecast(getContext());
-                        mUpdateWearableForecast.UpdateForecast(
-                                weatherId, formattedHigh, formattedLow
-                        );
-
-                        Utility.setWearableHighTempStatus(getContext(), formattedHigh);
-                        Utility.setWearableLowTempStatus(getContext(), formattedLow);
-                        Utility.setWearableWeatherConditionStatus(getContext(), weatherId);
-                    }
-                }
-            }
-
-            int inserted = 0;
-            // add to database
-            if (cVVector.size() > 0) {
-                ContentValues[] cvArray = new ContentValues[cVVector.size()];
-                cVVector.toArray(cvArray);
-                getContext().getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, cvArray);
-
-                // delete old data so we don't build up an endless history
-                getContext().getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
-                        WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
-                        new String[]{Long.toString(dayTime.setJulianDay(julianStartDay - 1))});
-
-                updateWidgets();
-                updateMuzei();
-                notifyWeather();
-            }
-            if (Log.isLoggable(LOG_TAG, Log.DEBUG)) {
-                Log.d(LOG_TAG, "Sync Complete. " + cVVector.size() + " Inserted");
-            }
-            setLocationStatus(getContext(), LOCATION_STATUS_OK);
-            if (mUpdateWearableForecast != null) {
-                if (Log.isLoggable(LOG_TAG, Log.DEBUG)) {
-                    Log.d(LOG_TAG, "UpdateWearableForecast disconnected");
-                }
-                mUpdateWearableForecast.disconnectApiConnection();
+                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, batch.getDate(i));
+                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, batch.getHumidity(i));
+                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, batch.getPressure(i));
+                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, batch.getWindSpeed(i));
+                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, batch.getDegrees(i));
+                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, batch.getMaxTemp(i));
+                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, batch.getMinTemp(i));
+                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, batch.getShortDesc(i));
+                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, batch.getWeatherId(i));
+
+                cvArray[i] = weatherValues;
             }
-
-        } catch (JSONException e) {
-            Log.e(LOG_TAG, e.getMessage(), e);
-            e.printStackTrace();
-            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_INVALID);
+            inserted += getContext().getContentResolver().bulkInsert(
+                    WeatherContract.WeatherEntry.CONTENT_URI, cvArray);
         }
+
+        getContext().getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " < ?",
+                new String[]{Long.toString(deleteBefore)});
+        return inserted;
     }
 
     private void updateWidgets() {
@@ -613,11 +833,50 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
      * @param context The context used to access the account service
      */
     public static void syncImmediately(Context context) {
-        Bundle bundle = new Bundle();
-        bundle.putBoolean(ContentResolver.SYNC_EXTRAS_EXPEDITED, true);
-        bundle.putBoolean(ContentResolver.SYNC_EXTRAS_MANUAL, true);
-        ContentResolver.requestSync(getSyncAccount(context),
-                context.getString(R.string.content_authority), bundle);
+        syncImmediately(context, null);
+    }
+
+    /**
+     * Have the sync adapter sync the preferred location soon.  Requests made together are
+     * merged and a sync of the location already running is joined, see {@link SyncCoordinator}.
+     *
+     * @param callback gets the result of the sync, may be null
+     */
+    public static void syncImmediately(Context context, SyncCoordinator.Callback callback) {
+        getSyncCoordinator(context).request(Utility.getPreferredLocation(context), callback);
+    }
+
+    /**
+     * @return the coordinator every sync request of the process goes through.
+     */
+    public static synchronized SyncCoordinator getSyncCoordinator(Context context) {
+        if (sSyncCoordinator == null) {
+            final Context appContext = context.getApplicationContext();
+            final Handler handler = new Handler(Looper.getMainLooper());
+            sSyncCoordinator = new SyncCoordinator(
+                    new SyncCoordinator.Requester() {
+                        @Override
+                        public void requestSync() {
+                            Bundle bundle = new Bundle();
+                            bundle.putBoolean(ContentResolver.SYNC_EXTRAS_EXPEDITED, true);
+                            bundle.putBoolean(ContentResolver.SYNC_EXTRAS_MANUAL, true);
+                            ContentResolver.requestSync(getSyncAccount(appContext),
+                                    appContext.getString(R.string.content_authority), bundle);
+                        }
+                    },
+                    new SyncCoordinator.Timer() {
+                        @Override
+                        public void schedule(Runnable task, long delayMillis) {
+                            handler.postDelayed(task, delayMillis);
+                        }
+
+                        @Override
+                        public void cancel(Runnable task) {
+                            handler.removeCallbacks(task);
+                        }
+                    });
+        }
+        return sSyncCoordinator;
     }
 
     /**
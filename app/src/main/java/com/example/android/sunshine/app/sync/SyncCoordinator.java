@@ -0,0 +1,196 @@
+package com.example.android.sunshine.app.sync;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Makes sure one sync at a time is asked for, whatever asks for it.  Requests made within
+ * QUIET_WINDOW_MILLIS of the first one are merged into one sync, and requests for the location
+ * a running sync is for join it instead of queueing another.  Everyone who asked gets the
+ * result of the sync which served them.  A request for another location, which is what changing
+ * the location in the settings makes, waits for the running sync and then gets one of its own.
+ * <p/>
+ * The sync adapter reports every sync it runs, periodic ones included, with onSyncStarted and
+ * onSyncFinished.  The sync framework sits behind {@link Requester}, so the bookkeeping can be
+ * tested without it.
+ */
+public class SyncCoordinator {
+    public static final long QUIET_WINDOW_MILLIS = 2 * 1000;
+    // A requested sync which didn't start by then, because the framework dropped it, is
+    // requested again by the next request
+    public static final long REQUEST_TIMEOUT_MILLIS = 60 * 1000;
+
+    public enum Outcome {
+        /** A sync for the location is running, the request gets its result. */
+        JOINED,
+        /** Merged with requests waiting for the next sync. */
+        MERGED,
+        /** The first request for the next sync, which is asked for once the window is over. */
+        SCHEDULED
+    }
+
+    public interface Callback {
+        /**
+         * Called on the thread which ran the sync.
+         *
+         * @param location the location the sync was for
+         * @param status   one of the SunshineSyncAdapter LOCATION_STATUS values
+         */
+        void onSyncFinished(String location, int status);
+    }
+
+    /**
+     * Asks the sync framework for a sync, which then starts with onSyncStarted.
+     */
+    public interface Requester {
+        void requestSync();
+    }
+
+    /**
+     * Runs the window and the timeout, see Handler.postDelayed.
+     */
+    public interface Timer {
+        void schedule(Runnable task, long delayMillis);
+
+        void cancel(Runnable task);
+    }
+
+    private final Requester mRequester;
+    private final Timer mTimer;
+
+    // The requests not served by a running sync, for the latest location asked for.  null
+    // if there are none.
+    private String mPendingLocation;
+    private final List<Callback> mPendingCallbacks = new ArrayList<>();
+    private boolean mWindowOpen;
+    private boolean mRequested;
+    private boolean mRequestExpired;
+
+    // The running sync, null if none runs
+    private String mRunningLocation;
+    private final List<Callback> mRunningCallbacks = new ArrayList<>();
+
+    private int mSyncRequests;
+
+    private final Runnable mWindowEnd = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (SyncCoordinator.this) {
+                mWindowOpen = false;
+                // Served by a sync which started meanwhile, or waiting for the running one
+                if (mPendingLocation == null || mRunningLocation != null) {
+                    return;
+                }
+                markRequested();
+            }
+            mRequester.requestSync();
+        }
+    };
+
+    private final Runnable mRequestTimeout = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (SyncCoordinator.this) {
+                mRequestExpired = mRequested && mPendingLocation != null;
+            }
+        }
+    };
+
+    public SyncCoordinator(Requester requester, Timer timer) {
+        mRequester = requester;
+        mTimer = timer;
+    }
+
+    /**
+     * Ask for a sync of the location.
+     *
+     * @param callback gets the result of the sync serving the request, may be null.
+     */
+    public Outcome request(String location, Callback callback) {
+        Outcome outcome;
+        synchronized (this) {
+            if (location.equals(mRunningLocation)) {
+                add(mRunningCallbacks, callback);
+                return Outcome.JOINED;
+            }
+            if (mPendingLocation == null) {
+                mWindowOpen = true;
+                mTimer.schedule(mWindowEnd, QUIET_WINDOW_MILLIS);
+                outcome = Outcome.SCHEDULED;
+            } else {
+                outcome = Outcome.MERGED;
+            }
+            // The latest location wins, the sync starts with the preferred location anyway
+            mPendingLocation = location;
+            add(mPendingCallbacks, callback);
+            if (!mRequestExpired) {
+                return outcome;
+            }
+            markRequested();
+        }
+        mRequester.requestSync();
+        return outcome;
+    }
+
+    /**
+     * A sync started.  The pending requests for its location are served by it.
+     */
+    public synchronized void onSyncStarted(String location) {
+        mRunningLocation = location;
+        if (location.equals(mPendingLocation)) {
+            mRunningCallbacks.addAll(mPendingCallbacks);
+            mPendingCallbacks.clear();
+            mPendingLocation = null;
+            mWindowOpen = false;
+            mRequested = false;
+            mRequestExpired = false;
+            mTimer.cancel(mWindowEnd);
+            mTimer.cancel(mRequestTimeout);
+        }
+    }
+
+    /**
+     * The sync started with onSyncStarted finished, successfully or not.  Requests which had to
+     * wait for it are asked for now.
+     */
+    public void onSyncFinished(String location, int status) {
+        List<Callback> callbacks;
+        boolean requestNow = false;
+        synchronized (this) {
+            callbacks = new ArrayList<>(mRunningCallbacks);
+            mRunningCallbacks.clear();
+            mRunningLocation = null;
+            if (mPendingLocation != null && !mWindowOpen) {
+                markRequested();
+                requestNow = true;
+            }
+        }
+        if (requestNow) {
+            mRequester.requestSync();
+        }
+        for (Callback callback : callbacks) {
+            callback.onSyncFinished(location, status);
+        }
+    }
+
+    /**
+     * @return how often a sync was asked for.
+     */
+    public synchronized int getSyncRequestCount() {
+        return mSyncRequests;
+    }
+
+    private void markRequested() {
+        mRequested = true;
+        mRequestExpired = false;
+        mSyncRequests++;
+        mTimer.cancel(mRequestTimeout);
+        mTimer.schedule(mRequestTimeout, REQUEST_TIMEOUT_MILLIS);
+    }
+
+    private static void add(List<Callback> callbacks, Callback callback) {
+        if (callback != null) {
+            callbacks.add(callback);
+        }
+    }
+}
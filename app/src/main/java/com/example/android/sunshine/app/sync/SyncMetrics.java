@@ -0,0 +1,174 @@
+package com.example.android.sunshine.app.sync;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Where the time of the recent syncs went: the duration of every stage, the bytes received and
+ * rows written, and a rough count of the bytes allocated, for the last MAX_RECORDS syncs.  The
+ * sync adapter also stores every record in the sync_history table, so slow syncs in the field
+ * can be read back with the network they ran on.
+ * <p/>
+ * Recording costs a few System.nanoTime calls per stage, there's nothing to turn off.
+ */
+public class SyncMetrics {
+    // Fetching the response of every location, up to the body.  Locations are fetched in
+    // parallel, so the fetch and parse times are summed over threads and can add up to more
+    // than the whole sync.
+    public static final int STAGE_FETCH = 0;
+    // Reading and parsing the bodies, which streams them from the network
+    public static final int STAGE_PARSE = 1;
+    // Adding locations, writing the changed days and deleting old ones, in one transaction
+    public static final int STAGE_WRITE = 2;
+    public static final int STAGE_WEARABLE = 3;
+    public static final int STAGE_WIDGETS = 4;
+    public static final int STAGE_MUZEI = 5;
+    public static final int STAGE_NOTIFY = 6;
+    public static final int STAGE_COUNT = 7;
+
+    private static final String[] STAGE_NAMES = {
+            "fetch", "parse", "write", "wearable", "widgets", "muzei", "notify"
+    };
+
+    // About a day of hourly syncs, the rest is in sync_history
+    static final int MAX_RECORDS = 32;
+
+    /**
+     * The measurements of one sync.  Stage times may be added from any thread, the rest is set
+     * by the thread running the sync.
+     */
+    public static class Record {
+        private final long mStartTime;
+        private final long mStartNanos;
+        private final AtomicLongArray mStageNanos = new AtomicLongArray(STAGE_COUNT);
+
+        private long mTotalNanos;
+        private long mBytesReceived;
+        private int mRowsWritten;
+        private int mLocations;
+        private long mAllocatedBytes;
+        private String mNetworkType;
+        private int mStatus;
+
+        /**
+         * @param startTime   wall clock time the sync started at, in milliseconds.
+         * @param startNanos  System.nanoTime() at the start.
+         * @param networkType the active network, such as "WIFI" or "MOBILE/LTE".
+         */
+        public Record(long startTime, long startNanos, String networkType) {
+            mStartTime = startTime;
+            mStartNanos = startNanos;
+            mNetworkType = networkType;
+        }
+
+        /**
+         * Add the time from startNanos until now to a stage.
+         *
+         * @return now, to start timing the next stage with.
+         */
+        public long endStage(int stage, long startNanos) {
+            long now = System.nanoTime();
+            mStageNanos.addAndGet(stage, now - startNanos);
+            return now;
+        }
+
+        /**
+         * Finish the record.
+         *
+         * @param status one of the SunshineSyncAdapter LOCATION_STATUS values, for the
+         *               preferred location.
+         */
+        public void finish(int status, int locations, long bytesReceived, int rowsWritten,
+                           long allocatedBytes) {
+            mTotalNanos = System.nanoTime() - mStartNanos;
+            mStatus = status;
+            mLocations = locations;
+            mBytesReceived = bytesReceived;
+            mRowsWritten = rowsWritten;
+            mAllocatedBytes = Math.max(0, allocatedBytes);
+        }
+
+        public long getStartTime() {
+            return mStartTime;
+        }
+
+        public long getTotalMillis() {
+            return mTotalNanos / 1000000;
+        }
+
+        public long getStageMillis(int stage) {
+            return mStageNanos.get(stage) / 1000000;
+        }
+
+        public long getBytesReceived() {
+            return mBytesReceived;
+        }
+
+        public int getRowsWritten() {
+            return mRowsWritten;
+        }
+
+        public int getLocations() {
+            return mLocations;
+        }
+
+        /**
+         * @return the growth of the heap over the sync.  A collection during the sync makes this
+         * lower than what was really allocated, so it's only good for spotting large changes.
+         */
+        public long getAllocatedBytes() {
+            return mAllocatedBytes;
+        }
+
+        public String getNetworkType() {
+            return mNetworkType;
+        }
+
+        public int getStatus() {
+            return mStatus;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder()
+                    .append(getTotalMillis()).append(" ms on ").append(mNetworkType)
+                    .append(", status ").append(mStatus)
+                    .append(", ").append(mLocations).append(" locations, ")
+                    .append(mBytesReceived).append(" bytes in, ")
+                    .append(mRowsWritten).append(" rows, ~")
+                    .append(mAllocatedBytes).append(" bytes allocated |");
+            for (int stage = 0; stage < STAGE_COUNT; stage++) {
+                builder.append(' ').append(STAGE_NAMES[stage]).append(' ')
+                        .append(getStageMillis(stage)).append(" ms");
+            }
+            return builder.toString();
+        }
+    }
+
+    private final ArrayDeque<Record> mRecords = new ArrayDeque<>(MAX_RECORDS);
+
+    /**
+     * Keep a finished record, dropping the oldest one if there are too many.
+     */
+    public synchronized void add(Record record) {
+        if (mRecords.size() == MAX_RECORDS) {
+            mRecords.removeFirst();
+        }
+        mRecords.addLast(record);
+    }
+
+    /**
+     * @return the kept records, newest first.
+     */
+    public synchronized List<Record> getRecent() {
+        List<Record> records = new ArrayList<>(mRecords.size());
+        Iterator<Record> newestFirst = mRecords.descendingIterator();
+        while (newestFirst.hasNext()) {
+            records.add(newestFirst.next());
+        }
+        return records;
+    }
+}
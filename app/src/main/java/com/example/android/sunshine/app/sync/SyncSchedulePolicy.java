@@ -0,0 +1,130 @@
+package com.example.android.sunshine.app.sync;
+
+/**
+ * Decides how often the periodic sync runs.  The interval follows how often the stored forecast
+ * really changes, syncing about twice per change, and is stretched while nobody looks at the
+ * forecast and while a sync costs battery and metered data.  It always stays between
+ * MIN_INTERVAL_MILLIS and MAX_INTERVAL_MILLIS.
+ * <p/>
+ * Every call is given the current time, so a week of usage can be replayed on a simulated clock.
+ * Not thread safe.
+ */
+public class SyncSchedulePolicy {
+    public static final long HOUR_IN_MILLIS = 60 * 60 * 1000;
+    public static final long MIN_INTERVAL_MILLIS = HOUR_IN_MILLIS;
+    public static final long MAX_INTERVAL_MILLIS = 12 * HOUR_IN_MILLIS;
+    // The old fixed interval, used until two changes have been seen
+    public static final long DEFAULT_INTERVAL_MILLIS = 3 * HOUR_IN_MILLIS;
+
+    // Viewed this recently, the forecast is in use and the interval isn't stretched
+    static final long RECENT_VIEW_MILLIS = 6 * HOUR_IN_MILLIS;
+    // Not viewed for this long, nobody is looking
+    static final long IDLE_VIEW_MILLIS = 24 * HOUR_IN_MILLIS;
+    // Weight of the latest time between changes in the mean
+    static final float CHANGE_WEIGHT = 0.25f;
+
+    private long mMeanChangeMillis;
+    private long mLastChangeTime;
+    private long mLastSyncTime;
+
+    public SyncSchedulePolicy() {
+        this(0, 0, 0);
+    }
+
+    /**
+     * @param meanChangeMillis the mean time between changes saved from getMeanChangeMillis, 0 if
+     *                         it isn't known yet
+     * @param lastChangeTime   when a sync last changed the forecast, 0 if none did
+     * @param lastSyncTime     when the last sync finished, 0 if none did
+     */
+    public SyncSchedulePolicy(long meanChangeMillis, long lastChangeTime, long lastSyncTime) {
+        mMeanChangeMillis = meanChangeMillis;
+        mLastChangeTime = lastChangeTime;
+        mLastSyncTime = lastSyncTime;
+    }
+
+    /**
+     * A sync finished.
+     *
+     * @param now     the current time
+     * @param changed whether the sync changed the stored forecast
+     */
+    public void onSync(long now, boolean changed) {
+        // The forecast changed somewhere between the previous sync and this one, take the middle.
+        // Measuring up to this sync instead would make every stretched interval look like the
+        // forecast changed less often, and stretch the next one further.  A change or sync from
+        // the future means the clock was changed, it only restarts the measurement.
+        if (changed) {
+            long previousSync = Math.max(mLastSyncTime, mLastChangeTime);
+            long sinceChange = (previousSync + now) / 2 - mLastChangeTime;
+            if (mLastChangeTime > 0 && previousSync <= now && sinceChange > 0) {
+                if (mMeanChangeMillis == 0) {
+                    mMeanChangeMillis = sinceChange;
+                } else {
+                    mMeanChangeMillis +=
+                            (long) (CHANGE_WEIGHT * (sinceChange - mMeanChangeMillis));
+                }
+            }
+            mLastChangeTime = now;
+        }
+        mLastSyncTime = now;
+    }
+
+    /**
+     * @param now          the current time
+     * @param lastViewTime when the forecast was last looked at in the app, a widget or on the
+     *                     watch, 0 if it never was
+     * @param charging     whether the device is plugged in
+     * @param unmetered    whether the active network is unmetered
+     * @return the interval the periodic sync should run at.
+     */
+    public long getIntervalMillis(long now, long lastViewTime, boolean charging,
+                                  boolean unmetered) {
+        long interval;
+        if (mMeanChangeMillis == 0) {
+            interval = DEFAULT_INTERVAL_MILLIS;
+        } else {
+            // A long run of syncs without changes means they became rarer than the mean says.
+            // Counted up to the last sync only, so asking again later doesn't put it off.
+            interval = Math.max(mMeanChangeMillis, mLastSyncTime - mLastChangeTime) / 2;
+        }
+
+        long sinceView = now - lastViewTime;
+        if (lastViewTime == 0 || sinceView >= IDLE_VIEW_MILLIS) {
+            interval *= 4;
+        } else if (sinceView >= RECENT_VIEW_MILLIS) {
+            interval *= 2;
+        }
+
+        // Each costs about as much as the request itself is worth
+        if (!charging) {
+            interval = interval * 3 / 2;
+        }
+        if (!unmetered) {
+            interval = interval * 3 / 2;
+        }
+        return Math.min(MAX_INTERVAL_MILLIS, Math.max(MIN_INTERVAL_MILLIS, interval));
+    }
+
+    /**
+     * @param scheduledMillis the interval the periodic sync runs at, 0 if it isn't known
+     * @param intervalMillis  the interval from getIntervalMillis
+     * @return whether the periodic sync should be rescheduled.  Small changes are left alone,
+     * every reschedule restarts the period.
+     */
+    public static boolean isWorthRescheduling(long scheduledMillis, long intervalMillis) {
+        return Math.abs(intervalMillis - scheduledMillis) > scheduledMillis / 4;
+    }
+
+    public long getMeanChangeMillis() {
+        return mMeanChangeMillis;
+    }
+
+    public long getLastChangeTime() {
+        return mLastChangeTime;
+    }
+
+    public long getLastSyncTime() {
+        return mLastSyncTime;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.android.sunshine.app.wearable;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.wearable.DataApi;
+import com.google.android.gms.wearable.MessageApi;
+import com.google.android.gms.wearable.PutDataRequest;
+import com.google.android.gms.wearable.Wearable;
+
+/**
+ * The {@link WearableConnection.Client} on a device: one GoogleApiClient with the Wearable API,
+ * shared by the whole process through {@link #getConnection}.  It sends data items and
+ * messages, made with {@link #putDataItem} and {@link #sendMessage}.
+ */
+public class DataLayerClient implements WearableConnection.Client<DataLayerClient.Request>,
+        GoogleApiClient.ConnectionCallbacks,
+        GoogleApiClient.OnConnectionFailedListener {
+    private static final String LOG_TAG = DataLayerClient.class.getSimpleName();
+
+    private static WearableConnection<Request> sConnection;
+
+    private final GoogleApiClient mGoogleApiClient;
+    private WearableConnection.Callbacks mCallbacks;
+
+    /**
+     * Something to send once connected.
+     */
+    public static abstract class Request {
+        abstract void send(GoogleApiClient client);
+    }
+
+    public static Request putDataItem(final PutDataRequest request) {
+        return new Request() {
+            @Override
+            void send(GoogleApiClient client) {
+                Wearable.DataApi.putDataItem(client, request)
+                        .setResultCallback(new ResultCallback<DataApi.DataItemResult>() {
+                            @Override
+                            public void onResult(@NonNull DataApi.DataItemResult result) {
+                                if (!result.getStatus().isSuccess()) {
+                                    Log.d(LOG_TAG, "Failed to put " + request.getUri().getPath());
+                                }
+                            }
+                        });
+            }
+        };
+    }
+
+    public static Request sendMessage(final String nodeId, final String path, final byte[] data) {
+        return new Request() {
+            @Override
+            void send(GoogleApiClient client) {
+                Wearable.MessageApi.sendMessage(client, nodeId, path, data)
+                        .setResultCallback(new ResultCallback<MessageApi.SendMessageResult>() {
+                            @Override
+                            public void onResult(@NonNull MessageApi.SendMessageResult result) {
+                                if (!result.getStatus().isSuccess()) {
+                                    Log.d(LOG_TAG, "Failed to send " + path + " to " + nodeId);
+                                }
+                            }
+                        });
+            }
+        };
+    }
+
+    public static synchronized WearableConnection<Request> getConnection(Context context) {
+        if (sConnection == null) {
+            final Handler handler = new Handler(Looper.getMainLooper());
+            sConnection = new WearableConnection<>(
+                    new DataLayerClient(context.getApplicationContext()),
+                    new WearableConnection.Timer() {
+                        @Override
+                        public void schedule(Runnable task, long delayMillis) {
+                            handler.postDelayed(task, delayMillis);
+                        }
+
+                        @Override
+                        public void cancel(Runnable task) {
+                            handler.removeCallbacks(task);
+                        }
+                    },
+                    WearableConnection.IDLE_TIMEOUT_MILLIS);
+        }
+        return sConnection;
+    }
+
+    private DataLayerClient(Context context) {
+        mGoogleApiClient = new GoogleApiClient.Builder(context)
+                .addConnectionCallbacks(this)
+                .addOnConnectionFailedListener(this)
+                .addApi(Wearable.API)
+                .build();
+    }
+
+    @Override
+    public void connect(WearableConnection.Callbacks callbacks) {
+        mCallbacks = callbacks;
+        mGoogleApiClient.connect();
+    }
+
+    @Override
+    public void disconnect() {
+        mGoogleApiClient.disconnect();
+    }
+
+    @Override
+    public void put(Request item) {
+        item.send(mGoogleApiClient);
+    }
+
+    @Override
+    public void onConnected(Bundle bundle) {
+        Log.d(LOG_TAG, "Google API Client was connected");
+        mCallbacks.onConnected();
+    }
+
+    @Override
+    public void onConnectionSuspended(int cause) {
+        mCallbacks.onConnectionSuspended();
+    }
+
+    @Override
+    public void onConnectionFailed(@NonNull ConnectionResult connectionResult) {
+        Log.d(LOG_TAG, "Connection to Google API client has failed: " + connectionResult);
+        mCallbacks.onConnectionFailed();
+    }
+}
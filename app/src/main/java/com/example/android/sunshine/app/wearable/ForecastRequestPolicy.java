@@ -0,0 +1,78 @@
+package com.example.android.sunshine.app.wearable;
+
+import java.util.ArrayDeque;
+
+/**
+ * Decides how the phone answers the watch's forecast requests.  A request is answered with the
+ * forecast last sent, and only syncs when that forecast is stale: older than FRESH_MILLIS or no
+ * longer covering today.  Syncs forced by the watch are at most MIN_SYNC_INTERVAL_MILLIS apart,
+ * and a request delivered twice, which the data layer may do, is only answered once.
+ * Not thread safe.
+ */
+public class ForecastRequestPolicy {
+
+    public enum Decision {
+        /** Already answered, ignore it. */
+        DUPLICATE,
+        /** The forecast is fresh, answer with it. */
+        ANSWER,
+        /** The forecast is stale, answer with it and sync. */
+        SYNC,
+        /** The forecast is stale but the watch forced a sync too recently, only answer. */
+        THROTTLED
+    }
+
+    // The default periodic sync interval, a forecast this young is as fresh as it gets
+    public static final long FRESH_MILLIS = 3 * 60 * 60 * 1000;
+    public static final long MIN_SYNC_INTERVAL_MILLIS = 15 * 60 * 1000;
+
+    static final int MAX_REMEMBERED = 16;
+
+    private final long mFreshMillis;
+    private final long mMinSyncIntervalMillis;
+
+    // "node/request id" of the latest requests, oldest first
+    private final ArrayDeque<String> mRecent = new ArrayDeque<>(MAX_REMEMBERED);
+    private boolean mSynced;
+    private long mLastSync;
+
+    public ForecastRequestPolicy() {
+        this(FRESH_MILLIS, MIN_SYNC_INTERVAL_MILLIS);
+    }
+
+    public ForecastRequestPolicy(long freshMillis, long minSyncIntervalMillis) {
+        mFreshMillis = freshMillis;
+        mMinSyncIntervalMillis = minSyncIntervalMillis;
+    }
+
+    /**
+     * @param nodeId       the node the request came from
+     * @param requestId    the id the watch gave the request
+     * @param now          the current time
+     * @param forecastTime when the forecast last sent was synced, 0 if there is none
+     * @param coversToday  whether the forecast last sent has a day for today
+     */
+    public Decision onRequest(String nodeId, int requestId, long now, long forecastTime,
+                              boolean coversToday) {
+        String key = nodeId + '/' + requestId;
+        if (mRecent.contains(key)) {
+            return Decision.DUPLICATE;
+        }
+        if (mRecent.size() == MAX_REMEMBERED) {
+            mRecent.removeFirst();
+        }
+        mRecent.addLast(key);
+
+        // A forecast from the future means the clock was changed, don't trust it
+        long age = now - forecastTime;
+        if (coversToday && forecastTime > 0 && age >= 0 && age < mFreshMillis) {
+            return Decision.ANSWER;
+        }
+        if (mSynced && now - mLastSync >= 0 && now - mLastSync < mMinSyncIntervalMillis) {
+            return Decision.THROTTLED;
+        }
+        mSynced = true;
+        mLastSync = now;
+        return Decision.SYNC;
+    }
+}
@@ -1,10 +1,7 @@
 package com.example.android.sunshine.app.wearable;
 
-import android.icu.lang.UProperty;
 import android.util.Log;
 
-import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
-import com.google.android.gms.common.server.converter.StringToIntConverter;
 import com.google.android.gms.wearable.DataEvent;
 import com.google.android.gms.wearable.DataEventBuffer;
 import com.google.android.gms.wearable.DataItem;
@@ -19,19 +16,38 @@ import com.google.android.gms.wearable.WearableListenerService;
 public class UpdateForecastListener extends WearableListenerService {
     private static final String LOG_TAG = UpdateForecastListener.class.getSimpleName();
 
-    private static final String FORECAST_UPDATE_PATH = "/forecast_update";
-    private static final String FORECAST_UPDATE_KEY =
-            "com.example.android.sunshine.app.forecast_update";
+    private static final String FORECAST_ACK_PATH = "/forecast_ack";
+    private static final String FORECAST_ACK_SEQUENCE_KEY =
+            "com.example.android.sunshine.app.wearable.ack_sequence";
 
     @Override
     public void onDataChanged(DataEventBuffer dataEventBuffer) {
         for (DataEvent event : dataEventBuffer) {
+            if (event.getType() != DataEvent.TYPE_CHANGED) {
+                continue;
+            }
             DataItem dataItem = event.getDataItem();
             String path = dataItem.getUri().getPath();
-            if (FORECAST_UPDATE_PATH.equals(path)) {
-                Log.d(LOG_TAG, "Sunshine sync has been called!");
-                SunshineSyncAdapter.syncImmediately(getApplicationContext());
+            if (FORECAST_ACK_PATH.equals(path)) {
+                int sequence = DataMapItem.fromDataItem(dataItem).getDataMap()
+                        .getInt(FORECAST_ACK_SEQUENCE_KEY);
+                WearableForecastChannel.getInstance(getApplicationContext())
+                        .onAcknowledged(sequence);
+            }
+        }
+    }
+
+    @Override
+    public void onMessageReceived(MessageEvent messageEvent) {
+        if (WearableForecastChannel.FORECAST_REQUEST_PATH.equals(messageEvent.getPath())) {
+            DataMap request = DataMap.fromByteArray(messageEvent.getData());
+            if (!request.containsKey(WearableForecastChannel.REQUEST_ID_KEY)) {
+                Log.d(LOG_TAG, "Ignoring a forecast request without an id");
+                return;
             }
+            WearableForecastChannel.getInstance(getApplicationContext()).onForecastRequest(
+                    messageEvent.getSourceNodeId(),
+                    request.getInt(WearableForecastChannel.REQUEST_ID_KEY));
         }
     }
 }
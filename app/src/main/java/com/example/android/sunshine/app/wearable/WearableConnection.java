@@ -0,0 +1,190 @@
+package com.example.android.sunshine.app.wearable;
+
+import java.util.ArrayDeque;
+
+/**
+ * Shares one connection to the wearable data layer across the process.  Items put while the
+ * connection is still being established are queued and sent in order once it's up.  Callers
+ * which are about to put several items can {@link #acquire} the connection to keep it open,
+ * and when nobody holds it and nothing is queued it's closed after IDLE_TIMEOUT_MILLIS, so a
+ * sync doesn't pay for a connect and a disconnect every time it updates the watch.
+ * <p/>
+ * The data layer itself sits behind {@link Client}, so the bookkeeping can be tested without
+ * Play Services.
+ *
+ * @param <T> the items to put, data items and messages on a device.
+ */
+public class WearableConnection<T> {
+    public static final long IDLE_TIMEOUT_MILLIS = 60 * 1000;
+
+    // Older items are dropped once this many wait for a connection
+    static final int MAX_QUEUED = 32;
+
+    /**
+     * The data layer.  Callbacks may come on any thread.
+     */
+    public interface Client<T> {
+        void connect(Callbacks callbacks);
+
+        void disconnect();
+
+        /**
+         * Hand an item to the connected data layer, which delivers it asynchronously.
+         */
+        void put(T item);
+    }
+
+    public interface Callbacks {
+        void onConnected();
+
+        void onConnectionSuspended();
+
+        void onConnectionFailed();
+    }
+
+    /**
+     * Runs the idle disconnect, see Handler.postDelayed.
+     */
+    public interface Timer {
+        void schedule(Runnable task, long delayMillis);
+
+        void cancel(Runnable task);
+    }
+
+    private static final int STATE_DISCONNECTED = 0;
+    private static final int STATE_CONNECTING = 1;
+    private static final int STATE_CONNECTED = 2;
+
+    private final Client<T> mClient;
+    private final Timer mTimer;
+    private final long mIdleTimeoutMillis;
+
+    private final ArrayDeque<T> mQueue = new ArrayDeque<>();
+    private int mState = STATE_DISCONNECTED;
+    private int mReferences;
+    private boolean mIdleScheduled;
+    private int mConnects;
+
+    private final Callbacks mCallbacks = new Callbacks() {
+        @Override
+        public void onConnected() {
+            synchronized (WearableConnection.this) {
+                mState = STATE_CONNECTED;
+                flush();
+                scheduleIdleIfUnused();
+            }
+        }
+
+        @Override
+        public void onConnectionSuspended() {
+            synchronized (WearableConnection.this) {
+                // The client reconnects by itself and calls onConnected again
+                if (mState == STATE_CONNECTED) {
+                    mState = STATE_CONNECTING;
+                }
+            }
+        }
+
+        @Override
+        public void onConnectionFailed() {
+            synchronized (WearableConnection.this) {
+                // The queue is kept for the next attempt, made by the next put or acquire
+                mState = STATE_DISCONNECTED;
+                cancelIdle();
+            }
+        }
+    };
+
+    private final Runnable mIdleDisconnect = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (WearableConnection.this) {
+                mIdleScheduled = false;
+                if (mReferences == 0 && mQueue.isEmpty() && mState != STATE_DISCONNECTED) {
+                    mState = STATE_DISCONNECTED;
+                    mClient.disconnect();
+                }
+            }
+        }
+    };
+
+    public WearableConnection(Client<T> client, Timer timer, long idleTimeoutMillis) {
+        mClient = client;
+        mTimer = timer;
+        mIdleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * Keep the connection open, connecting if needed, until the matching {@link #release}.
+     */
+    public synchronized void acquire() {
+        mReferences++;
+        cancelIdle();
+        connectIfNeeded();
+    }
+
+    public synchronized void release() {
+        if (mReferences == 0) {
+            throw new IllegalStateException("release() without acquire()");
+        }
+        mReferences--;
+        scheduleIdleIfUnused();
+    }
+
+    /**
+     * Put an item, now if connected, otherwise once the connection is up.
+     */
+    public synchronized void put(T item) {
+        if (mQueue.size() == MAX_QUEUED) {
+            mQueue.removeFirst();
+        }
+        mQueue.addLast(item);
+        cancelIdle();
+        if (mState == STATE_CONNECTED) {
+            flush();
+            scheduleIdleIfUnused();
+        } else {
+            connectIfNeeded();
+        }
+    }
+
+    public synchronized boolean isConnected() {
+        return mState == STATE_CONNECTED;
+    }
+
+    /**
+     * @return how often the client was asked to connect.
+     */
+    public synchronized int getConnectCount() {
+        return mConnects;
+    }
+
+    private void connectIfNeeded() {
+        if (mState == STATE_DISCONNECTED) {
+            mState = STATE_CONNECTING;
+            mConnects++;
+            mClient.connect(mCallbacks);
+        }
+    }
+
+    private void flush() {
+        while (!mQueue.isEmpty()) {
+            mClient.put(mQueue.removeFirst());
+        }
+    }
+
+    private void scheduleIdleIfUnused() {
+        if (mReferences == 0 && mQueue.isEmpty() && mState == STATE_CONNECTED
+                && !mIdleScheduled) {
+            mIdleScheduled = true;
+            mTimer.schedule(mIdleDisconnect, mIdleTimeoutMillis);
+        }
+    }
+
+    private void cancelIdle() {
+        if (mIdleScheduled) {
+            mIdleScheduled = false;
+            mTimer.cancel(mIdleDisconnect);
+        }
+    }
+}
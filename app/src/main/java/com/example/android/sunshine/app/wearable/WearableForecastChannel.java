@@ -0,0 +1,179 @@
+package com.example.android.sunshine.app.wearable;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
+import com.example.android.sunshine.app.sync.SyncCoordinator;
+import com.example.android.sunshine.core.WearForecast;
+import com.example.android.sunshine.core.WearForecastSender;
+import com.google.android.gms.wearable.DataMap;
+
+
+/**
+ * The one way forecasts get to the wearable.  Updates posted within COALESCE_MILLIS of each
+ * other are sent as one frame, of the last forecast, and a forecast which renders like the one
+ * last sent isn't sent at all.  Everything runs on a background thread of its own, and the
+ * sender's state is kept in the preferences, so a new process carries on sending deltas
+ * against what the watch acknowledged.
+ * <p/>
+ * The watch asks for the forecast with a message to FORECAST_REQUEST_PATH, and gets the
+ * forecast WeatherProvider has back as a full frame in a message to FORECAST_RESPONSE_PATH,
+ * with the id of its request.  Only a missing or stale forecast makes the phone sync, as
+ * {@link ForecastRequestPolicy} decides.
+ */
+public class WearableForecastChannel {
+    private static final String LOG_TAG = WearableForecastChannel.class.getSimpleName();
+
+    private static final long COALESCE_MILLIS = 2 * 1000;
+
+    public static final String FORECAST_REQUEST_PATH = "/forecast_request";
+    public static final String FORECAST_RESPONSE_PATH = "/forecast_response";
+    public static final String REQUEST_ID_KEY =
+            "com.example.android.sunshine.app.wearable.request_id";
+
+    private static WearableForecastChannel sInstance;
+
+    private final Context mContext;
+    private final Handler mHandler;
+    private final WearForecastSender mSender;
+    private final WearableConnection<DataLayerClient.Request> mConnection;
+
+    // Only touched on mHandler's thread
+    private WearForecast mPending;
+    private final ForecastRequestPolicy mRequestPolicy = new ForecastRequestPolicy();
+
+    private final Runnable mFlush = new Runnable() {
+        @Override
+        public void run() {
+            WearForecast forecast = mPending;
+            mPending = null;
+            if (forecast != null) {
+                if (mSender.update(forecast)) {
+                    saveState();
+                }
+                mConnection.release();
+            }
+        }
+    };
+
+    public static synchronized WearableForecastChannel getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WearableForecastChannel(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private WearableForecastChannel(Context context) {
+        mContext = context;
+        HandlerThread thread = new HandlerThread(LOG_TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        mHandler = new Handler(thread.getLooper());
+        mSender = new WearForecastSender(new UpdateWearableForecast(context));
+        mConnection = DataLayerClient.getConnection(context);
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mSender.restore(Utility.getWearableSentFrame(mContext),
+                        Utility.getWearableAckedFrame(mContext));
+            }
+        });
+    }
+
+    /**
+     * Send a forecast to the wearable once no newer one was posted for COALESCE_MILLIS.
+     */
+    public void post(final WearForecast forecast) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (mPending == null) {
+                    // Connect while the window runs, the frame can go out right after it
+                    mConnection.acquire();
+                }
+                mPending = forecast;
+                Utility.setWearableForecastTime(mContext, System.currentTimeMillis());
+                mHandler.removeCallbacks(mFlush);
+                mHandler.postDelayed(mFlush, COALESCE_MILLIS);
+            }
+        });
+    }
+
+    /**
+     * The wearable applied the frame with this sequence number.
+     */
+    public void onAcknowledged(final int sequence) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mSender.onAcknowledged(sequence);
+                saveState();
+            }
+        });
+    }
+
+    /**
+     * The wearable has no forecast, or one it can't apply our deltas to.  Answer with the stored
+     * forecast in full, and sync if it's missing or stale.
+     *
+     * @param nodeId    the wearable's node
+     * @param requestId the id of the request, sent back with the answer
+     */
+    public void onForecastRequest(final String nodeId, final int requestId) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                // A local query, where the last sync left the forecast
+                long queryStart = SystemClock.elapsedRealtime();
+                WearForecast stored = WearableForecastQuery.query(mContext);
+                ForecastRequestPolicy.Decision decision = mRequestPolicy.onRequest(nodeId,
+                        requestId, System.currentTimeMillis(),
+                        Utility.getWearableForecastTime(mContext), stored != null);
+                Log.d(LOG_TAG, "Forecast request " + requestId + " from " + nodeId + ": "
+                        + decision + ", query took "
+                        + (SystemClock.elapsedRealtime() - queryStart) + "ms");
+                if (decision == ForecastRequestPolicy.Decision.DUPLICATE) {
+                    return;
+                }
+                // The watch face asks when it's showing a forecast it doesn't have
+                SunshineSyncAdapter.onForecastViewed(mContext);
+                if (decision == ForecastRequestPolicy.Decision.SYNC) {
+                    // The synced forecast follows on the forecast DataItem.  A sync already
+                    // running for the app or a widget is joined instead of starting another.
+                    SunshineSyncAdapter.syncImmediately(mContext, new SyncCoordinator.Callback() {
+                        @Override
+                        public void onSyncFinished(String location, int status) {
+                            Log.d(LOG_TAG, "Sync for forecast request " + requestId
+                                    + " finished with status " + status);
+                        }
+                    });
+                }
+                // What's stored starts today, the forecast last sent may start on the day of
+                // the last sync
+                if (stored != null && mSender.update(stored)) {
+                    saveState();
+                }
+
+                // The frame keeps the sequence it was sent with, so the acknowledgement of it
+                // makes later deltas apply
+                DataMap response = new DataMap();
+                response.putInt(REQUEST_ID_KEY, requestId);
+                byte[] frame = mSender.getSentState();
+                if (frame != null) {
+                    response.putByteArray(UpdateWearableForecast.FRAME_KEY, frame);
+                }
+                mConnection.put(DataLayerClient.sendMessage(nodeId, FORECAST_RESPONSE_PATH,
+                        response.toByteArray()));
+            }
+        });
+    }
+
+    private void saveState() {
+        Utility.setWearableFrames(mContext, mSender.getSentState(), mSender.getAckedState());
+    }
+}
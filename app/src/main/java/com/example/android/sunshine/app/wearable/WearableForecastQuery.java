@@ -0,0 +1,89 @@
+package com.example.android.sunshine.app.wearable;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.core.Temperatures;
+import com.example.android.sunshine.core.WearForecast;
+
+import java.util.Arrays;
+import java.util.TimeZone;
+
+/**
+ * Builds the wearable's forecast from what WeatherProvider already has for the preferred
+ * location, so the phone can answer the watch without going to the network.
+ */
+public class WearableForecastQuery {
+    // Days of forecast the watch face keeps, the days we fetch
+    public static final int MAX_DAYS = 14;
+
+    private static final String[] WEARABLE_FORECAST_PROJECTION = new String[]{
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP
+    };
+
+    // these indices must match the projection
+    private static final int INDEX_DATE = 0;
+    private static final int INDEX_WEATHER_ID = 1;
+    private static final int INDEX_MAX_TEMP = 2;
+    private static final int INDEX_MIN_TEMP = 3;
+
+    private WearableForecastQuery() {
+    }
+
+    /**
+     * @return the stored forecast from today on, up to MAX_DAYS and up to the first missing
+     * day, or null if there's none for today.
+     */
+    public static WearForecast query(Context context) {
+        String locationSetting = Utility.getPreferredLocation(context);
+        long now = System.currentTimeMillis();
+        Cursor cursor = context.getContentResolver().query(
+                WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                        locationSetting, now),
+                WEARABLE_FORECAST_PROJECTION,
+                null,
+                null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            TimeZone timeZone = TimeZone.getDefault();
+            int today = WearForecast.localEpochDay(now, timeZone);
+            boolean isMetric = Utility.isMetric(context);
+            int[] weatherIds = new int[MAX_DAYS];
+            int[] highs = new int[MAX_DAYS];
+            int[] lows = new int[MAX_DAYS];
+            int days = 0;
+            while (days < MAX_DAYS && cursor.moveToNext()) {
+                if (WearForecast.localEpochDay(cursor.getLong(INDEX_DATE), timeZone)
+                        != today + days) {
+                    break;
+                }
+                weatherIds[days] = cursor.getInt(INDEX_WEATHER_ID);
+                highs[days] = toWearableTemperature(cursor.getDouble(INDEX_MAX_TEMP), isMetric);
+                lows[days] = toWearableTemperature(cursor.getDouble(INDEX_MIN_TEMP), isMetric);
+                days++;
+            }
+            if (days == 0) {
+                return null;
+            }
+            return new WearForecast(today, Arrays.copyOf(weatherIds, days),
+                    Arrays.copyOf(highs, days), Arrays.copyOf(lows, days));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * @return the temperature in the units the user prefers, rounded as the phone shows it.
+     */
+    public static int toWearableTemperature(double celsius, boolean isMetric) {
+        return WearForecast.roundTemperature(Temperatures.toPreferredUnits(celsius, isMetric));
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.android.sunshine.app.data;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ForecastSnapshotCacheTest {
+    private static final long DAY = 24 * 60 * 60 * 1000;
+    private static final long START_DATE = 1468800000000L;
+    private static final int DAYS = 14;
+
+    private static final String[] FORECAST_COLUMNS = {
+            "weather._id", "date", "short_desc", "max", "min", "location_setting",
+            "weather_id", "coord_lat", "coord_long"
+    };
+
+    static ForecastSnapshot createSnapshot(String locationSetting, long version) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < DAYS; i++) {
+            rows.add(new Object[]{(long) (100 + i), 7L, START_DATE + i * DAY, "Clear",
+                    (long) (800 + i), 10.0 + i, 20.0 + i, 50.0, 1000.5, 2.5, 90.0,
+                    7L, locationSetting, "North Pole", 64.7488, -147.353});
+        }
+        return new ForecastSnapshot(locationSetting, version, rows);
+    }
+
+    @Test
+    public void testSelectsProjectionByDate() {
+        ForecastSnapshot snapshot = createSnapshot("99705", 0);
+        List<Object[]> rows = snapshot.select(FORECAST_COLUMNS, START_DATE + DAY, Long.MAX_VALUE);
+        assertEquals(DAYS - 1, rows.size());
+        Object[] row = rows.get(0);
+        assertEquals(101L, row[0]);
+        assertEquals(START_DATE + DAY, row[1]);
+        assertEquals("Clear", row[2]);
+        assertEquals(21.0, row[3]);
+        assertEquals(11.0, row[4]);
+        assertEquals("99705", row[5]);
+        assertEquals(801L, row[6]);
+
+        rows = snapshot.select(new String[]{"WEATHER.DATE"}, START_DATE + 3 * DAY,
+                START_DATE + 3 * DAY);
+        assertEquals(1, rows.size());
+        assertEquals(START_DATE + 3 * DAY, rows.get(0)[0]);
+    }
+
+    @Test
+    public void testLeavesOtherQueriesToSql() {
+        assertTrue(ForecastSnapshot.canSelect(FORECAST_COLUMNS));
+        assertFalse(ForecastSnapshot.canSelect(null));
+        // Ambiguous between weather and location, SQLite says so
+        assertFalse(ForecastSnapshot.canSelect(new String[]{"_id"}));
+        assertFalse(ForecastSnapshot.canSelect(new String[]{"max(max)"}));
+        assertFalse(ForecastSnapshot.canSelect(new String[]{"rainfall"}));
+
+        assertTrue(ForecastSnapshot.isDateOrder(null));
+        assertTrue(ForecastSnapshot.isDateOrder("date ASC"));
+        assertTrue(ForecastSnapshot.isDateOrder(" weather.date "));
+        assertFalse(ForecastSnapshot.isDateOrder("date DESC"));
+        assertFalse(ForecastSnapshot.isDateOrder("max ASC"));
+
+        assertEquals("_id", ForecastSnapshot.cursorColumnName("weather._id"));
+    }
+
+    @Test
+    public void testCountsHitsAndMisses() {
+        ForecastSnapshotCache cache = new ForecastSnapshotCache();
+        assertNull(cache.get("99705"));
+        assertTrue(cache.put(createSnapshot("99705", cache.getVersion())));
+        for (int i = 0; i < 10; i++) {
+            cache.get("99705");
+        }
+        assertEquals(10, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testWriteInvalidates() {
+        ForecastSnapshotCache cache = new ForecastSnapshotCache();
+        cache.put(createSnapshot("99705", cache.getVersion()));
+        cache.invalidate();
+        assertNull(cache.get("99705"));
+    }
+
+    @Test
+    public void testSnapshotReadDuringWriteIsNotCached() {
+        ForecastSnapshotCache cache = new ForecastSnapshotCache();
+        long version = cache.getVersion();
+        // The write commits and invalidates while the snapshot is read
+        cache.invalidate();
+        assertFalse(cache.put(createSnapshot("99705", version)));
+        assertNull(cache.get("99705"));
+    }
+
+    @Test
+    public void testKeepsRecentLocations() {
+        ForecastSnapshotCache cache = new ForecastSnapshotCache();
+        ForecastSnapshot preferred = createSnapshot("preferred", cache.getVersion());
+        cache.put(preferred);
+        for (int i = 0; i < ForecastSnapshotCache.MAX_SNAPSHOTS; i++) {
+            // The preferred location keeps being queried in between
+            assertSame(preferred, cache.get("preferred"));
+            cache.put(createSnapshot("other" + i, cache.getVersion()));
+        }
+        assertSame(preferred, cache.get("preferred"));
+        assertNull(cache.get("other0"));
+    }
+}
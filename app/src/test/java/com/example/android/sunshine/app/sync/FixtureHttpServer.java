@@ -0,0 +1,249 @@
+package com.example.android.sunshine.app.sync;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Minimal HTTP/1.1 server on the loopback interface standing in for api.openweathermap.org.
+ * Every request is answered by the {@link Handler}, and the requests are recorded so tests can
+ * check what was sent.
+ */
+class FixtureHttpServer {
+
+    static class Request {
+        final String method;
+        final String path;
+        final Map<String, String> headers;
+
+        Request(String method, String path, Map<String, String> headers) {
+            this.method = method;
+            this.path = path;
+            this.headers = headers;
+        }
+
+        /**
+         * @param name header name, in lower case.
+         */
+        String header(String name) {
+            return headers.get(name);
+        }
+    }
+
+    static class Reply {
+        final int code;
+        final Map<String, String> headers = new LinkedHashMap<>();
+        final byte[] body;
+
+        Reply(int code, byte[] body) {
+            this.code = code;
+            this.body = body;
+        }
+
+        Reply header(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+    }
+
+    interface Handler {
+        Reply handle(Request request) throws IOException;
+    }
+
+    private final ServerSocket mServerSocket;
+    private final Handler mHandler;
+    private final List<Request> mRequests = Collections.synchronizedList(new ArrayList<Request>());
+    private volatile int mConnectionCount;
+    private final AtomicLong mBytesSent = new AtomicLong();
+
+    FixtureHttpServer(Handler handler) throws IOException {
+        mHandler = handler;
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        Thread acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        }, "FixtureHttpServer");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    URL url(String pathAndQuery) throws IOException {
+        return new URL("http://127.0.0.1:" + mServerSocket.getLocalPort() + pathAndQuery);
+    }
+
+    List<Request> getRequests() {
+        synchronized (mRequests) {
+            return new ArrayList<>(mRequests);
+        }
+    }
+
+    /**
+     * @return the number of TCP connections accepted so far.
+     */
+    int getConnectionCount() {
+        return mConnectionCount;
+    }
+
+    /**
+     * @return the bytes of all replies so far, headers included.
+     */
+    long getBytesSent() {
+        return mBytesSent.get();
+    }
+
+    void shutdown() throws IOException {
+        mServerSocket.close();
+    }
+
+    private void acceptConnections() {
+        while (!mServerSocket.isClosed()) {
+            final Socket socket;
+            try {
+                socket = mServerSocket.accept();
+            } catch (IOException e) {
+                return;
+            }
+            mConnectionCount++;
+            Thread connectionThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    serve(socket);
+                }
+            }, "FixtureHttpServer connection");
+            connectionThread.setDaemon(true);
+            connectionThread.start();
+        }
+    }
+
+    private void serve(Socket socket) {
+        try {
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+            // Keep-alive: serve requests until the client closes the connection
+            while (true) {
+                Request request = readRequest(in);
+                if (request == null) {
+                    break;
+                }
+                mRequests.add(request);
+                writeReply(out, mHandler.handle(request));
+                if ("close".equalsIgnoreCase(request.header("connection"))) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            // Client went away
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Nothing left to do
+            }
+        }
+    }
+
+    private static Request readRequest(InputStream in) throws IOException {
+        String requestLine = readLine(in);
+        if (requestLine == null || requestLine.isEmpty()) {
+            return null;
+        }
+        String[] parts = requestLine.split(" ");
+        Map<String, String> headers = new LinkedHashMap<>();
+        String line;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            headers.put(line.substring(0, colon).trim().toLowerCase(Locale.US),
+                    line.substring(colon + 1).trim());
+        }
+        // The client only sends GETs, there is no request body to skip
+        return new Request(parts[0], parts[1], headers);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                String result = line.toString("ISO-8859-1");
+                return result.endsWith("\r") ? result.substring(0, result.length() - 1) : result;
+            }
+            line.write(b);
+        }
+        return line.size() == 0 ? null : line.toString("ISO-8859-1");
+    }
+
+    private void writeReply(OutputStream out, Reply reply) throws IOException {
+        StringBuilder head = new StringBuilder();
+        head.append("HTTP/1.1 ").append(reply.code).append(' ').append(reasonPhrase(reply.code))
+                .append("\r\n");
+        for (Map.Entry<String, String> header : reply.headers.entrySet()) {
+            head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+        }
+        byte[] body = reply.body == null ? new byte[0] : reply.body;
+        head.append("Content-Length: ").append(body.length).append("\r\n\r\n");
+        byte[] headBytes = head.toString().getBytes("ISO-8859-1");
+        out.write(headBytes);
+        out.write(body);
+        out.flush();
+        mBytesSent.addAndGet(headBytes.length + body.length);
+    }
+
+    private static String reasonPhrase(int code) {
+        switch (code) {
+            case 200:
+                return "OK";
+            case 304:
+                return "Not Modified";
+            case 404:
+                return "Not Found";
+            case 503:
+                return "Service Unavailable";
+            default:
+                return "Status";
+        }
+    }
+
+    static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        gzip.write(data);
+        gzip.close();
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads a classpath resource, such as "/owm_forecast_14_days.json", into memory.
+     */
+    static byte[] readResource(String name) throws IOException {
+        InputStream in = FixtureHttpServer.class.getResourceAsStream(name);
+        if (in == null) {
+            throw new IOException("Missing resource " + name);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
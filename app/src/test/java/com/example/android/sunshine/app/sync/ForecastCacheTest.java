@@ -0,0 +1,234 @@
+package com.example.android.sunshine.app.sync;
+
+import com.example.android.sunshine.core.ForecastParser;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs the cache against a local HTTP server serving the recorded OWM responses.
+ */
+public class ForecastCacheTest {
+    private static final String FIXTURE_14_DAYS = "/owm_forecast_14_days.json";
+    private static final String FIXTURE_NOT_FOUND = "/owm_forecast_not_found.json";
+    private static final String FORECAST_PATH =
+            "/data/2.5/forecast/daily?q=94043&mode=json&units=metric&cnt=14";
+    private static final String ETAG = "\"forecast-1\"";
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private volatile byte[] mFixture;
+    private FixtureHttpServer mServer;
+    private TestCache mCache;
+
+    // What the server answers with, changed by the tests
+    private volatile String mCacheControl;
+    private volatile int mErrorCode;
+
+    /**
+     * A cache whose clock the tests move.
+     */
+    static class TestCache extends ForecastCache {
+        long now = 1000000L;
+
+        TestCache(File directory) {
+            super(directory, new HttpTransport(1000, 1000, 1, 0, 0));
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        mFixture = FixtureHttpServer.readResource(FIXTURE_14_DAYS);
+        mServer = new FixtureHttpServer(new FixtureHttpServer.Handler() {
+            @Override
+            public FixtureHttpServer.Reply handle(FixtureHttpServer.Request request) {
+                if (mErrorCode != 0) {
+                    return new FixtureHttpServer.Reply(mErrorCode, null);
+                }
+                if (ETAG.equals(request.header("if-none-match"))) {
+                    return new FixtureHttpServer.Reply(304, null).header("ETag", ETAG);
+                }
+                FixtureHttpServer.Reply reply = new FixtureHttpServer.Reply(200, mFixture)
+                        .header("ETag", ETAG)
+                        .header("Last-Modified", "Mon, 11 Jul 2016 10:00:00 GMT");
+                if (mCacheControl != null) {
+                    reply.header("Cache-Control", mCacheControl);
+                }
+                return reply;
+            }
+        });
+        mCache = new TestCache(mTemporaryFolder.newFolder("forecast"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void testCacheKeyDropsAppId() {
+        assertEquals("http://h/p?q=1&cnt=14",
+                ForecastCache.cacheKey("http://h/p?q=1&APPID=secret&cnt=14"));
+        assertEquals("http://h/p?q=1",
+                ForecastCache.cacheKey("http://h/p?q=1&APPID=secret"));
+        assertEquals("http://h/p", ForecastCache.cacheKey("http://h/p"));
+    }
+
+    @Test
+    public void testMaxAge() {
+        assertEquals(600000, ForecastCache.maxAge("public, max-age=600", 0));
+        assertEquals(0, ForecastCache.maxAge("no-cache", 5));
+        assertEquals(5, ForecastCache.maxAge(null, 5));
+        assertEquals(5, ForecastCache.maxAge("max-age=soon", 5));
+    }
+
+    @Test
+    public void testUnchangedForecastCostsA304() throws IOException {
+        assertArrayEquals(mFixture, fetchAndCommit(url("key1"), ForecastCache.Response.NETWORK));
+
+        // Stale immediately without a max-age: revalidated, answered with a 304.  The entry is
+        // found although the APPID changed.
+        mCache.now += 1000;
+        ForecastCache.Response response = mCache.fetch(url("key2"));
+        try {
+            assertEquals(ForecastCache.Response.NOT_MODIFIED, response.getSource());
+            assertTrue(response.isUnchanged());
+            // The body is still the one fetched first, and so are its days
+            assertEquals(mCache.now - 1000, response.getFetchTime());
+            assertArrayEquals(mFixture, readFully(response.getBody()));
+        } finally {
+            response.close();
+        }
+
+        List<FixtureHttpServer.Request> requests = mServer.getRequests();
+        assertEquals(2, requests.size());
+        assertNull(requests.get(0).header("if-none-match"));
+        assertEquals(ETAG, requests.get(1).header("if-none-match"));
+        assertEquals("Mon, 11 Jul 2016 10:00:00 GMT", requests.get(1).header("if-modified-since"));
+    }
+
+    @Test
+    public void testFreshEntrySkipsTheNetwork() throws IOException {
+        mCacheControl = "max-age=600";
+        fetchAndCommit(url("key"), ForecastCache.Response.NETWORK);
+
+        mCache.now += 599 * 1000;
+        assertArrayEquals(mFixture, fetchAndCommit(url("key"), ForecastCache.Response.FRESH));
+        assertEquals(1, mServer.getRequests().size());
+
+        mCache.now += 1000;
+        fetchAndCommit(url("key"), ForecastCache.Response.NOT_MODIFIED);
+        assertEquals(2, mServer.getRequests().size());
+    }
+
+    @Test
+    public void testUncommittedResponseIsNotStored() throws IOException {
+        ForecastCache.Response response = mCache.fetch(url("key"));
+        // Parsing failed half way, the caller never commits
+        response.getBody().read(new byte[100]);
+        response.close();
+
+        fetchAndCommit(url("key"), ForecastCache.Response.NETWORK);
+        assertNull(mServer.getRequests().get(1).header("if-none-match"));
+    }
+
+    @Test
+    public void testErrorBodyIsNotStored() throws IOException {
+        // OWM answers an unknown city with a 200 whose cod is 404
+        mFixture = FixtureHttpServer.readResource(FIXTURE_NOT_FOUND);
+        mCacheControl = "max-age=600";
+        ForecastCache.Response response = mCache.fetch(url("key"));
+        try {
+            // Committed only once it parsed as a forecast, the way the sync adapter does
+            int code = ForecastParser.parse(response.getBody(), new ForecastParser.Callback() {
+                @Override
+                public void onCity(String name, double latitude, double longitude) {
+                }
+
+                @Override
+                public void onDay(int index, int weatherId, String description, double high,
+                                  double low, double pressure, int humidity, double windSpeed,
+                                  double windDirection) {
+                }
+            });
+            assertEquals(HttpURLConnection.HTTP_NOT_FOUND, code);
+        } finally {
+            response.close();
+        }
+
+        mCache.now += 1000;
+        fetchAndCommit(url("key"), ForecastCache.Response.NETWORK);
+        assertEquals(2, mServer.getRequests().size());
+        assertNull(mServer.getRequests().get(1).header("if-none-match"));
+    }
+
+    @Test
+    public void testNoStoreIsNotCached() throws IOException {
+        mCacheControl = "no-store";
+        fetchAndCommit(url("key"), ForecastCache.Response.NETWORK);
+        fetchAndCommit(url("key"), ForecastCache.Response.NETWORK);
+        assertNull(mServer.getRequests().get(1).header("if-none-match"));
+    }
+
+    @Test
+    public void testServerErrorThrows() throws IOException {
+        fetchAndCommit(url("key"), ForecastCache.Response.NETWORK);
+        mErrorCode = 404;
+        try {
+            mCache.fetch(url("key")).close();
+            fail("A 404 should throw, like an uncached request does");
+        } catch (FileNotFoundException e) {
+            // Expected
+        }
+    }
+
+    private URL url(String appId) throws IOException {
+        return mServer.url(FORECAST_PATH + "&APPID=" + appId);
+    }
+
+    private byte[] fetchAndCommit(URL url, int expectedSource) throws IOException {
+        ForecastCache.Response response = mCache.fetch(url);
+        try {
+            assertEquals(expectedSource, response.getSource());
+            byte[] body = readFully(response.getBody());
+            response.commit();
+            return body;
+        } finally {
+            response.close();
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.android.sunshine.app.sync;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ForecastSyncEngineTest {
+    private static final int PARALLELISM = 4;
+    private static final int LOCATIONS = 20;
+    private static final long FETCH_MILLIS = 50;
+
+    private final ForecastSyncEngine mEngine = new ForecastSyncEngine(PARALLELISM);
+
+    @After
+    public void tearDown() {
+        mEngine.shutdown();
+    }
+
+    @Test
+    public void testFetchesConcurrentlyWithinBound() throws InterruptedException {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        List<String> locations = new ArrayList<>();
+        for (int i = 0; i < LOCATIONS; i++) {
+            locations.add("city" + i);
+        }
+
+        long start = System.nanoTime();
+        List<ForecastSyncEngine.LocationResult> results = mEngine.fetchAll(locations,
+                new ForecastSyncEngine.Fetcher() {
+                    @Override
+                    public ForecastSyncEngine.LocationResult fetch(String locationSetting) {
+                        int now = running.incrementAndGet();
+                        int max;
+                        while (now > (max = maxRunning.get())
+                                && !maxRunning.compareAndSet(max, now)) {
+                            // Retry
+                        }
+                        try {
+                            // Stands in for the network round trip
+                            Thread.sleep(FETCH_MILLIS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        running.decrementAndGet();
+                        return new ForecastSyncEngine.LocationResult(locationSetting,
+                                SunshineSyncAdapter.LOCATION_STATUS_OK, null);
+                    }
+                });
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        assertEquals(LOCATIONS, results.size());
+        for (int i = 0; i < LOCATIONS; i++) {
+            assertEquals("Results must keep the order of the locations",
+                    "city" + i, results.get(i).locationSetting);
+        }
+        assertEquals(PARALLELISM, maxRunning.get());
+        assertTrue("Took " + elapsedMillis + "ms, as if fetched one after the other",
+                elapsedMillis < LOCATIONS * FETCH_MILLIS / 2);
+    }
+}
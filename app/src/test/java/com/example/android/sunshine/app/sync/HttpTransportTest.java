@@ -0,0 +1,278 @@
+package com.example.android.sunshine.app.sync;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs the transport against a local HTTP server, counting the connections it accepts (one
+ * handshake each) and the bytes it sends.
+ */
+public class HttpTransportTest {
+    private static final String FIXTURE_14_DAYS = "/owm_forecast_14_days.json";
+    private static final String FORECAST_PATH =
+            "/data/2.5/forecast/daily?q=94043&mode=json&units=metric&cnt=14";
+    private static final int SYNCS = 10;
+    private static final int READ_TIMEOUT_MILLIS = 1000;
+
+    private byte[] mFixture;
+    private FixtureHttpServer mServer;
+    private RecordingTransport mTransport;
+
+    // Replies with this code until it ran out, then with the fixture
+    private volatile int mErrorCode;
+    private final AtomicInteger mErrorsLeft = new AtomicInteger();
+    // Requests answered only after the read timeout ran out
+    private final AtomicInteger mStallsLeft = new AtomicInteger();
+
+    /**
+     * Records the backoff instead of sleeping through it.
+     */
+    static class RecordingTransport extends HttpTransport {
+        final List<Long> sleeps = new ArrayList<>();
+
+        RecordingTransport() {
+            super(1000, READ_TIMEOUT_MILLIS, 3, 100, 1000);
+        }
+
+        @Override
+        protected void sleep(long millis) {
+            sleeps.add(millis);
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        mFixture = FixtureHttpServer.readResource(FIXTURE_14_DAYS);
+        final byte[] gzipped = FixtureHttpServer.gzip(mFixture);
+        mServer = new FixtureHttpServer(new FixtureHttpServer.Handler() {
+            @Override
+            public FixtureHttpServer.Reply handle(FixtureHttpServer.Request request)
+                    throws IOException {
+                if (mStallsLeft.getAndDecrement() > 0) {
+                    try {
+                        Thread.sleep(2 * READ_TIMEOUT_MILLIS);
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException();
+                    }
+                }
+                if (mErrorsLeft.getAndDecrement() > 0) {
+                    return new FixtureHttpServer.Reply(mErrorCode, "error".getBytes());
+                }
+                String acceptEncoding = request.header("accept-encoding");
+                if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                    return new FixtureHttpServer.Reply(200, gzipped)
+                            .header("Content-Encoding", "gzip");
+                }
+                return new FixtureHttpServer.Reply(200, mFixture);
+            }
+        });
+        mTransport = new RecordingTransport();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void testConnectionIsReusedAcrossRequests() throws IOException {
+        for (int i = 0; i < SYNCS; i++) {
+            HttpTransport.Response response = mTransport.get(mServer.url(FORECAST_PATH));
+            try {
+                assertArrayEquals(mFixture, readFully(response.getBody()));
+            } finally {
+                response.close();
+            }
+        }
+        assertEquals(SYNCS, mServer.getRequests().size());
+        assertEquals("Every request after the first should reuse the pooled connection",
+                1, mServer.getConnectionCount());
+    }
+
+    @Test
+    public void testUnreadBodyStillReturnsConnection() throws IOException {
+        for (int i = 0; i < 2; i++) {
+            HttpTransport.Response response = mTransport.get(mServer.url(FORECAST_PATH));
+            // A parser which stops early, the rest has to be drained by close()
+            response.getBody().read(new byte[10]);
+            response.close();
+        }
+        assertEquals(1, mServer.getConnectionCount());
+    }
+
+    @Test
+    public void testResponsesAreGzipped() throws IOException {
+        HttpTransport.Response response = mTransport.get(mServer.url(FORECAST_PATH));
+        try {
+            assertEquals("gzip", mServer.getRequests().get(0).header("accept-encoding"));
+            assertArrayEquals(mFixture, readFully(response.getBody()));
+        } finally {
+            response.close();
+        }
+        assertTrue(mTransport.getBytesReceived() < mFixture.length / 2);
+    }
+
+    @Test
+    public void testServerErrorsAreRetriedWithBackoff() throws IOException {
+        mErrorCode = 503;
+        mErrorsLeft.set(2);
+
+        HttpTransport.Response response = mTransport.get(mServer.url(FORECAST_PATH));
+        try {
+            assertEquals(HttpURLConnection.HTTP_OK, response.getCode());
+            assertArrayEquals(mFixture, readFully(response.getBody()));
+        } finally {
+            response.close();
+        }
+
+        assertEquals(3, mServer.getRequests().size());
+        assertEquals(3, mTransport.getAttempts());
+        assertEquals(2, mTransport.sleeps.size());
+        // Full jitter: anything up to 100ms, then up to 200ms
+        assertTrue(mTransport.sleeps.get(0) >= 0 && mTransport.sleeps.get(0) < 100);
+        assertTrue(mTransport.sleeps.get(1) >= 0 && mTransport.sleeps.get(1) < 200);
+        // Drained error bodies keep the connection too
+        assertEquals(1, mServer.getConnectionCount());
+    }
+
+    @Test
+    public void testTimeoutsAreRetried() throws IOException {
+        mStallsLeft.set(1);
+
+        HttpTransport.Response response = mTransport.get(mServer.url(FORECAST_PATH));
+        try {
+            assertEquals(HttpURLConnection.HTTP_OK, response.getCode());
+            assertArrayEquals(mFixture, readFully(response.getBody()));
+        } finally {
+            response.close();
+        }
+        assertEquals(2, mServer.getRequests().size());
+        assertEquals(2, mTransport.getAttempts());
+        assertEquals(1, mTransport.sleeps.size());
+    }
+
+    @Test
+    public void testInterruptedRequestIsNotRetried() throws IOException {
+        mStallsLeft.set(Integer.MAX_VALUE);
+        Thread.currentThread().interrupt();
+        try {
+            mTransport.get(mServer.url(FORECAST_PATH)).close();
+            fail("A cancelled sync should not be retried");
+        } catch (IOException e) {
+            // Expected
+        } finally {
+            Thread.interrupted();
+        }
+        assertEquals(1, mTransport.getAttempts());
+        assertTrue(mTransport.sleeps.isEmpty());
+    }
+
+    @Test
+    public void testGivesUpAfterMaxAttempts() throws IOException {
+        mErrorCode = 503;
+        mErrorsLeft.set(Integer.MAX_VALUE);
+
+        HttpTransport.Response response = mTransport.get(mServer.url(FORECAST_PATH));
+        try {
+            assertEquals(503, response.getCode());
+            response.getBody();
+            fail("The body of an error response should throw");
+        } catch (IOException e) {
+            // Expected
+        } finally {
+            response.close();
+        }
+        assertEquals(3, mServer.getRequests().size());
+    }
+
+    @Test
+    public void testClientErrorsAreNotRetried() throws IOException {
+        mErrorCode = 404;
+        mErrorsLeft.set(1);
+
+        HttpTransport.Response response = mTransport.get(mServer.url(FORECAST_PATH));
+        try {
+            response.getBody();
+            fail("A 404 should throw FileNotFoundException, like HttpURLConnection does");
+        } catch (FileNotFoundException e) {
+            // Expected
+        } finally {
+            response.close();
+        }
+        assertEquals(1, mServer.getRequests().size());
+        assertTrue(mTransport.sleeps.isEmpty());
+    }
+
+    @Test
+    public void testBackoffIsCapped() {
+        for (int attempt = 1; attempt < 70; attempt++) {
+            long backoff = mTransport.backoffMillis(attempt);
+            assertTrue(backoff >= 0 && backoff < 1000);
+        }
+    }
+
+    /**
+     * Compares the handshakes and bytes per sync of the transport with the connection per sync,
+     * disconnect() and identity encoding the sync adapter used before.
+     */
+    @Test
+    public void testTrafficPerSync() throws IOException {
+        for (int i = 0; i < SYNCS; i++) {
+            HttpURLConnection urlConnection =
+                    (HttpURLConnection) mServer.url(FORECAST_PATH).openConnection();
+            try {
+                urlConnection.setRequestMethod("GET");
+                urlConnection.connect();
+                readFully(urlConnection.getInputStream());
+            } finally {
+                urlConnection.disconnect();
+            }
+        }
+        int legacyConnections = mServer.getConnectionCount();
+        long legacyBytes = mServer.getBytesSent();
+
+        for (int i = 0; i < SYNCS; i++) {
+            HttpTransport.Response response = mTransport.get(mServer.url(FORECAST_PATH));
+            try {
+                readFully(response.getBody());
+            } finally {
+                response.close();
+            }
+        }
+        int pooledConnections = mServer.getConnectionCount() - legacyConnections;
+        long pooledBytes = mServer.getBytesSent() - legacyBytes;
+
+        assertEquals(SYNCS, legacyConnections);
+        assertEquals(1, pooledConnections);
+        // About a sixth at the time of writing, the rest is handshakes and uncompressed bodies
+        assertTrue("Pooled syncs sent " + pooledBytes / SYNCS + " bytes per sync, disconnect() "
+                + legacyBytes / SYNCS, pooledBytes * 3 < legacyBytes);
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
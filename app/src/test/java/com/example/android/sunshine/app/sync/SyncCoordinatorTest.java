@@ -0,0 +1,197 @@
+package com.example.android.sunshine.app.sync;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.example.android.sunshine.app.sync.SyncCoordinator.Outcome.JOINED;
+import static com.example.android.sunshine.app.sync.SyncCoordinator.Outcome.MERGED;
+import static com.example.android.sunshine.app.sync.SyncCoordinator.Outcome.SCHEDULED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SyncCoordinatorTest {
+    private static final String LOCATION = "94043";
+    private static final int STATUS_OK = 0;
+    private static final int STATUS_SERVER_DOWN = 1;
+
+    static class FakeTimer implements SyncCoordinator.Timer {
+        final Map<Runnable, Long> tasks = new LinkedHashMap<>();
+
+        @Override
+        public void schedule(Runnable task, long delayMillis) {
+            tasks.put(task, delayMillis);
+        }
+
+        @Override
+        public void cancel(Runnable task) {
+            tasks.remove(task);
+        }
+
+        boolean isScheduled(long delayMillis) {
+            return tasks.containsValue(delayMillis);
+        }
+
+        void fire(long delayMillis) {
+            for (Map.Entry<Runnable, Long> entry : tasks.entrySet()) {
+                if (entry.getValue() == delayMillis) {
+                    Runnable task = entry.getKey();
+                    tasks.remove(task);
+                    task.run();
+                    return;
+                }
+            }
+            throw new AssertionError("Nothing scheduled in " + delayMillis + " ms");
+        }
+    }
+
+    static class RecordingCallback implements SyncCoordinator.Callback {
+        final List<String> results = new ArrayList<>();
+
+        @Override
+        public void onSyncFinished(String location, int status) {
+            results.add(location + ":" + status);
+        }
+    }
+
+    private FakeTimer mTimer;
+    private int mRequests;
+    private SyncCoordinator mCoordinator;
+
+    @Before
+    public void setUp() {
+        mTimer = new FakeTimer();
+        mRequests = 0;
+        mCoordinator = new SyncCoordinator(new SyncCoordinator.Requester() {
+            @Override
+            public void requestSync() {
+                mRequests++;
+            }
+        }, mTimer);
+    }
+
+    private void fireWindow() {
+        mTimer.fire(SyncCoordinator.QUIET_WINDOW_MILLIS);
+    }
+
+    @Test
+    public void testRequestsInWindowAreMerged() {
+        RecordingCallback refresh = new RecordingCallback();
+        RecordingCallback watch = new RecordingCallback();
+        assertEquals(SCHEDULED, mCoordinator.request(LOCATION, refresh));
+        assertEquals(MERGED, mCoordinator.request(LOCATION, watch));
+        assertEquals(MERGED, mCoordinator.request(LOCATION, null));
+        assertEquals(0, mRequests);
+
+        fireWindow();
+        assertEquals(1, mRequests);
+
+        mCoordinator.onSyncStarted(LOCATION);
+        mCoordinator.onSyncFinished(LOCATION, STATUS_OK);
+        assertEquals("[94043:0]", refresh.results.toString());
+        assertEquals("[94043:0]", watch.results.toString());
+        assertEquals(1, mCoordinator.getSyncRequestCount());
+        assertFalse(mTimer.isScheduled(SyncCoordinator.REQUEST_TIMEOUT_MILLIS));
+    }
+
+    @Test
+    public void testRequestJoinsRunningSync() {
+        mCoordinator.request(LOCATION, null);
+        fireWindow();
+        mCoordinator.onSyncStarted(LOCATION);
+
+        RecordingCallback joined = new RecordingCallback();
+        assertEquals(JOINED, mCoordinator.request(LOCATION, joined));
+        assertFalse(mTimer.isScheduled(SyncCoordinator.QUIET_WINDOW_MILLIS));
+        mCoordinator.onSyncFinished(LOCATION, STATUS_SERVER_DOWN);
+
+        assertEquals("[94043:1]", joined.results.toString());
+        assertEquals(1, mRequests);
+    }
+
+    @Test
+    public void testPeriodicSyncServesPendingRequests() {
+        RecordingCallback callback = new RecordingCallback();
+        mCoordinator.request(LOCATION, callback);
+        // The periodic sync starts before the window is over
+        mCoordinator.onSyncStarted(LOCATION);
+        assertFalse(mTimer.isScheduled(SyncCoordinator.QUIET_WINDOW_MILLIS));
+        mCoordinator.onSyncFinished(LOCATION, STATUS_OK);
+
+        assertEquals("[94043:0]", callback.results.toString());
+        assertEquals(0, mRequests);
+    }
+
+    @Test
+    public void testOtherLocationWaitsForRunningSync() {
+        mCoordinator.onSyncStarted(LOCATION);
+        RecordingCallback old = new RecordingCallback();
+        mCoordinator.request(LOCATION, old);
+
+        // The location was changed in the settings while the sync ran
+        RecordingCallback changed = new RecordingCallback();
+        assertEquals(SCHEDULED, mCoordinator.request("london", changed));
+        fireWindow();
+        assertEquals(0, mRequests);
+
+        mCoordinator.onSyncFinished(LOCATION, STATUS_OK);
+        assertEquals(1, mRequests);
+        assertEquals("[94043:0]", old.results.toString());
+        assertTrue(changed.results.isEmpty());
+
+        mCoordinator.onSyncStarted("london");
+        mCoordinator.onSyncFinished("london", STATUS_OK);
+        assertEquals("[london:0]", changed.results.toString());
+        assertEquals(1, mRequests);
+    }
+
+    @Test
+    public void testSyncFinishingInWindowLeavesRequestToWindow() {
+        mCoordinator.onSyncStarted(LOCATION);
+        mCoordinator.request("london", null);
+        mCoordinator.onSyncFinished(LOCATION, STATUS_OK);
+        assertEquals(0, mRequests);
+        fireWindow();
+        assertEquals(1, mRequests);
+    }
+
+    @Test
+    public void testDroppedRequestIsRequestedAgain() {
+        mCoordinator.request(LOCATION, null);
+        fireWindow();
+        assertEquals(MERGED, mCoordinator.request(LOCATION, null));
+        assertEquals(1, mRequests);
+
+        // The framework never started it
+        mTimer.fire(SyncCoordinator.REQUEST_TIMEOUT_MILLIS);
+        RecordingCallback callback = new RecordingCallback();
+        assertEquals(MERGED, mCoordinator.request(LOCATION, callback));
+        assertEquals(2, mRequests);
+        assertEquals(MERGED, mCoordinator.request(LOCATION, null));
+        assertEquals(2, mRequests);
+
+        mCoordinator.onSyncStarted(LOCATION);
+        mCoordinator.onSyncFinished(LOCATION, STATUS_OK);
+        assertEquals("[94043:0]", callback.results.toString());
+    }
+
+    @Test
+    public void testBurstsAfterSyncsGetOneSyncEach() {
+        for (int burst = 0; burst < 5; burst++) {
+            for (int i = 0; i < 10; i++) {
+                mCoordinator.request(LOCATION, null);
+            }
+            fireWindow();
+            mCoordinator.onSyncStarted(LOCATION);
+            mCoordinator.request(LOCATION, null);
+            mCoordinator.onSyncFinished(LOCATION, STATUS_OK);
+        }
+        assertEquals(5, mRequests);
+        assertEquals(5, mCoordinator.getSyncRequestCount());
+    }
+}
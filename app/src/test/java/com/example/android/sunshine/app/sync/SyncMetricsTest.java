@@ -0,0 +1,70 @@
+package com.example.android.sunshine.app.sync;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SyncMetricsTest {
+    private static final long MILLIS = 1000000;
+
+    @Test
+    public void testStagesAddUp() {
+        SyncMetrics.Record record = new SyncMetrics.Record(1000, System.nanoTime(), "WIFI");
+        long now = System.nanoTime();
+        record.endStage(SyncMetrics.STAGE_FETCH, now - 5 * MILLIS);
+        record.endStage(SyncMetrics.STAGE_FETCH, now - 7 * MILLIS);
+        record.endStage(SyncMetrics.STAGE_WRITE, now - 3 * MILLIS);
+        record.finish(0, 2, 6885, 14, -10);
+
+        assertTrue(record.getStageMillis(SyncMetrics.STAGE_FETCH) >= 12);
+        assertTrue(record.getStageMillis(SyncMetrics.STAGE_WRITE) >= 3);
+        assertEquals(0, record.getStageMillis(SyncMetrics.STAGE_NOTIFY));
+        assertEquals(6885, record.getBytesReceived());
+        assertEquals(14, record.getRowsWritten());
+        assertEquals(2, record.getLocations());
+        assertEquals("A collection during the sync can't make it negative",
+                0, record.getAllocatedBytes());
+        assertEquals("WIFI", record.getNetworkType());
+    }
+
+    @Test
+    public void testStagesFromManyThreads() throws InterruptedException {
+        final SyncMetrics.Record record = new SyncMetrics.Record(0, System.nanoTime(), "NONE");
+        final int threads = 4;
+        final int stagesPerThread = 1000;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < stagesPerThread; j++) {
+                        record.endStage(SyncMetrics.STAGE_PARSE, System.nanoTime() - MILLIS);
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        done.await();
+        assertTrue("No time lost between threads",
+                record.getStageMillis(SyncMetrics.STAGE_PARSE) >= threads * stagesPerThread);
+    }
+
+    @Test
+    public void testKeepsMostRecent() {
+        SyncMetrics metrics = new SyncMetrics();
+        SyncMetrics.Record last = null;
+        for (int i = 0; i < SyncMetrics.MAX_RECORDS + 5; i++) {
+            last = new SyncMetrics.Record(i, 0, "WIFI");
+            metrics.add(last);
+        }
+        List<SyncMetrics.Record> recent = metrics.getRecent();
+        assertEquals(SyncMetrics.MAX_RECORDS, recent.size());
+        assertSame(last, recent.get(0));
+        assertEquals(5, recent.get(recent.size() - 1).getStartTime());
+    }
+}
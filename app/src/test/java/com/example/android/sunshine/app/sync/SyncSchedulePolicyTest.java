@@ -0,0 +1,313 @@
+package com.example.android.sunshine.app.sync;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static com.example.android.sunshine.app.sync.SyncSchedulePolicy.DEFAULT_INTERVAL_MILLIS;
+import static com.example.android.sunshine.app.sync.SyncSchedulePolicy.HOUR_IN_MILLIS;
+import static com.example.android.sunshine.app.sync.SyncSchedulePolicy.MAX_INTERVAL_MILLIS;
+import static com.example.android.sunshine.app.sync.SyncSchedulePolicy.MIN_INTERVAL_MILLIS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SyncSchedulePolicyTest {
+    private static final long NOW = 1468800000000L;
+    private static final long DAY = 24 * HOUR_IN_MILLIS;
+    private static final long WEEK = 7 * DAY;
+
+    @Test
+    public void testDefaultUntilChangesAreSeen() {
+        SyncSchedulePolicy policy = new SyncSchedulePolicy();
+        assertEquals(DEFAULT_INTERVAL_MILLIS, policy.getIntervalMillis(NOW, NOW, true, true));
+        policy.onSync(NOW, true);
+        assertEquals(DEFAULT_INTERVAL_MILLIS, policy.getIntervalMillis(NOW, NOW, true, true));
+        policy.onSync(NOW + HOUR_IN_MILLIS, false);
+        assertEquals(0, policy.getMeanChangeMillis());
+        assertEquals(NOW, policy.getLastChangeTime());
+        assertEquals(NOW + HOUR_IN_MILLIS, policy.getLastSyncTime());
+    }
+
+    @Test
+    public void testIntervalFollowsChanges() {
+        SyncSchedulePolicy policy = new SyncSchedulePolicy(0, NOW, NOW);
+        policy.onSync(NOW + 6 * HOUR_IN_MILLIS, false);
+        // Changed between 6 and 8 hours after the last change
+        policy.onSync(NOW + 8 * HOUR_IN_MILLIS, true);
+        assertEquals(7 * HOUR_IN_MILLIS, policy.getMeanChangeMillis());
+        long now = NOW + 8 * HOUR_IN_MILLIS;
+        assertEquals(hours(3.5), policy.getIntervalMillis(now, now, true, true));
+
+        // Changing on every sync, the interval shrinks down to the minimum
+        long interval = policy.getIntervalMillis(now, now, true, true);
+        for (int i = 0; i < 50; i++) {
+            now += interval;
+            policy.onSync(now, true);
+            long next = policy.getIntervalMillis(now, now, true, true);
+            assertTrue(next <= interval);
+            interval = next;
+        }
+        assertEquals(MIN_INTERVAL_MILLIS, interval);
+    }
+
+    @Test
+    public void testQuietForecastStretchesInterval() {
+        SyncSchedulePolicy policy = new SyncSchedulePolicy(2 * HOUR_IN_MILLIS, NOW, NOW);
+        assertEquals(MIN_INTERVAL_MILLIS, policy.getIntervalMillis(NOW, NOW, true, true));
+        long later = NOW + 10 * HOUR_IN_MILLIS;
+        // Not until a sync found nothing new
+        assertEquals(MIN_INTERVAL_MILLIS, policy.getIntervalMillis(later, later, true, true));
+        policy.onSync(later, false);
+        assertEquals(5 * HOUR_IN_MILLIS, policy.getIntervalMillis(later, later, true, true));
+        long muchLater = NOW + 3 * DAY;
+        policy.onSync(muchLater, false);
+        assertEquals(MAX_INTERVAL_MILLIS,
+                policy.getIntervalMillis(muchLater, muchLater, true, true));
+    }
+
+    @Test
+    public void testUnviewedForecastStretchesInterval() {
+        SyncSchedulePolicy policy = new SyncSchedulePolicy(4 * HOUR_IN_MILLIS, NOW, NOW);
+        long now = NOW + 2 * HOUR_IN_MILLIS;
+        assertEquals(2 * HOUR_IN_MILLIS, policy.getIntervalMillis(now, now, true, true));
+        assertEquals(4 * HOUR_IN_MILLIS,
+                policy.getIntervalMillis(now, now - 12 * HOUR_IN_MILLIS, true, true));
+        assertEquals(8 * HOUR_IN_MILLIS,
+                policy.getIntervalMillis(now, now - 2 * DAY, true, true));
+        assertEquals(8 * HOUR_IN_MILLIS, policy.getIntervalMillis(now, 0, true, true));
+    }
+
+    @Test
+    public void testPowerAndNetworkCost() {
+        SyncSchedulePolicy policy = new SyncSchedulePolicy(8 * HOUR_IN_MILLIS, NOW, NOW);
+        assertEquals(4 * HOUR_IN_MILLIS, policy.getIntervalMillis(NOW, NOW, true, true));
+        assertEquals(6 * HOUR_IN_MILLIS, policy.getIntervalMillis(NOW, NOW, false, true));
+        assertEquals(6 * HOUR_IN_MILLIS, policy.getIntervalMillis(NOW, NOW, true, false));
+        assertEquals(9 * HOUR_IN_MILLIS, policy.getIntervalMillis(NOW, NOW, false, false));
+    }
+
+    @Test
+    public void testBounds() {
+        SyncSchedulePolicy frequent = new SyncSchedulePolicy(1, NOW, NOW);
+        assertEquals(MIN_INTERVAL_MILLIS, frequent.getIntervalMillis(NOW, NOW, true, true));
+        SyncSchedulePolicy rare = new SyncSchedulePolicy(30 * DAY, NOW, NOW);
+        assertEquals(MAX_INTERVAL_MILLIS, rare.getIntervalMillis(NOW, 0, false, false));
+    }
+
+    @Test
+    public void testClockChangeOnlyRestartsMeasurement() {
+        SyncSchedulePolicy policy = new SyncSchedulePolicy(4 * HOUR_IN_MILLIS, NOW, NOW);
+        policy.onSync(NOW - DAY, true);
+        assertEquals(4 * HOUR_IN_MILLIS, policy.getMeanChangeMillis());
+        assertEquals(NOW - DAY, policy.getLastChangeTime());
+    }
+
+    @Test
+    public void testSmallChangesAreNotRescheduled() {
+        assertFalse(SyncSchedulePolicy.isWorthRescheduling(4 * HOUR_IN_MILLIS,
+                4 * HOUR_IN_MILLIS));
+        assertFalse(SyncSchedulePolicy.isWorthRescheduling(4 * HOUR_IN_MILLIS,
+                5 * HOUR_IN_MILLIS));
+        assertTrue(SyncSchedulePolicy.isWorthRescheduling(4 * HOUR_IN_MILLIS,
+                6 * HOUR_IN_MILLIS));
+        assertTrue(SyncSchedulePolicy.isWorthRescheduling(4 * HOUR_IN_MILLIS,
+                2 * HOUR_IN_MILLIS));
+        assertTrue(SyncSchedulePolicy.isWorthRescheduling(0, DEFAULT_INTERVAL_MILLIS));
+    }
+
+    /**
+     * Someone checking the forecast over breakfast, lunch and in the evening, and on the watch
+     * while commuting, with the phone on Wi-Fi at home and charging overnight.  The forecast
+     * changes with every model run, four times a day.
+     */
+    @Test
+    public void testReplayCommuterWeek() {
+        Trace trace = new Trace();
+        for (long day = 0; day < WEEK; day += DAY) {
+            trace.add(day, Trace.PLUGGED);
+            trace.add(day, Trace.WIFI);
+            trace.add(day + hours(7), Trace.UNPLUGGED);
+            trace.add(day + hours(7.5), Trace.VIEW);
+            trace.add(day + hours(8), Trace.MOBILE);
+            trace.add(day + hours(8.5), Trace.VIEW);
+            trace.add(day + hours(12.5), Trace.VIEW);
+            trace.add(day + hours(17.5), Trace.VIEW);
+            trace.add(day + hours(18), Trace.WIFI);
+            trace.add(day + hours(20), Trace.VIEW);
+            trace.add(day + hours(23), Trace.PLUGGED);
+            for (int run = 0; run < 4; run++) {
+                trace.add(day + hours(2 + 6 * run), Trace.CHANGE);
+            }
+        }
+        Result fixed = trace.replay(false);
+        Result adaptive = trace.replay(true);
+        assertEquals(7 * 24 / 3, fixed.requests);
+        assertTrue("Requests " + adaptive + " vs " + fixed, adaptive.requests < fixed.requests);
+        // Out of date at most about as long as the forecast stays the same
+        assertTrue(adaptive + " vs " + fixed, adaptive.maxStalenessAtView <= hours(6));
+    }
+
+    /**
+     * The same forecast with nobody looking at it, on mobile data and off the charger.
+     */
+    @Test
+    public void testReplayUnusedWeek() {
+        Trace trace = new Trace();
+        trace.add(0, Trace.MOBILE);
+        for (long time = hours(3); time < WEEK; time += hours(6)) {
+            trace.add(time, Trace.CHANGE);
+        }
+        Result fixed = trace.replay(false);
+        Result adaptive = trace.replay(true);
+        assertEquals(7 * 24 / 3, fixed.requests);
+        assertTrue("Requests " + adaptive + " vs " + fixed,
+                adaptive.requests <= fixed.requests / 3);
+        assertTrue(adaptive.requests >= WEEK / MAX_INTERVAL_MILLIS);
+    }
+
+    /**
+     * A forecast changing every hour, watched all day on Wi-Fi and a charger.
+     */
+    @Test
+    public void testReplayVolatileWeek() {
+        Trace trace = new Trace();
+        trace.add(0, Trace.WIFI);
+        trace.add(0, Trace.PLUGGED);
+        for (long time = hours(0.5); time < WEEK; time += HOUR_IN_MILLIS) {
+            trace.add(time, Trace.CHANGE);
+            trace.add(time + hours(0.25), Trace.VIEW);
+        }
+        Result fixed = trace.replay(false);
+        Result adaptive = trace.replay(true);
+        assertTrue("Requests " + adaptive + " vs " + fixed, adaptive.requests > fixed.requests);
+        assertTrue(adaptive.requests <= WEEK / MIN_INTERVAL_MILLIS);
+        assertTrue(adaptive + " vs " + fixed,
+                adaptive.stalenessAtViews < fixed.stalenessAtViews / 2);
+    }
+
+    private static long hours(double hours) {
+        return (long) (hours * HOUR_IN_MILLIS);
+    }
+
+    private static class Result {
+        int requests;
+        int views;
+        // How long the forecast shown had been out of date, in total and at its worst
+        long stalenessAtViews;
+        long maxStalenessAtView;
+
+        @Override
+        public String toString() {
+            return requests + " requests, views out of date for "
+                    + (stalenessAtViews / Math.max(1, views) / 60000) + " minutes on average, "
+                    + (maxStalenessAtView / 60000) + " at most";
+        }
+    }
+
+    /**
+     * A week of events, replayed on a simulated clock against a periodic sync that runs on time.
+     */
+    private static class Trace {
+        static final int VIEW = 0;
+        static final int CHANGE = 1;
+        static final int PLUGGED = 2;
+        static final int UNPLUGGED = 3;
+        static final int WIFI = 4;
+        static final int MOBILE = 5;
+
+        // {time since the start, event}
+        private final List<long[]> mEvents = new ArrayList<>();
+
+        void add(long time, int event) {
+            mEvents.add(new long[]{time, event});
+        }
+
+        Result replay(boolean adaptive) {
+            List<long[]> events = new ArrayList<>(mEvents);
+            Collections.sort(events, new Comparator<long[]>() {
+                @Override
+                public int compare(long[] a, long[] b) {
+                    return a[0] < b[0] ? -1 : (a[0] == b[0] ? 0 : 1);
+                }
+            });
+
+            SyncSchedulePolicy policy = new SyncSchedulePolicy();
+            Result result = new Result();
+            // The app was just opened, which is what sets up the sync
+            long lastView = NOW;
+            boolean charging = false;
+            boolean unmetered = false;
+            // When the server's forecast first changed after the last sync, -1 if it didn't
+            long unsyncedSince = -1;
+            long scheduled = DEFAULT_INTERVAL_MILLIS;
+            // The first sync runs right away, like the one after the account is created
+            long nextSync = NOW;
+
+            int index = 0;
+            while (true) {
+                long eventTime = index < events.size()
+                        ? NOW + events.get(index)[0] : Long.MAX_VALUE;
+                if (nextSync >= NOW + WEEK && eventTime >= NOW + WEEK) {
+                    return result;
+                }
+                long now;
+                boolean reschedule = false;
+                boolean synced = false;
+                if (nextSync < eventTime) {
+                    now = nextSync;
+                    result.requests++;
+                    policy.onSync(now, unsyncedSince >= 0);
+                    unsyncedSince = -1;
+                    nextSync = now + scheduled;
+                    reschedule = true;
+                    synced = true;
+                } else {
+                    now = eventTime;
+                    switch ((int) events.get(index++)[1]) {
+                        case VIEW:
+                            lastView = now;
+                            reschedule = true;
+                            result.views++;
+                            if (unsyncedSince >= 0) {
+                                result.stalenessAtViews += now - unsyncedSince;
+                                result.maxStalenessAtView = Math.max(result.maxStalenessAtView,
+                                        now - unsyncedSince);
+                            }
+                            break;
+                        case CHANGE:
+                            if (unsyncedSince < 0) {
+                                unsyncedSince = now;
+                            }
+                            break;
+                        case PLUGGED:
+                            charging = true;
+                            break;
+                        case UNPLUGGED:
+                            charging = false;
+                            break;
+                        case WIFI:
+                            unmetered = true;
+                            break;
+                        case MOBILE:
+                            unmetered = false;
+                            break;
+                    }
+                }
+                if (adaptive && reschedule) {
+                    // After every sync, and closer after a view, as the sync adapter does.  A new
+                    // period starts from now.
+                    long interval = policy.getIntervalMillis(now, lastView, charging, unmetered);
+                    if (SyncSchedulePolicy.isWorthRescheduling(scheduled, interval)
+                            && (synced || interval < scheduled)) {
+                        scheduled = interval;
+                        nextSync = now + scheduled;
+                    }
+                }
+            }
+        }
+    }
+}
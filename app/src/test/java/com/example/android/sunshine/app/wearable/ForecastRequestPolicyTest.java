@@ -0,0 +1,72 @@
+package com.example.android.sunshine.app.wearable;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.example.android.sunshine.app.wearable.ForecastRequestPolicy.Decision.ANSWER;
+import static com.example.android.sunshine.app.wearable.ForecastRequestPolicy.Decision.DUPLICATE;
+import static com.example.android.sunshine.app.wearable.ForecastRequestPolicy.Decision.SYNC;
+import static com.example.android.sunshine.app.wearable.ForecastRequestPolicy.Decision.THROTTLED;
+import static org.junit.Assert.assertEquals;
+
+public class ForecastRequestPolicyTest {
+    private static final long FRESH = 3 * 60 * 60 * 1000;
+    private static final long MIN_SYNC_INTERVAL = 15 * 60 * 1000;
+    private static final long NOW = 1468800000000L;
+
+    private ForecastRequestPolicy mPolicy;
+
+    @Before
+    public void setUp() {
+        mPolicy = new ForecastRequestPolicy(FRESH, MIN_SYNC_INTERVAL);
+    }
+
+    @Test
+    public void testFreshForecastIsAnsweredWithoutSync() {
+        assertEquals(ANSWER, mPolicy.onRequest("watch", 1, NOW, NOW - FRESH + 1, true));
+    }
+
+    @Test
+    public void testStaleForecastSyncs() {
+        assertEquals(SYNC, mPolicy.onRequest("watch", 1, NOW, NOW - FRESH, true));
+        // Young, but over for today
+        assertEquals(SYNC, mPolicy.onRequest("watch", 2, NOW + MIN_SYNC_INTERVAL,
+                NOW, false));
+        // Never synced
+        assertEquals(SYNC, mPolicy.onRequest("watch", 3, NOW + 2 * MIN_SYNC_INTERVAL,
+                0, false));
+    }
+
+    @Test
+    public void testForcedSyncsAreRateLimited() {
+        assertEquals(SYNC, mPolicy.onRequest("watch", 1, NOW, 0, false));
+        // A storm of requests, from a watch which keeps losing its forecast
+        for (int i = 2; i < 100; i++) {
+            assertEquals(THROTTLED, mPolicy.onRequest("watch", i, NOW + i * 1000, 0, false));
+        }
+        assertEquals(SYNC, mPolicy.onRequest("watch", 100, NOW + MIN_SYNC_INTERVAL, 0, false));
+    }
+
+    @Test
+    public void testRedeliveredRequestIsIgnored() {
+        assertEquals(SYNC, mPolicy.onRequest("watch", 7, NOW, 0, false));
+        assertEquals(DUPLICATE, mPolicy.onRequest("watch", 7, NOW + MIN_SYNC_INTERVAL, 0, false));
+        // The same id from another watch is another request
+        assertEquals(SYNC, mPolicy.onRequest("other", 7, NOW + MIN_SYNC_INTERVAL, 0, false));
+    }
+
+    @Test
+    public void testOnlyRecentRequestsAreRemembered() {
+        for (int i = 0; i <= ForecastRequestPolicy.MAX_REMEMBERED; i++) {
+            mPolicy.onRequest("watch", i, NOW, NOW, true);
+        }
+        assertEquals(ANSWER, mPolicy.onRequest("watch", 0, NOW, NOW, true));
+        assertEquals(DUPLICATE, mPolicy.onRequest("watch",
+                ForecastRequestPolicy.MAX_REMEMBERED, NOW, NOW, true));
+    }
+
+    @Test
+    public void testForecastFromTheFutureIsStale() {
+        assertEquals(SYNC, mPolicy.onRequest("watch", 1, NOW, NOW + 60 * 1000, true));
+    }
+}
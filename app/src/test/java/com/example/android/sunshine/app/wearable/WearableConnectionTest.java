@@ -0,0 +1,194 @@
+package com.example.android.sunshine.app.wearable;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs the connection against an in-memory data layer which only connects when told to, and a
+ * timer which only fires when told to.
+ */
+public class WearableConnectionTest {
+    private static final long IDLE_TIMEOUT = 1000;
+
+    private FakeClient mClient;
+    private FakeTimer mTimer;
+    private WearableConnection<String> mConnection;
+
+    static class FakeClient implements WearableConnection.Client<String> {
+        final List<String> put = new ArrayList<>();
+        WearableConnection.Callbacks callbacks;
+        int connects;
+        int disconnects;
+        boolean connected;
+
+        @Override
+        public void connect(WearableConnection.Callbacks callbacks) {
+            this.callbacks = callbacks;
+            connects++;
+        }
+
+        @Override
+        public void disconnect() {
+            disconnects++;
+            connected = false;
+        }
+
+        @Override
+        public void put(String item) {
+            if (!connected) {
+                fail("Put " + item + " while not connected");
+            }
+            put.add(item);
+        }
+
+        void finishConnecting() {
+            connected = true;
+            callbacks.onConnected();
+        }
+    }
+
+    static class FakeTimer implements WearableConnection.Timer {
+        Runnable task;
+        long delay;
+
+        @Override
+        public void schedule(Runnable task, long delayMillis) {
+            this.task = task;
+            delay = delayMillis;
+        }
+
+        @Override
+        public void cancel(Runnable task) {
+            if (this.task == task) {
+                this.task = null;
+            }
+        }
+
+        void fire() {
+            Runnable fired = task;
+            task = null;
+            fired.run();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        mClient = new FakeClient();
+        mTimer = new FakeTimer();
+        mConnection = new WearableConnection<>(mClient, mTimer, IDLE_TIMEOUT);
+    }
+
+    @Test
+    public void testItemsAreQueuedUntilConnected() {
+        mConnection.put("a");
+        mConnection.put("b");
+        mConnection.put("c");
+        assertTrue(mClient.put.isEmpty());
+        assertEquals(1, mClient.connects);
+
+        mClient.finishConnecting();
+        assertEquals(Arrays.asList("a", "b", "c"), mClient.put);
+
+        mConnection.put("d");
+        assertEquals(Arrays.asList("a", "b", "c", "d"), mClient.put);
+        assertEquals(1, mConnection.getConnectCount());
+    }
+
+    @Test
+    public void testDisconnectsOnceIdle() {
+        mConnection.put("a");
+        mClient.finishConnecting();
+        assertEquals(IDLE_TIMEOUT, mTimer.delay);
+
+        mTimer.fire();
+        assertEquals(1, mClient.disconnects);
+        assertFalse(mConnection.isConnected());
+
+        // The next item connects again
+        mConnection.put("b");
+        assertEquals(2, mClient.connects);
+        mClient.finishConnecting();
+        assertEquals(Arrays.asList("a", "b"), mClient.put);
+    }
+
+    @Test
+    public void testStaysConnectedWhileAcquired() {
+        mConnection.acquire();
+        mClient.finishConnecting();
+        mConnection.put("a");
+        assertTrue("No idle disconnect while held", mTimer.task == null);
+
+        mConnection.acquire();
+        mConnection.release();
+        assertTrue(mTimer.task == null);
+
+        mConnection.release();
+        mTimer.fire();
+        assertEquals(1, mClient.disconnects);
+        assertEquals(1, mClient.connects);
+    }
+
+    @Test
+    public void testNewItemCancelsIdleDisconnect() {
+        mConnection.put("a");
+        mClient.finishConnecting();
+        Runnable idle = mTimer.task;
+
+        mConnection.acquire();
+        assertTrue(mTimer.task == null);
+        // A stale run of the idle task must not disconnect a held connection
+        idle.run();
+        assertEquals(0, mClient.disconnects);
+        mConnection.release();
+    }
+
+    @Test
+    public void testFailedConnectKeepsQueue() {
+        mConnection.put("a");
+        mClient.callbacks.onConnectionFailed();
+        assertFalse(mConnection.isConnected());
+
+        mConnection.put("b");
+        assertEquals(2, mClient.connects);
+        mClient.finishConnecting();
+        assertEquals(Arrays.asList("a", "b"), mClient.put);
+    }
+
+    @Test
+    public void testSuspendedConnectionQueuesUntilReconnected() {
+        mConnection.acquire();
+        mClient.finishConnecting();
+        mClient.connected = false;
+        mClient.callbacks.onConnectionSuspended();
+
+        mConnection.put("a");
+        assertEquals("The client reconnects by itself", 1, mClient.connects);
+        mClient.finishConnecting();
+        assertEquals(Arrays.asList("a"), mClient.put);
+        mConnection.release();
+    }
+
+    @Test
+    public void testQueueIsBounded() {
+        for (int i = 0; i < WearableConnection.MAX_QUEUED + 2; i++) {
+            mConnection.put(Integer.toString(i));
+        }
+        mClient.finishConnecting();
+        assertEquals(WearableConnection.MAX_QUEUED, mClient.put.size());
+        assertEquals("2", mClient.put.get(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReleaseWithoutAcquire() {
+        mConnection.release();
+    }
+}
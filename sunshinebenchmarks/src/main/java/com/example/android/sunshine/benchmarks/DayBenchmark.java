@@ -0,0 +1,107 @@
+package com.example.android.sunshine.benchmarks;
+
+import com.example.android.sunshine.core.ForecastBatch;
+import com.example.android.sunshine.core.ForecastDates;
+import com.example.android.sunshine.core.Temperatures;
+import com.example.android.sunshine.core.WeatherCondition;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.text.SimpleDateFormat;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per day work done on every parsed forecast: date normalization, the formatting the list
+ * and widgets do, and the condition lookup behind every icon.  Each benchmark covers all days of
+ * the forecast.
+ * <p/>
+ * Utility's formatting methods need a Context, so the formatting benchmarks make the same JDK
+ * calls they do, with the same patterns.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DayBenchmark {
+    // R.string.format_temperature
+    private static final String FORMAT_TEMPERATURE = "%1.0f\u00B0";
+
+    /**
+     * WeatherContract.normalizeDate(long), which looks up the default zone for every date.
+     */
+    @Benchmark
+    public long normalizeDateDefaultZone(ForecastState state) {
+        ForecastBatch batch = state.batch;
+        long sum = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            sum += ForecastDates.normalizeDate(batch.getDate(i), TimeZone.getDefault());
+        }
+        return sum;
+    }
+
+    /**
+     * WeatherContract.normalizeDate(long, TimeZone) with the zone looked up once.
+     */
+    @Benchmark
+    public long normalizeDateSharedZone(ForecastState state) {
+        ForecastBatch batch = state.batch;
+        TimeZone timeZone = TimeZone.getDefault();
+        long sum = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            sum += ForecastDates.normalizeDate(batch.getDate(i), timeZone);
+        }
+        return sum;
+    }
+
+    /**
+     * Utility.formatTemperature of every high and low, in Fahrenheit.
+     */
+    @Benchmark
+    public void formatTemperature(ForecastState state, Blackhole blackhole) {
+        ForecastBatch batch = state.batch;
+        for (int i = 0; i < batch.size(); i++) {
+            blackhole.consume(String.format(FORMAT_TEMPERATURE,
+                    Temperatures.toPreferredUnits(batch.getMaxTemp(i), false)));
+            blackhole.consume(String.format(FORMAT_TEMPERATURE,
+                    Temperatures.toPreferredUnits(batch.getMinTemp(i), false)));
+        }
+    }
+
+    /**
+     * Utility.getFriendlyDayString past the first week, which builds a new SimpleDateFormat for
+     * every date.
+     */
+    @Benchmark
+    public void formatFriendlyDate(ForecastState state, Blackhole blackhole) {
+        ForecastBatch batch = state.batch;
+        for (int i = 0; i < batch.size(); i++) {
+            SimpleDateFormat shortenedDateFormat = new SimpleDateFormat("EEE MMM dd");
+            blackhole.consume(shortenedDateFormat.format(batch.getDate(i)));
+        }
+    }
+
+    /**
+     * The condition lookup behind Utility.getIconResourceForWeatherCondition and its art and
+     * watch face variants.
+     */
+    @Benchmark
+    public int conditionLookup(ForecastState state) {
+        ForecastBatch batch = state.batch;
+        int drawn = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            if (WeatherCondition.forWeatherId(batch.getWeatherId(i)) != null) {
+                drawn++;
+            }
+        }
+        return drawn;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.android.sunshine.benchmarks;
+
+import com.example.android.sunshine.core.ForecastBatch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON to rows: a whole response parsed into the ForecastBatch the provider writes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ForecastParseBenchmark {
+    @Benchmark
+    public ForecastBatch parse(ForecastState state) throws IOException {
+        return ForecastState.parse(state.response);
+    }
+}
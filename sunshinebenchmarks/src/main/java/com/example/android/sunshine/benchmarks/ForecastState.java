@@ -0,0 +1,74 @@
+package com.example.android.sunshine.benchmarks;
+
+import com.example.android.sunshine.core.ForecastBatch;
+import com.example.android.sunshine.core.ForecastDates;
+import com.example.android.sunshine.core.ForecastParser;
+import com.example.android.sunshine.core.WearForecast;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.TimeZone;
+
+/**
+ * A forecast response of 1, 14 or 1000 days, and the batch the sync adapter makes of it, shared
+ * by the benchmarks which work on parsed days.
+ */
+@State(Scope.Benchmark)
+public class ForecastState {
+    // 2016-10-19 20:00 UTC, the first day of the recorded response
+    static final long FETCH_TIME = 1476907200000L;
+
+    static final TimeZone TIME_ZONE = TimeZone.getTimeZone("America/Los_Angeles");
+
+    @Param({"1", "14", "1000"})
+    public int days;
+
+    public byte[] response;
+    public ForecastBatch batch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        response = OwmFixtures.forecastOfDays(days);
+        batch = parse(response);
+        if (batch.size() != days) {
+            throw new IllegalStateException("Parsed " + batch.size() + " of " + days + " days");
+        }
+    }
+
+    /**
+     * Parse a response into a batch the way SunshineSyncAdapter.getWeatherDataFromStream does,
+     * with the day arithmetic done on millis instead of android.text.format.Time.
+     */
+    static ForecastBatch parse(byte[] response) throws IOException {
+        final long startDate =
+                WearForecast.localEpochDay(FETCH_TIME, TIME_ZONE) * ForecastDates.DAY_IN_MILLIS;
+        final ForecastBatch batch = new ForecastBatch();
+        int code = ForecastParser.parse(new ByteArrayInputStream(response),
+                new ForecastParser.Callback() {
+                    @Override
+                    public void onCity(String cityName, double latitude, double longitude) {
+                        batch.setLocation("94043", cityName, latitude, longitude);
+                    }
+
+                    @Override
+                    public void onDay(int index, int weatherId, String description, double high,
+                                      double low, double pressure, int humidity,
+                                      double windSpeed, double windDirection) {
+                        batch.add(startDate + index * ForecastDates.DAY_IN_MILLIS, weatherId,
+                                description, low, high, humidity, pressure, windSpeed,
+                                windDirection);
+                    }
+                });
+        if (code != HttpURLConnection.HTTP_OK) {
+            throw new IOException("Fixture reports " + code);
+        }
+        return batch;
+    }
+}
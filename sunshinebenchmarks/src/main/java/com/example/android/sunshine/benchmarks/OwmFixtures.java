@@ -0,0 +1,114 @@
+package com.example.android.sunshine.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * OWM daily forecast responses of any length, made from the recorded 14 day response: the days
+ * of the "list" array are kept verbatim and repeated past the 14th, and "cnt" is updated.  The
+ * parser reads the days in order and ignores their "dt", so a longer response parses like a
+ * real one would.
+ */
+public final class OwmFixtures {
+    public static final String RECORDED_14_DAYS = "/owm_forecast_14_days.json";
+
+    private OwmFixtures() {
+    }
+
+    /**
+     * @return the body of a response with the given number of days, UTF-8 encoded.
+     */
+    public static byte[] forecastOfDays(int days) throws IOException {
+        String recorded = new String(readResource(RECORDED_14_DAYS), "UTF-8");
+        int listStart = recorded.indexOf('[', recorded.indexOf("\"list\""));
+        List<String> recordedDays = new ArrayList<>();
+        int listEnd = splitArray(recorded, listStart, recordedDays);
+
+        StringBuilder body = new StringBuilder(recorded.length() / recordedDays.size() * days);
+        body.append(recorded, 0, listStart + 1)
+                .append('\n');
+        for (int i = 0; i < days; i++) {
+            if (i > 0) {
+                body.append(",\n");
+            }
+            body.append(recordedDays.get(i % recordedDays.size()));
+        }
+        body.append('\n')
+                .append(recorded, listEnd, recorded.length());
+
+        String response = body.toString()
+                .replaceFirst("\"cnt\": *\\d+", "\"cnt\": " + days);
+        return response.getBytes("UTF-8");
+    }
+
+    /**
+     * Split the JSON array starting at json[start] into the text of its elements.
+     *
+     * @return the index of the closing bracket.
+     */
+    private static int splitArray(String json, int start, List<String> elements) {
+        int depth = 0;
+        int elementStart = start + 1;
+        boolean inString = false;
+        for (int i = start + 1; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (inString) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+            switch (c) {
+                case '"':
+                    inString = true;
+                    break;
+                case '{':
+                case '[':
+                    depth++;
+                    break;
+                case '}':
+                    depth--;
+                    break;
+                case ']':
+                    if (depth == 0) {
+                        elements.add(json.substring(elementStart, i).trim());
+                        return i;
+                    }
+                    depth--;
+                    break;
+                case ',':
+                    if (depth == 0) {
+                        elements.add(json.substring(elementStart, i).trim());
+                        elementStart = i + 1;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        throw new IllegalArgumentException("Unterminated array at " + start);
+    }
+
+    private static byte[] readResource(String name) throws IOException {
+        InputStream in = OwmFixtures.class.getResourceAsStream(name);
+        if (in == null) {
+            throw new IOException("Missing fixture " + name);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.android.sunshine.benchmarks;
+
+import com.example.android.sunshine.core.ForecastBatch;
+import com.example.android.sunshine.core.Temperatures;
+import com.example.android.sunshine.core.WearForecast;
+import com.example.android.sunshine.core.WearForecastCodec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding the forecast frames the phone sends the watch face.  The phone sends at most the 14
+ * days WearableForecastQuery reads, so longer forecasts are cut to that.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WearPayloadBenchmark {
+    private static final int MAX_WEAR_DAYS = 14;
+
+    @State(Scope.Benchmark)
+    public static class Forecasts {
+        WearForecast mPrevious;
+        WearForecast mCurrent;
+
+        @Setup(Level.Trial)
+        public void setUp(ForecastState state) {
+            int startDay = WearForecast.localEpochDay(ForecastState.FETCH_TIME,
+                    ForecastState.TIME_ZONE);
+            mPrevious = toWearForecast(state.batch, startDay, 0);
+            // The next sync of the same day, with the last day's high a degree warmer
+            mCurrent = toWearForecast(state.batch, startDay, 1);
+        }
+    }
+
+    private static WearForecast toWearForecast(ForecastBatch batch, int startDay, int warmer) {
+        int days = Math.min(batch.size(), MAX_WEAR_DAYS);
+        int[] weatherIds = new int[days];
+        int[] highs = new int[days];
+        int[] lows = new int[days];
+        for (int i = 0; i < days; i++) {
+            weatherIds[i] = batch.getWeatherId(i);
+            highs[i] = WearForecast.roundTemperature(
+                    Temperatures.toPreferredUnits(batch.getMaxTemp(i), true));
+            lows[i] = WearForecast.roundTemperature(
+                    Temperatures.toPreferredUnits(batch.getMinTemp(i), true));
+        }
+        highs[days - 1] += warmer;
+        return new WearForecast(startDay, weatherIds, highs, lows);
+    }
+
+    @Benchmark
+    public byte[] encodeFull(Forecasts forecasts) {
+        return WearForecastCodec.encodeFull(2, forecasts.mCurrent);
+    }
+
+    @Benchmark
+    public byte[] encodeDelta(Forecasts forecasts) {
+        return WearForecastCodec.encodeDelta(2, 1, forecasts.mPrevious, forecasts.mCurrent);
+    }
+}
@@ -0,0 +1,261 @@
+package com.example.android.sunshine.core;
+
+/**
+ * The days of one forecast, for one location, stored column by column in primitive arrays.
+ * <p/>
+ * This replaces the Vector of ContentValues the sync used to build: there is no HashMap and no
+ * boxed Double/Integer/Long per day, and the short descriptions, of which OWM only uses a
+ * handful, share one String instance per distinct value. The phone's
+ * WeatherProvider.writeForecast consumes a batch directly through compiled statements.
+ */
+public class ForecastBatch {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long mLocationId = -1;
+    private String mLocationSetting;
+    private String mCityName;
+    private double mCoordLat;
+    private double mCoordLong;
+    private int mSize;
+
+    private long[] mDate;
+    private int[] mWeatherId;
+    private String[] mShortDesc;
+    private double[] mMinTemp;
+    private double[] mMaxTemp;
+    private int[] mHumidity;
+    private double[] mPressure;
+    private double[] mWindSpeed;
+    private double[] mDegrees;
+
+    // Distinct short descriptions seen so far
+    private String[] mDescriptions = new String[8];
+    private int mDescriptionCount;
+
+    public ForecastBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ForecastBatch(int capacity) {
+        allocate(Math.max(capacity, 1));
+    }
+
+    public void setLocationId(long locationId) {
+        mLocationId = locationId;
+    }
+
+    /**
+     * @return the row id of the location the forecast is for, -1 if it hasn't been set.
+     */
+    public long getLocationId() {
+        return mLocationId;
+    }
+
+    /**
+     * Describe the location the forecast is for, so WeatherProvider.writeForecasts can
+     * look up or add its row when the location id isn't known yet.
+     */
+    public void setLocation(String locationSetting, String cityName, double lat, double lon) {
+        mLocationSetting = locationSetting;
+        mCityName = cityName;
+        mCoordLat = lat;
+        mCoordLong = lon;
+    }
+
+    public String getLocationSetting() {
+        return mLocationSetting;
+    }
+
+    public String getCityName() {
+        return mCityName;
+    }
+
+    public double getCoordLat() {
+        return mCoordLat;
+    }
+
+    public double getCoordLong() {
+        return mCoordLong;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Append a day to the batch.
+     *
+     * @return the index of the new day.
+     */
+    public int add(long date, int weatherId, String shortDesc, double minTemp, double maxTemp,
+                   int humidity, double pressure, double windSpeed, double degrees) {
+        if (mSize == mDate.length) {
+            grow();
+        }
+        int i = mSize++;
+        mDate[i] = date;
+        mWeatherId[i] = weatherId;
+        mShortDesc[i] = intern(shortDesc);
+        mMinTemp[i] = minTemp;
+        mMaxTemp[i] = maxTemp;
+        mHumidity[i] = humidity;
+        mPressure[i] = pressure;
+        mWindSpeed[i] = windSpeed;
+        mDegrees[i] = degrees;
+        return i;
+    }
+
+    public void clear() {
+        mSize = 0;
+        for (int i = 0; i < mShortDesc.length; i++) {
+            mShortDesc[i] = null;
+        }
+    }
+
+    public long getDate(int i) {
+        checkIndex(i);
+        return mDate[i];
+    }
+
+    public int getWeatherId(int i) {
+        checkIndex(i);
+        return mWeatherId[i];
+    }
+
+    public String getShortDesc(int i) {
+        checkIndex(i);
+        return mShortDesc[i];
+    }
+
+    public double getMinTemp(int i) {
+        checkIndex(i);
+        return mMinTemp[i];
+    }
+
+    public double getMaxTemp(int i) {
+        checkIndex(i);
+        return mMaxTemp[i];
+    }
+
+    public int getHumidity(int i) {
+        checkIndex(i);
+        return mHumidity[i];
+    }
+
+    public double getPressure(int i) {
+        checkIndex(i);
+        return mPressure[i];
+    }
+
+    public double getWindSpeed(int i) {
+        checkIndex(i);
+        return mWindSpeed[i];
+    }
+
+    public double getDegrees(int i) {
+        checkIndex(i);
+        return mDegrees[i];
+    }
+
+    /**
+     * @return a hash of everything stored for day i except its date, to tell whether the row
+     * stored for that date has to be rewritten.
+     */
+    public long contentHash(int i) {
+        checkIndex(i);
+        return contentHash(mWeatherId[i], mShortDesc[i], mMinTemp[i], mMaxTemp[i], mHumidity[i],
+                mPressure[i], mWindSpeed[i], mDegrees[i]);
+    }
+
+    /**
+     * The hash {@link #contentHash(int)} computes, for values read back from the database.
+     */
+    public static long contentHash(int weatherId, String shortDesc, double minTemp,
+                                   double maxTemp, int humidity, double pressure,
+                                   double windSpeed, double degrees) {
+        // 64 bit FNV-1a over the values
+        long hash = 0xcbf29ce484222325L;
+        hash = mix(hash, weatherId);
+        hash = mix(hash, shortDesc == null ? 0 : shortDesc.hashCode());
+        hash = mix(hash, Double.doubleToLongBits(minTemp));
+        hash = mix(hash, Double.doubleToLongBits(maxTemp));
+        hash = mix(hash, humidity);
+        hash = mix(hash, Double.doubleToLongBits(pressure));
+        hash = mix(hash, Double.doubleToLongBits(windSpeed));
+        hash = mix(hash, Double.doubleToLongBits(degrees));
+        return hash;
+    }
+
+    private static long mix(long hash, long value) {
+        for (int i = 0; i < 8; i++) {
+            hash ^= value & 0xff;
+            hash *= 0x100000001b3L;
+            value >>>= 8;
+        }
+        return hash;
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= mSize) {
+            throw new IndexOutOfBoundsException("Index " + i + ", size " + mSize);
+        }
+    }
+
+    /**
+     * Returns the shared instance for a description, OWM sends the same few ("Clear", "Rain",
+     * "Clouds", ...) for every day.
+     */
+    private String intern(String description) {
+        if (description == null) {
+            return null;
+        }
+        for (int i = 0; i < mDescriptionCount; i++) {
+            if (mDescriptions[i].equals(description)) {
+                return mDescriptions[i];
+            }
+        }
+        if (mDescriptionCount == mDescriptions.length) {
+            String[] descriptions = new String[mDescriptionCount * 2];
+            System.arraycopy(mDescriptions, 0, descriptions, 0, mDescriptionCount);
+            mDescriptions = descriptions;
+        }
+        mDescriptions[mDescriptionCount++] = description;
+        return description;
+    }
+
+    private void allocate(int capacity) {
+        mDate = new long[capacity];
+        mWeatherId = new int[capacity];
+        mShortDesc = new String[capacity];
+        mMinTemp = new double[capacity];
+        mMaxTemp = new double[capacity];
+        mHumidity = new int[capacity];
+        mPressure = new double[capacity];
+        mWindSpeed = new double[capacity];
+        mDegrees = new double[capacity];
+    }
+
+    private void grow() {
+        long[] date = mDate;
+        int[] weatherId = mWeatherId;
+        String[] shortDesc = mShortDesc;
+        double[] minTemp = mMinTemp;
+        double[] maxTemp = mMaxTemp;
+        int[] humidity = mHumidity;
+        double[] pressure = mPressure;
+        double[] windSpeed = mWindSpeed;
+        double[] degrees = mDegrees;
+
+        allocate(mSize * 2);
+
+        System.arraycopy(date, 0, mDate, 0, mSize);
+        System.arraycopy(weatherId, 0, mWeatherId, 0, mSize);
+        System.arraycopy(shortDesc, 0, mShortDesc, 0, mSize);
+        System.arraycopy(minTemp, 0, mMinTemp, 0, mSize);
+        System.arraycopy(maxTemp, 0, mMaxTemp, 0, mSize);
+        System.arraycopy(humidity, 0, mHumidity, 0, mSize);
+        System.arraycopy(pressure, 0, mPressure, 0, mSize);
+        System.arraycopy(windSpeed, 0, mWindSpeed, 0, mSize);
+        System.arraycopy(degrees, 0, mDegrees, 0, mSize);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.android.sunshine.core;
+
+import java.util.TimeZone;
+
+/**
+ * Day arithmetic for forecast dates, done on millis and a TimeZone instead of a Calendar or an
+ * android.text.format.Time per date.
+ */
+public final class ForecastDates {
+    public static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+
+    private ForecastDates() {
+    }
+
+    /**
+     * @param startDate the date in milliseconds since the epoch
+     * @param timeZone  the zone whose day boundaries to use
+     * @return the start of the day containing startDate
+     */
+    public static long normalizeDate(long startDate, TimeZone timeZone) {
+        long localDate = startDate + timeZone.getOffset(startDate);
+        long localDayStart = localDate - mod(localDate, DAY_IN_MILLIS);
+        // Use the offset in effect at midnight, which differs from the one at startDate on days
+        // where daylight saving time changes.
+        long dayStartGuess = localDayStart - timeZone.getOffset(startDate);
+        return localDayStart - timeZone.getOffset(dayStartGuess);
+    }
+
+    private static long mod(long value, long divisor) {
+        long remainder = value % divisor;
+        return remainder < 0 ? remainder + divisor : remainder;
+    }
+}
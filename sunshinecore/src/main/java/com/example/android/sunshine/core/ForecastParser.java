@@ -0,0 +1,265 @@
+package com.example.android.sunshine.core;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+
+/**
+ * Streaming parser for the OpenWeatherMap daily forecast response. The response is read once,
+ * straight from the connection's InputStream, and every day is handed to the {@link Callback}
+ * as soon as it has been read. No String of the whole body and no JSONObject tree is ever built.
+ */
+public class ForecastParser {
+
+    // These are the names of the JSON objects that need to be extracted.
+
+    // Location information
+    private static final String OWM_CITY = "city";
+    private static final String OWM_CITY_NAME = "name";
+    private static final String OWM_COORD = "coord";
+
+    // Location coordinate
+    private static final String OWM_LATITUDE = "lat";
+    private static final String OWM_LONGITUDE = "lon";
+
+    // Weather information.  Each day's forecast info is an element of the "list" array.
+    private static final String OWM_LIST = "list";
+
+    private static final String OWM_PRESSURE = "pressure";
+    private static final String OWM_HUMIDITY = "humidity";
+    private static final String OWM_WINDSPEED = "speed";
+    private static final String OWM_WIND_DIRECTION = "deg";
+
+    // All temperatures are children of the "temp" object.
+    private static final String OWM_TEMPERATURE = "temp";
+    private static final String OWM_MAX = "max";
+    private static final String OWM_MIN = "min";
+
+    private static final String OWM_WEATHER = "weather";
+    private static final String OWM_DESCRIPTION = "main";
+    private static final String OWM_WEATHER_ID = "id";
+
+    private static final String OWM_MESSAGE_CODE = "cod";
+
+    // Bits for the fields every day must have, same as the ones the JSONObject path required
+    private static final int FIELD_PRESSURE = 1;
+    private static final int FIELD_HUMIDITY = 1 << 1;
+    private static final int FIELD_WINDSPEED = 1 << 2;
+    private static final int FIELD_WIND_DIRECTION = 1 << 3;
+    private static final int FIELD_MAX = 1 << 4;
+    private static final int FIELD_MIN = 1 << 5;
+    private static final int FIELD_DESCRIPTION = 1 << 6;
+    private static final int FIELD_WEATHER_ID = 1 << 7;
+    private static final int ALL_DAY_FIELDS = (1 << 8) - 1;
+
+    /**
+     * Receives the parsed values, in the order they appear in the response.
+     */
+    public interface Callback {
+        void onCity(String cityName, double latitude, double longitude);
+
+        /**
+         * @param index position of the day in the forecast, 0 is today.
+         */
+        void onDay(int index, int weatherId, String description, double high, double low,
+                   double pressure, int humidity, double windSpeed, double windDirection);
+    }
+
+    private final JsonPullParser mJson;
+
+    // Values of the day being read
+    private int mFields;
+    private double mPressure;
+    private int mHumidity;
+    private double mWindSpeed;
+    private double mWindDirection;
+    private double mHigh;
+    private double mLow;
+    private String mDescription;
+    private int mWeatherId;
+
+    private ForecastParser(InputStream in) throws IOException {
+        mJson = new JsonPullParser(new InputStreamReader(in, "UTF-8"));
+    }
+
+    /**
+     * Parse a forecast response. The stream is not closed.
+     *
+     * @param in       the response body
+     * @param callback receives the city and every day of the forecast
+     * @return the "cod" reported by OWM, or HTTP_OK if the response doesn't contain one. When
+     * this isn't HTTP_OK the callback may not have been called at all.
+     * @throws MalformedJsonException if the response is not valid JSON or misses required fields
+     * @throws IOException            if reading from the stream fails or the stream is empty
+     */
+    public static int parse(InputStream in, Callback callback) throws IOException {
+        return new ForecastParser(in).parse(callback);
+    }
+
+    private int parse(Callback callback) throws IOException {
+        int messageCode = HttpURLConnection.HTTP_OK;
+        boolean hasCity = false;
+        boolean hasList = false;
+
+        if (mJson.peek() == JsonPullParser.END_DOCUMENT) {
+            // Stream was empty.  That's the server's fault, not a malformed response.
+            throw new EOFException("Empty forecast response");
+        }
+
+        mJson.beginObject();
+        while (mJson.hasNext()) {
+            String name = mJson.nextName();
+            if (OWM_CITY.equals(name)) {
+                readCity(callback);
+                hasCity = true;
+            } else if (OWM_LIST.equals(name)) {
+                readList(callback);
+                hasList = true;
+            } else if (OWM_MESSAGE_CODE.equals(name)) {
+                messageCode = mJson.nextInt();
+            } else {
+                mJson.skipValue();
+            }
+        }
+        mJson.endObject();
+
+        if (messageCode == HttpURLConnection.HTTP_OK && !(hasCity && hasList)) {
+            throw new MalformedJsonException("No value for " + (hasCity ? OWM_LIST : OWM_CITY));
+        }
+        return messageCode;
+    }
+
+    private void readCity(Callback callback) throws IOException {
+        String cityName = null;
+        double latitude = 0;
+        double longitude = 0;
+        boolean hasCoord = false;
+
+        mJson.beginObject();
+        while (mJson.hasNext()) {
+            String name = mJson.nextName();
+            if (OWM_CITY_NAME.equals(name)) {
+                cityName = mJson.nextString();
+            } else if (OWM_COORD.equals(name)) {
+                int found = 0;
+                mJson.beginObject();
+                while (mJson.hasNext()) {
+                    String coordName = mJson.nextName();
+                    if (OWM_LATITUDE.equals(coordName)) {
+                        latitude = mJson.nextDouble();
+                        found |= 1;
+                    } else if (OWM_LONGITUDE.equals(coordName)) {
+                        longitude = mJson.nextDouble();
+                        found |= 2;
+                    } else {
+                        mJson.skipValue();
+                    }
+                }
+                mJson.endObject();
+                hasCoord = found == 3;
+            } else {
+                mJson.skipValue();
+            }
+        }
+        mJson.endObject();
+
+        if (cityName == null || !hasCoord) {
+            throw new MalformedJsonException("Incomplete " + OWM_CITY);
+        }
+        callback.onCity(cityName, latitude, longitude);
+    }
+
+    private void readList(Callback callback) throws IOException {
+        int index = 0;
+        mJson.beginArray();
+        while (mJson.hasNext()) {
+            readDay();
+            if (mFields != ALL_DAY_FIELDS) {
+                throw new MalformedJsonException("Incomplete forecast for day " + index);
+            }
+            callback.onDay(index++, mWeatherId, mDescription, mHigh, mLow,
+                    mPressure, mHumidity, mWindSpeed, mWindDirection);
+        }
+        mJson.endArray();
+    }
+
+    private void readDay() throws IOException {
+        mFields = 0;
+        mDescription = null;
+
+        mJson.beginObject();
+        while (mJson.hasNext()) {
+            String name = mJson.nextName();
+            if (OWM_PRESSURE.equals(name)) {
+                mPressure = mJson.nextDouble();
+                mFields |= FIELD_PRESSURE;
+            } else if (OWM_HUMIDITY.equals(name)) {
+                mHumidity = mJson.nextInt();
+                mFields |= FIELD_HUMIDITY;
+            } else if (OWM_WINDSPEED.equals(name)) {
+                mWindSpeed = mJson.nextDouble();
+                mFields |= FIELD_WINDSPEED;
+            } else if (OWM_WIND_DIRECTION.equals(name)) {
+                mWindDirection = mJson.nextDouble();
+                mFields |= FIELD_WIND_DIRECTION;
+            } else if (OWM_TEMPERATURE.equals(name)) {
+                readTemperature();
+            } else if (OWM_WEATHER.equals(name)) {
+                readWeather();
+            } else {
+                mJson.skipValue();
+            }
+        }
+        mJson.endObject();
+    }
+
+    private void readTemperature() throws IOException {
+        // Temperatures are in a child object called "temp".  Try not to name variables
+        // "temp" when working with temperature.  It confuses everybody.
+        mJson.beginObject();
+        while (mJson.hasNext()) {
+            String name = mJson.nextName();
+            if (OWM_MAX.equals(name)) {
+                mHigh = mJson.nextDouble();
+                mFields |= FIELD_MAX;
+            } else if (OWM_MIN.equals(name)) {
+                mLow = mJson.nextDouble();
+                mFields |= FIELD_MIN;
+            } else {
+                mJson.skipValue();
+            }
+        }
+        mJson.endObject();
+    }
+
+    private void readWeather() throws IOException {
+        // Description is in a child array called "weather", which is 1 element long.
+        // That element also contains a weather code.  Any further elements are skipped.
+        mJson.beginArray();
+        boolean first = true;
+        while (mJson.hasNext()) {
+            if (!first) {
+                mJson.skipValue();
+                continue;
+            }
+            first = false;
+            mJson.beginObject();
+            while (mJson.hasNext()) {
+                String name = mJson.nextName();
+                if (OWM_DESCRIPTION.equals(name)) {
+                    mDescription = mJson.nextString();
+                    mFields |= FIELD_DESCRIPTION;
+                } else if (OWM_WEATHER_ID.equals(name)) {
+                    mWeatherId = mJson.nextInt();
+                    mFields |= FIELD_WEATHER_ID;
+                } else {
+                    mJson.skipValue();
+                }
+            }
+            mJson.endObject();
+        }
+        mJson.endArray();
+    }
+}
@@ -0,0 +1,508 @@
+package com.example.android.sunshine.core;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Minimal pull based JSON tokenizer, reading straight from a {@link Reader} through a small
+ * fixed buffer. Unlike org.json it never holds the whole document in memory and never builds an
+ * object tree, so the caller decides what to keep and everything else is skipped.
+ * <p/>
+ * The API mirrors android.util.JsonReader, which is not available on API 10 and can't be used on
+ * a plain JVM.
+ */
+public class JsonPullParser {
+    public static final int BEGIN_OBJECT = 1;
+    public static final int END_OBJECT = 2;
+    public static final int BEGIN_ARRAY = 3;
+    public static final int END_ARRAY = 4;
+    public static final int NAME = 5;
+    public static final int STRING = 6;
+    public static final int NUMBER = 7;
+    public static final int BOOLEAN = 8;
+    public static final int NULL = 9;
+    public static final int END_DOCUMENT = 10;
+
+    private static final int PEEKED_NONE = 0;
+
+    // Lexical scopes kept on the stack
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_OBJECT = 2;
+    private static final int DANGLING_NAME = 3;
+    private static final int NONEMPTY_OBJECT = 4;
+    private static final int EMPTY_ARRAY = 5;
+    private static final int NONEMPTY_ARRAY = 6;
+
+    // Powers of ten which are exactly representable as a double
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final Reader mIn;
+    private final char[] mBuffer = new char[1024];
+    private int mPos = 0;
+    private int mLimit = 0;
+    // Characters consumed by previous buffer fills, for error messages
+    private long mBufferOffset = 0;
+
+    // Scratch space for strings and number literals, grown on demand
+    private char[] mScratch = new char[64];
+    private int mScratchLength;
+
+    private int[] mStack = new int[32];
+    private int mStackSize = 0;
+
+    private int mPeeked = PEEKED_NONE;
+
+    public JsonPullParser(Reader in) {
+        if (in == null) {
+            throw new NullPointerException("in == null");
+        }
+        mIn = in;
+        mStack[mStackSize++] = EMPTY_DOCUMENT;
+    }
+
+    public void beginObject() throws IOException {
+        expect(BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+        mPeeked = PEEKED_NONE;
+    }
+
+    public void endObject() throws IOException {
+        expect(END_OBJECT);
+        mStackSize--;
+        mPeeked = PEEKED_NONE;
+    }
+
+    public void beginArray() throws IOException {
+        expect(BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+        mPeeked = PEEKED_NONE;
+    }
+
+    public void endArray() throws IOException {
+        expect(END_ARRAY);
+        mStackSize--;
+        mPeeked = PEEKED_NONE;
+    }
+
+    /**
+     * @return true if the current object or array has another element.
+     */
+    public boolean hasNext() throws IOException {
+        int p = peek();
+        return p != END_OBJECT && p != END_ARRAY && p != END_DOCUMENT;
+    }
+
+    public String nextName() throws IOException {
+        expect(NAME);
+        mPeeked = PEEKED_NONE;
+        readString();
+        return new String(mScratch, 0, mScratchLength);
+    }
+
+    /**
+     * Returns the next string value. Numbers are returned as their literal text.
+     */
+    public String nextString() throws IOException {
+        int p = peek();
+        if (p == STRING) {
+            readString();
+        } else if (p == NUMBER) {
+            readNumberLiteral();
+        } else {
+            throw syntaxError("Expected a string but was " + p);
+        }
+        mPeeked = PEEKED_NONE;
+        return new String(mScratch, 0, mScratchLength);
+    }
+
+    /**
+     * Returns the next number value. Quoted numbers, as OWM uses for some fields, are accepted.
+     */
+    public double nextDouble() throws IOException {
+        int p = peek();
+        double result;
+        if (p == NUMBER) {
+            readNumberLiteral();
+            result = parseScratchAsDouble();
+        } else if (p == STRING) {
+            readString();
+            try {
+                result = Double.parseDouble(new String(mScratch, 0, mScratchLength));
+            } catch (NumberFormatException e) {
+                throw syntaxError("Expected a number but was a string");
+            }
+        } else {
+            throw syntaxError("Expected a number but was " + p);
+        }
+        mPeeked = PEEKED_NONE;
+        return result;
+    }
+
+    public int nextInt() throws IOException {
+        double value = nextDouble();
+        int result = (int) value;
+        if (result != value) {
+            throw syntaxError("Expected an int but was " + value);
+        }
+        return result;
+    }
+
+    /**
+     * Skips the next value, recursively skipping nested objects and arrays.
+     */
+    public void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            int p = peek();
+            switch (p) {
+                case BEGIN_OBJECT:
+                    beginObject();
+                    depth++;
+                    break;
+                case BEGIN_ARRAY:
+                    beginArray();
+                    depth++;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    depth--;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    depth--;
+                    break;
+                case NAME:
+                case STRING:
+                    readString();
+                    mPeeked = PEEKED_NONE;
+                    break;
+                case NUMBER:
+                    readNumberLiteral();
+                    mPeeked = PEEKED_NONE;
+                    break;
+                case BOOLEAN:
+                case NULL:
+                    readLiteral();
+                    mPeeked = PEEKED_NONE;
+                    break;
+                default:
+                    throw syntaxError("Unexpected end of document");
+            }
+        } while (depth != 0);
+    }
+
+    public int peek() throws IOException {
+        if (mPeeked != PEEKED_NONE) {
+            return mPeeked;
+        }
+
+        int scope = mStack[mStackSize - 1];
+        if (scope == EMPTY_ARRAY) {
+            mStack[mStackSize - 1] = NONEMPTY_ARRAY;
+        } else if (scope == NONEMPTY_ARRAY) {
+            int c = nextNonWhitespace();
+            if (c == ']') {
+                return mPeeked = END_ARRAY;
+            } else if (c != ',') {
+                throw syntaxError("Unterminated array");
+            }
+        } else if (scope == EMPTY_OBJECT || scope == NONEMPTY_OBJECT) {
+            mStack[mStackSize - 1] = DANGLING_NAME;
+            if (scope == NONEMPTY_OBJECT) {
+                int c = nextNonWhitespace();
+                if (c == '}') {
+                    return mPeeked = END_OBJECT;
+                } else if (c != ',') {
+                    throw syntaxError("Unterminated object");
+                }
+            }
+            int c = nextNonWhitespace();
+            if (c == '"') {
+                return mPeeked = NAME;
+            } else if (c == '}' && scope == EMPTY_OBJECT) {
+                return mPeeked = END_OBJECT;
+            }
+            throw syntaxError("Expected name");
+        } else if (scope == DANGLING_NAME) {
+            mStack[mStackSize - 1] = NONEMPTY_OBJECT;
+            if (nextNonWhitespace() != ':') {
+                throw syntaxError("Expected ':'");
+            }
+        } else if (scope == EMPTY_DOCUMENT) {
+            if (!skipWhitespace()) {
+                return mPeeked = END_DOCUMENT;
+            }
+            mStack[mStackSize - 1] = NONEMPTY_DOCUMENT;
+        } else if (scope == NONEMPTY_DOCUMENT) {
+            if (!skipWhitespace()) {
+                return mPeeked = END_DOCUMENT;
+            }
+            throw syntaxError("Expected end of document");
+        }
+
+        int c = nextNonWhitespace();
+        switch (c) {
+            case '{':
+                return mPeeked = BEGIN_OBJECT;
+            case '[':
+                return mPeeked = BEGIN_ARRAY;
+            case '"':
+                return mPeeked = STRING;
+            case ']':
+                if (scope == EMPTY_ARRAY) {
+                    return mPeeked = END_ARRAY;
+                }
+                throw syntaxError("Unexpected ']'");
+            case 't':
+            case 'f':
+                mPos--;
+                return mPeeked = BOOLEAN;
+            case 'n':
+                mPos--;
+                return mPeeked = NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    mPos--;
+                    return mPeeked = NUMBER;
+                }
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    private void expect(int expected) throws IOException {
+        int p = peek();
+        if (p != expected) {
+            throw syntaxError("Expected token " + expected + " but was " + p);
+        }
+    }
+
+    private void push(int scope) {
+        if (mStackSize == mStack.length) {
+            int[] newStack = new int[mStackSize * 2];
+            System.arraycopy(mStack, 0, newStack, 0, mStackSize);
+            mStack = newStack;
+        }
+        mStack[mStackSize++] = scope;
+    }
+
+    private boolean fillBuffer() throws IOException {
+        mBufferOffset += mLimit;
+        mPos = 0;
+        mLimit = mIn.read(mBuffer, 0, mBuffer.length);
+        if (mLimit <= 0) {
+            mLimit = 0;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Skips whitespace and leaves the position on the next significant character.
+     *
+     * @return false if the end of the input was reached.
+     */
+    private boolean skipWhitespace() throws IOException {
+        while (true) {
+            if (mPos == mLimit && !fillBuffer()) {
+                return false;
+            }
+            char c = mBuffer[mPos];
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                mPos++;
+            } else {
+                return true;
+            }
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        if (!skipWhitespace()) {
+            throw syntaxError("Unexpected end of input");
+        }
+        return mBuffer[mPos++];
+    }
+
+    private int read() throws IOException {
+        if (mPos == mLimit && !fillBuffer()) {
+            return -1;
+        }
+        return mBuffer[mPos++];
+    }
+
+    private void appendScratch(char c) {
+        if (mScratchLength == mScratch.length) {
+            char[] newScratch = new char[mScratch.length * 2];
+            System.arraycopy(mScratch, 0, newScratch, 0, mScratchLength);
+            mScratch = newScratch;
+        }
+        mScratch[mScratchLength++] = c;
+    }
+
+    /**
+     * Reads a string whose opening quote has already been consumed into the scratch buffer.
+     */
+    private void readString() throws IOException {
+        mScratchLength = 0;
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw syntaxError("Unterminated string");
+            } else if (c == '"') {
+                return;
+            } else if (c == '\\') {
+                appendScratch(readEscape());
+            } else {
+                appendScratch((char) c);
+            }
+        }
+    }
+
+    private char readEscape() throws IOException {
+        int c = read();
+        switch (c) {
+            case 'u':
+                int result = 0;
+                for (int i = 0; i < 4; i++) {
+                    int h = read();
+                    result <<= 4;
+                    if (h >= '0' && h <= '9') {
+                        result += (h - '0');
+                    } else if (h >= 'a' && h <= 'f') {
+                        result += (h - 'a' + 10);
+                    } else if (h >= 'A' && h <= 'F') {
+                        result += (h - 'A' + 10);
+                    } else {
+                        throw syntaxError("Malformed unicode escape");
+                    }
+                }
+                return (char) result;
+            case 't':
+                return '\t';
+            case 'b':
+                return '\b';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 'f':
+                return '\f';
+            case '"':
+            case '\\':
+            case '/':
+                return (char) c;
+            default:
+                throw syntaxError("Invalid escape sequence");
+        }
+    }
+
+    private void readNumberLiteral() throws IOException {
+        mScratchLength = 0;
+        while (true) {
+            if (mPos == mLimit && !fillBuffer()) {
+                break;
+            }
+            char c = mBuffer[mPos];
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.'
+                    || c == 'e' || c == 'E') {
+                appendScratch(c);
+                mPos++;
+            } else {
+                break;
+            }
+        }
+        if (mScratchLength == 0) {
+            throw syntaxError("Expected a number");
+        }
+    }
+
+    private void readLiteral() throws IOException {
+        mScratchLength = 0;
+        while (true) {
+            if (mPos == mLimit && !fillBuffer()) {
+                break;
+            }
+            char c = mBuffer[mPos];
+            if (c >= 'a' && c <= 'z') {
+                appendScratch(c);
+                mPos++;
+            } else {
+                break;
+            }
+        }
+        if (!scratchEquals("true") && !scratchEquals("false") && !scratchEquals("null")) {
+            throw syntaxError("Unexpected literal");
+        }
+    }
+
+    private boolean scratchEquals(String s) {
+        if (s.length() != mScratchLength) {
+            return false;
+        }
+        for (int i = 0; i < mScratchLength; i++) {
+            if (mScratch[i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses the number literal in the scratch buffer. Plain decimals with up to 15 significant
+     * digits, which is every number OWM sends, are converted without allocating: both the
+     * mantissa and the power of ten are exact doubles, so a single multiply or divide is
+     * correctly rounded. Anything else falls back to Double.parseDouble.
+     */
+    private double parseScratchAsDouble() throws IOException {
+        int i = 0;
+        boolean negative = false;
+        if (mScratch[0] == '-') {
+            negative = true;
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean seenPoint = false;
+        boolean simple = i < mScratchLength;
+        for (; i < mScratchLength; i++) {
+            char c = mScratch[i];
+            if (c >= '0' && c <= '9') {
+                if (mantissa != 0 || c != '0') {
+                    digits++;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (seenPoint) {
+                    fractionDigits++;
+                }
+                if (digits > 15) {
+                    simple = false;
+                    break;
+                }
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                simple = false;
+                break;
+            }
+        }
+        if (simple && fractionDigits < POWERS_OF_TEN.length) {
+            double value = fractionDigits == 0
+                    ? (double) mantissa
+                    : mantissa / POWERS_OF_TEN[fractionDigits];
+            return negative ? -value : value;
+        }
+        try {
+            return Double.parseDouble(new String(mScratch, 0, mScratchLength));
+        } catch (NumberFormatException e) {
+            throw syntaxError("Malformed number");
+        }
+    }
+
+    private MalformedJsonException syntaxError(String message) {
+        return new MalformedJsonException(message + " at character " + (mBufferOffset + mPos));
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.android.sunshine.core;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the forecast payload is not well-formed JSON, or is missing a field that the
+ * sync needs.
+ */
+public class MalformedJsonException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public MalformedJsonException(String message) {
+        super(message);
+    }
+}
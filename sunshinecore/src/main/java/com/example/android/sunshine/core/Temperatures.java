@@ -0,0 +1,19 @@
+package com.example.android.sunshine.core;
+
+/**
+ * Temperature conversion shared by everything that shows one. Temperatures are stored and sent
+ * in Celsius, and converted only to be shown.
+ */
+public final class Temperatures {
+    private Temperatures() {
+    }
+
+    /**
+     * @param celsius  a stored temperature.
+     * @param isMetric whether the user wants Celsius rather than Fahrenheit.
+     * @return the temperature in the units the user wants.
+     */
+    public static double toPreferredUnits(double celsius, boolean isMetric) {
+        return isMetric ? celsius : (celsius * 1.8) + 32;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.android.sunshine.core;
+
+import java.util.Arrays;
+import java.util.TimeZone;
+
+/**
+ * The forecast as the watch face renders it: a weather id and the high and low, already
+ * converted to the user's units and rounded, for consecutive days starting at startDay.
+ * <p/>
+ * Holding the rendered values means two forecasts are equal exactly when the watch would draw
+ * the same thing, so the phone can tell when there is nothing worth waking the watch for.
+ */
+public final class WearForecast {
+    private static final long DAY_IN_MILLIS = 24 * 60 * 60 * 1000;
+
+    private final int mStartDay;
+    private final int[] mWeatherIds;
+    private final int[] mHighs;
+    private final int[] mLows;
+
+    /**
+     * @param startDay   the first day, as counted by {@link #localEpochDay}.
+     * @param weatherIds the OWM weather id of every day.
+     * @param highs      the rounded high of every day.
+     * @param lows       the rounded low of every day.
+     */
+    public WearForecast(int startDay, int[] weatherIds, int[] highs, int[] lows) {
+        if (weatherIds.length != highs.length || weatherIds.length != lows.length) {
+            throw new IllegalArgumentException("Every day needs a weather id, high and low");
+        }
+        mStartDay = startDay;
+        mWeatherIds = weatherIds.clone();
+        mHighs = highs.clone();
+        mLows = lows.clone();
+    }
+
+    public int getStartDay() {
+        return mStartDay;
+    }
+
+    public int size() {
+        return mWeatherIds.length;
+    }
+
+    public int getWeatherId(int i) {
+        return mWeatherIds[i];
+    }
+
+    public int getHigh(int i) {
+        return mHighs[i];
+    }
+
+    public int getLow(int i) {
+        return mLows[i];
+    }
+
+    /**
+     * @return the index of a day in this forecast, -1 if the forecast doesn't cover it.
+     */
+    public int indexOf(int day) {
+        int i = day - mStartDay;
+        return i >= 0 && i < size() ? i : -1;
+    }
+
+    /**
+     * The number of days between 1970-01-01 and the local date of a time, in the given zone.
+     */
+    public static int localEpochDay(long millis, TimeZone timeZone) {
+        long local = millis + timeZone.getOffset(millis);
+        return (int) Math.floor(local / (double) DAY_IN_MILLIS);
+    }
+
+    /**
+     * Round a temperature the way the "%.0f" format of the phone's Utility.formatTemperature
+     * does, half away from zero.
+     */
+    public static int roundTemperature(double temperature) {
+        return (int) (temperature < 0 ? -Math.round(-temperature) : Math.round(temperature));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof WearForecast)) {
+            return false;
+        }
+        WearForecast other = (WearForecast) o;
+        return mStartDay == other.mStartDay
+                && Arrays.equals(mWeatherIds, other.mWeatherIds)
+                && Arrays.equals(mHighs, other.mHighs)
+                && Arrays.equals(mLows, other.mLows);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mStartDay;
+        result = 31 * result + Arrays.hashCode(mWeatherIds);
+        result = 31 * result + Arrays.hashCode(mHighs);
+        result = 31 * result + Arrays.hashCode(mLows);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("WearForecast{day ").append(mStartDay);
+        for (int i = 0; i < size(); i++) {
+            builder.append(i == 0 ? ": " : ", ")
+                    .append(mWeatherIds[i]).append(' ')
+                    .append(mHighs[i]).append('/').append(mLows[i]);
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,255 @@
+package com.example.android.sunshine.core;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Binary frames carrying a {@link WearForecast} from the phone to the watch face.
+ * <p/>
+ * A full frame holds the whole forecast, a delta frame only the days which differ from a base
+ * forecast the watch acknowledged, identified by its sequence number.  Numbers are varints,
+ * signed ones zigzag encoded, and values are stored as differences to their neighbours, so a
+ * 14 day forecast fits in about 60 bytes and a typical delta in about 10.
+ * <pre>
+ * full:  version, FULL,  sequence, startDay, count, count * (weatherId, high, high - low)
+ * delta: version, DELTA, sequence, baseSequence, startDay - base startDay, count,
+ *        changed day bitmap, changed days * (weatherId, high, low)
+ * </pre>
+ */
+public final class WearForecastCodec {
+    /**
+     * Bumped on incompatible changes, frames of other versions are rejected.
+     */
+    public static final int VERSION = 1;
+
+    private static final int TYPE_FULL = 0;
+    private static final int TYPE_DELTA = 1;
+
+    // Sanity limit against corrupt counts
+    private static final int MAX_DAYS = 64;
+
+    private WearForecastCodec() {
+    }
+
+    public static byte[] encodeFull(int sequence, WearForecast forecast) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 + forecast.size() * 4);
+        out.write(VERSION);
+        out.write(TYPE_FULL);
+        writeVarint(out, sequence);
+        writeVarint(out, forecast.getStartDay());
+        writeVarint(out, forecast.size());
+        int previousId = 0;
+        int previousHigh = 0;
+        for (int i = 0; i < forecast.size(); i++) {
+            writeSigned(out, forecast.getWeatherId(i) - previousId);
+            writeSigned(out, forecast.getHigh(i) - previousHigh);
+            writeSigned(out, forecast.getHigh(i) - forecast.getLow(i));
+            previousId = forecast.getWeatherId(i);
+            previousHigh = forecast.getHigh(i);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @param baseSequence the sequence of the frame which delivered base.
+     * @param base         the forecast the receiver has, the delta is relative to it.
+     */
+    public static byte[] encodeDelta(int sequence, int baseSequence, WearForecast base,
+                                     WearForecast forecast) {
+        int count = forecast.size();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16);
+        out.write(VERSION);
+        out.write(TYPE_DELTA);
+        writeVarint(out, sequence);
+        writeVarint(out, baseSequence);
+        writeSigned(out, forecast.getStartDay() - base.getStartDay());
+        writeVarint(out, count);
+
+        byte[] changed = new byte[(count + 7) / 8];
+        for (int i = 0; i < count; i++) {
+            if (!sameDay(base, forecast, i)) {
+                changed[i / 8] |= 1 << (i % 8);
+            }
+        }
+        out.write(changed, 0, changed.length);
+
+        for (int i = 0; i < count; i++) {
+            if ((changed[i / 8] & (1 << (i % 8))) == 0) {
+                continue;
+            }
+            int baseIndex = base.indexOf(forecast.getStartDay() + i);
+            if (baseIndex != -1) {
+                writeSigned(out, forecast.getWeatherId(i) - base.getWeatherId(baseIndex));
+                writeSigned(out, forecast.getHigh(i) - base.getHigh(baseIndex));
+                writeSigned(out, forecast.getLow(i) - base.getLow(baseIndex));
+            } else {
+                writeSigned(out, forecast.getWeatherId(i));
+                writeSigned(out, forecast.getHigh(i));
+                writeSigned(out, forecast.getLow(i));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the sequence number of a frame.
+     */
+    public static int sequenceOf(byte[] frame) throws WearFrameException {
+        Reader in = new Reader(frame);
+        readHeader(in);
+        return in.readVarint();
+    }
+
+    /**
+     * Decode a frame.
+     *
+     * @param baseSequence the sequence of the frame which delivered base, ignored if base is null.
+     * @param base         the forecast the receiver has, or null.
+     * @throws WearFrameException if the frame is corrupt, of another version, or a delta
+     *                            against something else than base.
+     */
+    public static WearForecast decode(byte[] frame, int baseSequence, WearForecast base)
+            throws WearFrameException {
+        Reader in = new Reader(frame);
+        int type = readHeader(in);
+        in.readVarint(); // sequence
+
+        if (type == TYPE_FULL) {
+            int startDay = in.readVarint();
+            int count = readCount(in);
+            int[] weatherIds = new int[count];
+            int[] highs = new int[count];
+            int[] lows = new int[count];
+            int previousId = 0;
+            int previousHigh = 0;
+            for (int i = 0; i < count; i++) {
+                weatherIds[i] = previousId + in.readSigned();
+                highs[i] = previousHigh + in.readSigned();
+                lows[i] = highs[i] - in.readSigned();
+                previousId = weatherIds[i];
+                previousHigh = highs[i];
+            }
+            in.checkEnd();
+            return new WearForecast(startDay, weatherIds, highs, lows);
+        }
+
+        int frameBase = in.readVarint();
+        if (base == null || frameBase != baseSequence) {
+            throw new WearFrameException("Delta against " + frameBase + ", have "
+                    + (base == null ? "nothing" : Integer.toString(baseSequence)), true);
+        }
+        int startDay = base.getStartDay() + in.readSigned();
+        int count = readCount(in);
+        byte[] changed = in.readBytes((count + 7) / 8);
+        int[] weatherIds = new int[count];
+        int[] highs = new int[count];
+        int[] lows = new int[count];
+        for (int i = 0; i < count; i++) {
+            int baseIndex = base.indexOf(startDay + i);
+            boolean dayChanged = (changed[i / 8] & (1 << (i % 8))) != 0;
+            if (!dayChanged && baseIndex == -1) {
+                throw new WearFrameException("Unchanged day " + i + " is not in the base");
+            }
+            if (baseIndex != -1) {
+                weatherIds[i] = base.getWeatherId(baseIndex);
+                highs[i] = base.getHigh(baseIndex);
+                lows[i] = base.getLow(baseIndex);
+            }
+            if (dayChanged) {
+                weatherIds[i] += in.readSigned();
+                highs[i] += in.readSigned();
+                lows[i] += in.readSigned();
+            }
+        }
+        in.checkEnd();
+        return new WearForecast(startDay, weatherIds, highs, lows);
+    }
+
+    private static boolean sameDay(WearForecast base, WearForecast forecast, int i) {
+        int baseIndex = base.indexOf(forecast.getStartDay() + i);
+        return baseIndex != -1
+                && base.getWeatherId(baseIndex) == forecast.getWeatherId(i)
+                && base.getHigh(baseIndex) == forecast.getHigh(i)
+                && base.getLow(baseIndex) == forecast.getLow(i);
+    }
+
+    private static int readHeader(Reader in) throws WearFrameException {
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new WearFrameException("Unsupported frame version " + version);
+        }
+        int type = in.readByte();
+        if (type != TYPE_FULL && type != TYPE_DELTA) {
+            throw new WearFrameException("Unknown frame type " + type);
+        }
+        return type;
+    }
+
+    private static int readCount(Reader in) throws WearFrameException {
+        int count = in.readVarint();
+        if (count > MAX_DAYS) {
+            throw new WearFrameException("Too many days: " + count);
+        }
+        return count;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static void writeSigned(ByteArrayOutputStream out, int value) {
+        writeVarint(out, (value << 1) ^ (value >> 31));
+    }
+
+    private static class Reader {
+        private final byte[] mFrame;
+        private int mPosition;
+
+        Reader(byte[] frame) {
+            mFrame = frame;
+        }
+
+        int readByte() throws WearFrameException {
+            if (mPosition >= mFrame.length) {
+                throw new WearFrameException("Truncated frame");
+            }
+            return mFrame[mPosition++] & 0xff;
+        }
+
+        byte[] readBytes(int count) throws WearFrameException {
+            if (mPosition + count > mFrame.length) {
+                throw new WearFrameException("Truncated frame");
+            }
+            byte[] bytes = new byte[count];
+            System.arraycopy(mFrame, mPosition, bytes, 0, count);
+            mPosition += count;
+            return bytes;
+        }
+
+        int readVarint() throws WearFrameException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new WearFrameException("Malformed varint");
+        }
+
+        int readSigned() throws WearFrameException {
+            int value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        void checkEnd() throws WearFrameException {
+            if (mPosition != mFrame.length) {
+                throw new WearFrameException("Trailing bytes in frame");
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.android.sunshine.core;
+
+/**
+ * The phone's side of the forecast channel to the watch.  Keeps the forecast last sent and the
+ * one the watch acknowledged, and for every update sends
+ * <ul>
+ * <li>nothing, if the watch already has, or is about to get, the same rendered forecast,</li>
+ * <li>a delta against the last forecast sent, once the watch acknowledged it,</li>
+ * <li>a full frame otherwise.</li>
+ * </ul>
+ * The watch only keeps the forecast it applied last, so while a frame is unacknowledged the
+ * sender can't know which base the watch has: the frame may have been dropped, or applied with
+ * its acknowledgement still on the way.  A full frame then, so neither case leaves the watch
+ * unable to apply the next.  Not thread safe.
+ */
+public class WearForecastSender {
+
+    /**
+     * Delivers frames to the watch.
+     */
+    public interface Transport {
+        void send(byte[] frame);
+    }
+
+    private final Transport mTransport;
+
+    private int mSentSequence;
+    private WearForecast mSent;
+    private int mAckedSequence;
+    private WearForecast mAcked;
+
+    public WearForecastSender(Transport transport) {
+        mTransport = transport;
+    }
+
+    /**
+     * Send a forecast, unless it renders the same as the one last sent.
+     *
+     * @return true if a frame was sent.
+     */
+    public boolean update(WearForecast forecast) {
+        if (forecast.equals(mSent)) {
+            return false;
+        }
+        int sequence = mSentSequence + 1;
+        boolean outstanding = mSent != null && mSentSequence != mAckedSequence;
+        byte[] frame = mAcked != null && !outstanding
+                ? WearForecastCodec.encodeDelta(sequence, mAckedSequence, mAcked, forecast)
+                : WearForecastCodec.encodeFull(sequence, forecast);
+        mSentSequence = sequence;
+        mSent = forecast;
+        mTransport.send(frame);
+        return true;
+    }
+
+    /**
+     * The watch applied the frame with this sequence number.
+     */
+    public void onAcknowledged(int sequence) {
+        if (mSent != null && sequence == mSentSequence) {
+            mAcked = mSent;
+            mAckedSequence = sequence;
+        }
+    }
+
+    /**
+     * The watch lost its forecast or couldn't apply a delta.  Forget what it acknowledged and
+     * send the last forecast again, as a full frame.
+     *
+     * @return true if there was a forecast to send.
+     */
+    public boolean resync() {
+        WearForecast last = mSent;
+        mAcked = null;
+        mSent = null;
+        return last != null && update(last);
+    }
+
+    public WearForecast getSent() {
+        return mSent;
+    }
+
+    /**
+     * @return the last frame sent, as a full frame, for {@link #restore}.  Null if nothing was
+     * sent yet.
+     */
+    public byte[] getSentState() {
+        return mSent == null ? null : WearForecastCodec.encodeFull(mSentSequence, mSent);
+    }
+
+    /**
+     * @return the acknowledged forecast, as a full frame, for {@link #restore}.  Null if nothing
+     * was acknowledged yet.
+     */
+    public byte[] getAckedState() {
+        return mAcked == null ? null : WearForecastCodec.encodeFull(mAckedSequence, mAcked);
+    }
+
+    /**
+     * Pick up where a previous sender left off, with the states it returned.  Unreadable states
+     * are dropped, which only costs a full frame on the next update.
+     */
+    public void restore(byte[] sentState, byte[] ackedState) {
+        mSent = null;
+        mAcked = null;
+        try {
+            if (sentState != null) {
+                mSentSequence = WearForecastCodec.sequenceOf(sentState);
+                mSent = WearForecastCodec.decode(sentState, 0, null);
+            }
+            if (ackedState != null) {
+                mAckedSequence = WearForecastCodec.sequenceOf(ackedState);
+                mAcked = WearForecastCodec.decode(ackedState, 0, null);
+            }
+        } catch (WearFrameException e) {
+            mSent = null;
+            mAcked = null;
+        }
+    }
+}
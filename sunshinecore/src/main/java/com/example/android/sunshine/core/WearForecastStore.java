@@ -0,0 +1,142 @@
+package com.example.android.sunshine.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The watch's side of the forecast channel: the forecast it applied last, and the sequence of
+ * the frame which brought it, kept in a file so it survives restarts and stays usable for as
+ * many days as it covers while the phone is out of reach.
+ * <p/>
+ * The file holds a full frame of the codec, written to a temporary file and renamed over the
+ * old one, so a crash mid-write leaves the previous forecast in place.  Not thread safe.
+ */
+public class WearForecastStore {
+    private static final int MAX_FILE_SIZE = 4096;
+
+    private final File mFile;
+
+    private WearForecast mForecast;
+    private int mSequence;
+
+    public WearForecastStore(File file) {
+        mFile = file;
+    }
+
+    /**
+     * Read the stored forecast, if there is a readable one.
+     *
+     * @return true if a forecast was loaded.
+     */
+    public boolean load() {
+        if (!mFile.isFile() || mFile.length() > MAX_FILE_SIZE) {
+            return false;
+        }
+        try {
+            byte[] frame = readFile(mFile);
+            mForecast = WearForecastCodec.decode(frame, 0, null);
+            mSequence = WearForecastCodec.sequenceOf(frame);
+            return true;
+        } catch (IOException e) {
+            // Corrupt or unreadable, the phone sends a full frame on request
+            mForecast = null;
+            mSequence = 0;
+            return false;
+        }
+    }
+
+    /**
+     * Apply a frame from the phone and store the result.
+     *
+     * @throws WearFrameException if the frame can't be applied to the current forecast, which
+     *                            is left as it was.
+     */
+    public WearForecast apply(byte[] frame) throws WearFrameException {
+        WearForecast forecast = WearForecastCodec.decode(frame, mSequence, mForecast);
+        mForecast = forecast;
+        mSequence = WearForecastCodec.sequenceOf(frame);
+        try {
+            writeFile(WearForecastCodec.encodeFull(mSequence, mForecast));
+        } catch (IOException e) {
+            // Still good in memory, the next frame tries again
+            mFile.delete();
+        }
+        return forecast;
+    }
+
+    /**
+     * @return the forecast, or null if there is none.
+     */
+    public WearForecast getForecast() {
+        return mForecast;
+    }
+
+    /**
+     * @return the sequence of the frame the forecast came with, to acknowledge it.
+     */
+    public int getSequence() {
+        return mSequence;
+    }
+
+    /**
+     * @return the index of a day in the forecast, -1 if there's no forecast for it.
+     */
+    public int indexOf(int day) {
+        return mForecast == null ? -1 : mForecast.indexOf(day);
+    }
+
+    private void writeFile(byte[] frame) throws IOException {
+        File parent = mFile.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Can't create " + parent);
+        }
+        File temp = new File(mFile.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            out.write(frame);
+            out.getFD().sync();
+        } finally {
+            closeQuietly(out);
+        }
+        if (!temp.renameTo(mFile)) {
+            temp.delete();
+            throw new IOException("Can't rename " + temp);
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[256];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException e) {
+            // Nothing left to do
+        }
+    }
+
+    private static void closeQuietly(OutputStream out) {
+        try {
+            out.close();
+        } catch (IOException e) {
+            // Nothing left to do
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.android.sunshine.core;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a wearable forecast frame can't be decoded.
+ */
+public class WearFrameException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final boolean mMissingBase;
+
+    public WearFrameException(String message) {
+        this(message, false);
+    }
+
+    public WearFrameException(String message, boolean missingBase) {
+        super(message);
+        mMissingBase = missingBase;
+    }
+
+    /**
+     * @return true if the frame is a delta against a forecast the receiver doesn't have, which
+     * a full frame will fix.
+     */
+    public boolean isMissingBase() {
+        return mMissingBase;
+    }
+}
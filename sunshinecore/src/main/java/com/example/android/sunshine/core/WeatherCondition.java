@@ -0,0 +1,90 @@
+package com.example.android.sunshine.core;
+
+/**
+ * The groups of OpenWeatherMap condition codes the phone and the watch face draw alike, with
+ * what both of them need to know about a group beyond their own resources.
+ * <p/>
+ * Based on weather code data found at:
+ * http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+ */
+public enum WeatherCondition {
+    STORM("storm",
+            "http://upload.wikimedia.org/wikipedia/commons/2/28/Thunderstorm_in_Annemasse,_France.jpg"),
+    LIGHT_RAIN("light_rain",
+            "http://upload.wikimedia.org/wikipedia/commons/a/a0/Rain_on_leaf_504605006.jpg"),
+    RAIN("rain",
+            "http://upload.wikimedia.org/wikipedia/commons/6/6c/Rain-on-Thassos.jpg"),
+    SNOW("snow",
+            "http://upload.wikimedia.org/wikipedia/commons/b/b8/Fresh_snow.JPG"),
+    FOG("fog",
+            "http://upload.wikimedia.org/wikipedia/commons/e/e6/Westminster_fog_-_London_-_UK.jpg"),
+    // Drawn as a storm, but with a photo of its own
+    TORNADO("storm",
+            "http://upload.wikimedia.org/wikipedia/commons/d/dc/Raised_dust_ahead_of_a_severe_thunderstorm_1.jpg"),
+    CLEAR("clear",
+            "http://upload.wikimedia.org/wikipedia/commons/7/7e/A_few_trees_and_the_sun_(6009964513).jpg"),
+    LIGHT_CLOUDS("light_clouds",
+            "http://upload.wikimedia.org/wikipedia/commons/e/e7/Cloudy_Blue_Sky_(5031259890).jpg"),
+    CLOUDS("clouds",
+            "http://upload.wikimedia.org/wikipedia/commons/5/54/Cloudy_hills_in_Elis,_Greece_2.jpg");
+
+    private static final int FIRST_ID = 200;
+    private static final int LAST_ID = 804;
+
+    // Indexed by condition code - FIRST_ID, so a lookup is one array read instead of a chain
+    // of range checks
+    private static final WeatherCondition[] BY_ID = new WeatherCondition[LAST_ID - FIRST_ID + 1];
+
+    static {
+        fill(200, 232, STORM);
+        fill(300, 321, LIGHT_RAIN);
+        fill(500, 504, RAIN);
+        fill(511, 511, SNOW);
+        fill(520, 531, RAIN);
+        fill(600, 622, SNOW);
+        fill(701, 761, FOG);
+        fill(781, 781, TORNADO);
+        fill(800, 800, CLEAR);
+        fill(801, 801, LIGHT_CLOUDS);
+        fill(802, 804, CLOUDS);
+    }
+
+    private final String mArtName;
+    private final String mImageUrl;
+
+    WeatherCondition(String artName, String imageUrl) {
+        mArtName = artName;
+        mImageUrl = imageUrl;
+    }
+
+    private static void fill(int firstId, int lastId, WeatherCondition condition) {
+        for (int id = firstId; id <= lastId; id++) {
+            BY_ID[id - FIRST_ID] = condition;
+        }
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return the condition the code belongs to, null if it isn't one of the drawn ones.
+     */
+    public static WeatherCondition forWeatherId(int weatherId) {
+        if (weatherId < FIRST_ID || weatherId > LAST_ID) {
+            return null;
+        }
+        return BY_ID[weatherId - FIRST_ID];
+    }
+
+    /**
+     * @return the name art packs use for the condition's artwork, such as "light_rain".
+     */
+    public String getArtName() {
+        return mArtName;
+    }
+
+    /**
+     * @return a URL to a photo of the condition.
+     */
+    public String getImageUrl() {
+        return mImageUrl;
+    }
+}
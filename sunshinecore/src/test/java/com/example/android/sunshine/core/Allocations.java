@@ -0,0 +1,38 @@
+package com.example.android.sunshine.core;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures what a piece of code allocates, for the tests comparing a path with the one it
+ * replaced.  The numbers come from the HotSpot per thread counters, so they're exact rather than
+ * sampled, but only a HotSpot JVM has them.
+ */
+final class Allocations {
+
+    interface Work {
+        void run() throws Exception;
+    }
+
+    private Allocations() {
+    }
+
+    /**
+     * Runs the work iterations times so it's compiled, then measures iterations more runs.
+     *
+     * @return bytes allocated per run
+     */
+    static long perRun(Work work, int iterations) throws Exception {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        for (int i = 0; i < iterations; i++) {
+            work.run();
+        }
+        long start = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++) {
+            work.run();
+        }
+        return (threads.getThreadAllocatedBytes(threadId) - start) / iterations;
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Vector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ForecastBatchTest {
+    private static final int DAYS = 14;
+    private static final int ITERATIONS = 5000;
+
+    private static final String[] DESCRIPTIONS = {"Clear", "Clouds", "Rain"};
+
+    // Keeps the benchmarked objects reachable so the JIT can't optimize their allocation away
+    static Object sSink;
+
+    @Test
+    public void testAddAndGrow() {
+        ForecastBatch batch = new ForecastBatch(2);
+        batch.setLocationId(7);
+        for (int i = 0; i < DAYS; i++) {
+            batch.add(1000L * i, 800 + i, "Clear", 10 + i, 20 + i, 50 + i,
+                    1000.5 + i, 2.5 + i, 90 + i);
+        }
+
+        assertEquals(DAYS, batch.size());
+        assertEquals(7, batch.getLocationId());
+        for (int i = 0; i < DAYS; i++) {
+            assertEquals(1000L * i, batch.getDate(i));
+            assertEquals(800 + i, batch.getWeatherId(i));
+            assertEquals(10 + i, batch.getMinTemp(i), 0);
+            assertEquals(20 + i, batch.getMaxTemp(i), 0);
+            assertEquals(50 + i, batch.getHumidity(i));
+            assertEquals(1000.5 + i, batch.getPressure(i), 0);
+            assertEquals(2.5 + i, batch.getWindSpeed(i), 0);
+            assertEquals(90 + i, batch.getDegrees(i), 0);
+        }
+    }
+
+    @Test
+    public void testShortDescriptionsAreShared() {
+        ForecastBatch batch = new ForecastBatch();
+        batch.add(0, 800, new String("Clear"), 0, 0, 0, 0, 0, 0);
+        batch.add(1, 800, new String("Clear"), 0, 0, 0, 0, 0, 0);
+
+        assertSame(batch.getShortDesc(0), batch.getShortDesc(1));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testIndexPastSize() {
+        ForecastBatch batch = new ForecastBatch();
+        batch.add(0, 800, "Clear", 0, 0, 0, 0, 0, 0);
+        batch.getDate(1);
+    }
+
+    @Test
+    public void testContentHashIgnoresDate() {
+        ForecastBatch batch = new ForecastBatch();
+        batch.add(0, 800, "Clear", 10, 20, 50, 1000.5, 2.5, 90);
+        batch.add(86400000L, 800, "Clear", 10, 20, 50, 1000.5, 2.5, 90);
+        batch.add(0, 800, "Clear", 10, 20.5, 50, 1000.5, 2.5, 90);
+
+        assertEquals(batch.contentHash(0), batch.contentHash(1));
+        assertEquals(batch.contentHash(0),
+                ForecastBatch.contentHash(800, new String("Clear"), 10, 20, 50, 1000.5, 2.5, 90));
+        assertNotEquals(batch.contentHash(0), batch.contentHash(2));
+    }
+
+    /**
+     * Compares the bytes allocated to hold a 14 day forecast in a ForecastBatch with a Vector of
+     * maps of boxed values, which is what a Vector of ContentValues amounts to.
+     */
+    @Test
+    public void testAllocatesLessThanContentValuesVector() throws Exception {
+        long batchBytes = Allocations.perRun(new Allocations.Work() {
+            @Override
+            public void run() {
+                ForecastBatch batch = new ForecastBatch(DAYS);
+                for (int i = 0; i < DAYS; i++) {
+                    batch.add(1476907200000L + i, 800, DESCRIPTIONS[i % DESCRIPTIONS.length],
+                            9.07 + i, 15.94 + i, 95, 1023.09, 4.28, 38.0);
+                }
+                sSink = batch;
+            }
+        }, ITERATIONS);
+        long valuesBytes = Allocations.perRun(new Allocations.Work() {
+            @Override
+            public void run() {
+                Vector<Map<String, Object>> vector = new Vector<>(DAYS);
+                for (int i = 0; i < DAYS; i++) {
+                    // ContentValues wraps a HashMap<String, Object> with a capacity of 8, the
+                    // keys are the weather table's columns
+                    Map<String, Object> values = new HashMap<>(8);
+                    values.put("location_id", 1L);
+                    values.put("date", 1476907200000L + i);
+                    values.put("humidity", 95);
+                    values.put("pressure", 1023.09);
+                    values.put("wind", 4.28);
+                    values.put("degrees", 38.0);
+                    values.put("max", 15.94 + i);
+                    values.put("min", 9.07 + i);
+                    values.put("short_desc",
+                            DESCRIPTIONS[i % DESCRIPTIONS.length]);
+                    values.put("weather_id", 800);
+                    vector.add(values);
+                }
+                Object[] array = new Object[vector.size()];
+                vector.toArray(array);
+                sSink = array;
+            }
+        }, ITERATIONS);
+
+        // About an eighth at the time of writing
+        assertTrue("ForecastBatch allocated " + batchBytes + " bytes per forecast, a Vector of "
+                + "ContentValues " + valuesBytes, batchBytes * 4 < valuesBytes);
+    }
+}
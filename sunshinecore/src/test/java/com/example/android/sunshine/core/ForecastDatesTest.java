@@ -0,0 +1,45 @@
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+public class ForecastDatesTest {
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final long HOUR = 60 * 60 * 1000;
+
+    private static long startOfDay(long millis, TimeZone timeZone) {
+        Calendar calendar = Calendar.getInstance(timeZone);
+        calendar.setTimeInMillis(millis);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    @Test
+    public void testUtc() {
+        // 2016-10-19 20:00 UTC
+        long date = 1476907200000L;
+        assertEquals(date - 20 * HOUR, ForecastDates.normalizeDate(date, UTC));
+        assertEquals(-ForecastDates.DAY_IN_MILLIS, ForecastDates.normalizeDate(-1, UTC));
+    }
+
+    @Test
+    public void testMatchesCalendarAcrossDaylightSavingChanges() {
+        TimeZone losAngeles = TimeZone.getTimeZone("America/Los_Angeles");
+        // 2016-03-12 00:00 UTC, then every hour across the spring and fall changes
+        long march = 1457740800000L;
+        long november = 1478131200000L;
+        for (int i = 0; i < 96; i++) {
+            assertEquals(startOfDay(march + i * HOUR, losAngeles),
+                    ForecastDates.normalizeDate(march + i * HOUR, losAngeles));
+            assertEquals(startOfDay(november + i * HOUR, losAngeles),
+                    ForecastDates.normalizeDate(november + i * HOUR, losAngeles));
+        }
+    }
+}
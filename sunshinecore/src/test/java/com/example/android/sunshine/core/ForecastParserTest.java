@@ -0,0 +1,184 @@
+package com.example.android.sunshine.core;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs on the JVM against recorded OWM responses, and compares the streaming parser with the
+ * StringBuffer + JSONObject path the sync adapter used before.
+ */
+public class ForecastParserTest {
+    private static final String FIXTURE_14_DAYS = "/owm_forecast_14_days.json";
+    private static final String FIXTURE_NOT_FOUND = "/owm_forecast_not_found.json";
+
+    private static final int ITERATIONS = 2000;
+
+    /**
+     * Collects the parsed values as strings, so both paths can be compared field by field.
+     */
+    static class RecordingCallback implements ForecastParser.Callback {
+        final List<String> records = new ArrayList<>();
+
+        @Override
+        public void onCity(String cityName, double latitude, double longitude) {
+            records.add(cityName + "|" + latitude + "|" + longitude);
+        }
+
+        @Override
+        public void onDay(int index, int weatherId, String description, double high, double low,
+                          double pressure, int humidity, double windSpeed, double windDirection) {
+            records.add(index + "|" + weatherId + "|" + description + "|" + high + "|" + low + "|"
+                    + pressure + "|" + humidity + "|" + windSpeed + "|" + windDirection);
+        }
+    }
+
+    @Test
+    public void testMatchesJsonObjectPath() throws Exception {
+        byte[] fixture = readFixture(FIXTURE_14_DAYS);
+
+        RecordingCallback streaming = new RecordingCallback();
+        int code = ForecastParser.parse(new ByteArrayInputStream(fixture), streaming);
+
+        RecordingCallback legacy = new RecordingCallback();
+        parseWithJsonObject(new ByteArrayInputStream(fixture), legacy);
+
+        assertEquals(HttpURLConnection.HTTP_OK, code);
+        assertEquals(15, streaming.records.size());
+        assertEquals(legacy.records, streaming.records);
+    }
+
+    @Test
+    public void testNotFound() throws Exception {
+        RecordingCallback callback = new RecordingCallback();
+        int code = ForecastParser.parse(
+                new ByteArrayInputStream(readFixture(FIXTURE_NOT_FOUND)), callback);
+
+        assertEquals(HttpURLConnection.HTTP_NOT_FOUND, code);
+        assertTrue(callback.records.isEmpty());
+    }
+
+    @Test
+    public void testMissingFieldIsMalformed() throws Exception {
+        String json = "{\"city\":{\"name\":\"X\",\"coord\":{\"lat\":1,\"lon\":2}},"
+                + "\"list\":[{\"pressure\":1,\"humidity\":2,\"speed\":3,"
+                + "\"temp\":{\"min\":1,\"max\":2},\"weather\":[{\"id\":800,\"main\":\"Clear\"}]}]}";
+        try {
+            ForecastParser.parse(new ByteArrayInputStream(json.getBytes("UTF-8")),
+                    new RecordingCallback());
+            fail("A day without \"deg\" should not be accepted");
+        } catch (MalformedJsonException expected) {
+        }
+    }
+
+    @Test
+    public void testTruncatedIsMalformed() throws Exception {
+        byte[] fixture = readFixture(FIXTURE_14_DAYS);
+        try {
+            ForecastParser.parse(new ByteArrayInputStream(fixture, 0, fixture.length / 2),
+                    new RecordingCallback());
+            fail("A truncated response should not be accepted");
+        } catch (MalformedJsonException expected) {
+        }
+    }
+
+    /**
+     * Allocation comparison of both paths, the times are measured by ForecastParseBenchmark in
+     * sunshinebenchmarks.
+     */
+    @Test
+    public void testAllocatesLessThanJsonObjectPath() throws Exception {
+        final byte[] fixture = readFixture(FIXTURE_14_DAYS);
+        final ForecastParser.Callback discard = new ForecastParser.Callback() {
+            @Override
+            public void onCity(String cityName, double latitude, double longitude) {
+            }
+
+            @Override
+            public void onDay(int index, int weatherId, String description, double high,
+                              double low, double pressure, int humidity, double windSpeed,
+                              double windDirection) {
+            }
+        };
+
+        long streaming = Allocations.perRun(new Allocations.Work() {
+            @Override
+            public void run() throws Exception {
+                ForecastParser.parse(new ByteArrayInputStream(fixture), discard);
+            }
+        }, ITERATIONS);
+        long legacy = Allocations.perRun(new Allocations.Work() {
+            @Override
+            public void run() throws Exception {
+                parseWithJsonObject(new ByteArrayInputStream(fixture), discard);
+            }
+        }, ITERATIONS);
+
+        // About a sixth at the time of writing
+        assertTrue("ForecastParser allocated " + streaming + " bytes per parse, the JSONObject "
+                + "path " + legacy, streaming * 3 < legacy);
+    }
+
+    /**
+     * The parsing the sync adapter did before ForecastParser: the body is read into a
+     * StringBuffer line by line and then turned into a JSONObject tree.
+     */
+    static void parseWithJsonObject(InputStream inputStream, ForecastParser.Callback callback)
+            throws Exception {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
+        StringBuffer buffer = new StringBuffer();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            buffer.append(line + "\n");
+        }
+
+        JSONObject forecastJson = new JSONObject(buffer.toString());
+        JSONArray weatherArray = forecastJson.getJSONArray("list");
+
+        JSONObject cityJson = forecastJson.getJSONObject("city");
+        JSONObject cityCoord = cityJson.getJSONObject("coord");
+        callback.onCity(cityJson.getString("name"),
+                cityCoord.getDouble("lat"), cityCoord.getDouble("lon"));
+
+        for (int i = 0; i < weatherArray.length(); i++) {
+            JSONObject dayForecast = weatherArray.getJSONObject(i);
+            JSONObject weatherObject = dayForecast.getJSONArray("weather").getJSONObject(0);
+            JSONObject temperatureObject = dayForecast.getJSONObject("temp");
+            callback.onDay(i,
+                    weatherObject.getInt("id"),
+                    weatherObject.getString("main"),
+                    temperatureObject.getDouble("max"),
+                    temperatureObject.getDouble("min"),
+                    dayForecast.getDouble("pressure"),
+                    dayForecast.getInt("humidity"),
+                    dayForecast.getDouble("speed"),
+                    dayForecast.getDouble("deg"));
+        }
+    }
+
+    static byte[] readFixture(String name) throws IOException {
+        InputStream in = ForecastParserTest.class.getResourceAsStream(name);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
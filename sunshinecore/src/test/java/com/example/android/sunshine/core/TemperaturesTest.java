@@ -0,0 +1,14 @@
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TemperaturesTest {
+    @Test
+    public void testPreferredUnits() {
+        assertEquals(21.5, Temperatures.toPreferredUnits(21.5, true), 0);
+        assertEquals(212, Temperatures.toPreferredUnits(100, false), 1e-9);
+        assertEquals(-40, Temperatures.toPreferredUnits(-40, false), 1e-9);
+    }
+}
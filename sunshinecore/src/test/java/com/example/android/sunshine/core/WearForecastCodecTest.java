@@ -0,0 +1,125 @@
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class WearForecastCodecTest {
+    private static final int START_DAY = 17000;
+
+    static WearForecast twoWeeks(int startDay, int highOffset) {
+        int[] ids = new int[14];
+        int[] highs = new int[14];
+        int[] lows = new int[14];
+        for (int i = 0; i < 14; i++) {
+            ids[i] = i % 3 == 0 ? 800 : 500 + i;
+            highs[i] = 20 + (i % 5) + highOffset;
+            lows[i] = 8 - (i % 4);
+        }
+        return new WearForecast(startDay, ids, highs, lows);
+    }
+
+    @Test
+    public void testFullFrameRoundTrip() throws WearFrameException {
+        WearForecast forecast = twoWeeks(START_DAY, 0);
+        byte[] frame = WearForecastCodec.encodeFull(7, forecast);
+
+        assertEquals(7, WearForecastCodec.sequenceOf(frame));
+        assertEquals(forecast, WearForecastCodec.decode(frame, 0, null));
+        assertTrue("Full frame is " + frame.length + " bytes", frame.length <= 64);
+    }
+
+    @Test
+    public void testNegativeTemperaturesRoundTrip() throws WearFrameException {
+        WearForecast forecast = new WearForecast(START_DAY,
+                new int[]{600, 601}, new int[]{-3, -12}, new int[]{-15, -40});
+        assertEquals(forecast, WearForecastCodec.decode(
+                WearForecastCodec.encodeFull(1, forecast), 0, null));
+    }
+
+    @Test
+    public void testDeltaOfOneChangedDay() throws WearFrameException {
+        WearForecast base = twoWeeks(START_DAY, 0);
+        int[] highs = new int[14];
+        int[] ids = new int[14];
+        int[] lows = new int[14];
+        for (int i = 0; i < 14; i++) {
+            ids[i] = base.getWeatherId(i);
+            highs[i] = base.getHigh(i);
+            lows[i] = base.getLow(i);
+        }
+        highs[3]++;
+        WearForecast forecast = new WearForecast(START_DAY, ids, highs, lows);
+
+        byte[] delta = WearForecastCodec.encodeDelta(2, 1, base, forecast);
+        assertEquals(forecast, WearForecastCodec.decode(delta, 1, base));
+        assertTrue("Delta is " + delta.length + " bytes", delta.length <= 12);
+    }
+
+    @Test
+    public void testDeltaAcrossMidnight() throws WearFrameException {
+        WearForecast base = twoWeeks(START_DAY, 0);
+        WearForecast forecast = twoWeeks(START_DAY + 1, 1);
+
+        byte[] delta = WearForecastCodec.encodeDelta(5, 4, base, forecast);
+        assertEquals(forecast, WearForecastCodec.decode(delta, 4, base));
+    }
+
+    @Test
+    public void testDeltaNeedsItsBase() {
+        WearForecast base = twoWeeks(START_DAY, 0);
+        byte[] delta = WearForecastCodec.encodeDelta(3, 2, base, twoWeeks(START_DAY, 1));
+        try {
+            WearForecastCodec.decode(delta, 1, base);
+            fail("A delta against another sequence should be rejected");
+        } catch (WearFrameException e) {
+            assertTrue(e.isMissingBase());
+        }
+        try {
+            WearForecastCodec.decode(delta, 2, null);
+            fail("A delta without a base should be rejected");
+        } catch (WearFrameException e) {
+            assertTrue(e.isMissingBase());
+        }
+    }
+
+    @Test
+    public void testCorruptFramesAreRejected() {
+        byte[] frame = WearForecastCodec.encodeFull(1, twoWeeks(START_DAY, 0));
+        byte[] truncated = new byte[frame.length - 1];
+        System.arraycopy(frame, 0, truncated, 0, truncated.length);
+        byte[] otherVersion = frame.clone();
+        otherVersion[0] = (byte) (WearForecastCodec.VERSION + 1);
+
+        for (byte[] corrupt : new byte[][]{truncated, otherVersion, new byte[0]}) {
+            try {
+                WearForecastCodec.decode(corrupt, 0, null);
+                fail("Corrupt frame was accepted");
+            } catch (WearFrameException e) {
+                assertTrue(!e.isMissingBase());
+            }
+        }
+    }
+
+    @Test
+    public void testRoundTemperature() {
+        assertEquals(21, WearForecast.roundTemperature(20.5));
+        assertEquals(20, WearForecast.roundTemperature(20.49));
+        assertEquals(-21, WearForecast.roundTemperature(-20.5));
+        assertEquals(0, WearForecast.roundTemperature(-0.4));
+    }
+
+    @Test
+    public void testLocalEpochDay() {
+        TimeZone utc = TimeZone.getTimeZone("UTC");
+        TimeZone tokyo = TimeZone.getTimeZone("Asia/Tokyo");
+        long lateEvening = 23L * 60 * 60 * 1000;
+        assertEquals(0, WearForecast.localEpochDay(lateEvening, utc));
+        assertEquals(1, WearForecast.localEpochDay(lateEvening, tokyo));
+        assertEquals(-1, WearForecast.localEpochDay(-1, utc));
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.android.sunshine.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Drives the sender against a watch which decodes every frame it receives.
+ */
+public class WearForecastSenderTest {
+    private static final int START_DAY = 17000;
+
+    private final List<byte[]> mFrames = new ArrayList<>();
+    private WearForecastSender mSender;
+
+    // What the simulated watch has
+    private int mWatchSequence;
+    private WearForecast mWatchForecast;
+
+    @Before
+    public void setUp() {
+        mSender = new WearForecastSender(new WearForecastSender.Transport() {
+            @Override
+            public void send(byte[] frame) {
+                mFrames.add(frame);
+            }
+        });
+    }
+
+    private void deliver(byte[] frame) throws WearFrameException {
+        mWatchForecast = WearForecastCodec.decode(frame, mWatchSequence, mWatchForecast);
+        mWatchSequence = WearForecastCodec.sequenceOf(frame);
+    }
+
+    private void deliverAndAck(byte[] frame) throws WearFrameException {
+        deliver(frame);
+        mSender.onAcknowledged(mWatchSequence);
+    }
+
+    private byte[] lastFrame() {
+        return mFrames.get(mFrames.size() - 1);
+    }
+
+    @Test
+    public void testIdenticalForecastIsSuppressed() {
+        WearForecast forecast = WearForecastCodecTest.twoWeeks(START_DAY, 0);
+        assertTrue(mSender.update(forecast));
+        assertFalse(mSender.update(WearForecastCodecTest.twoWeeks(START_DAY, 0)));
+        assertEquals(1, mFrames.size());
+    }
+
+    @Test
+    public void testDeltasFollowTheAcknowledgedForecast() throws WearFrameException {
+        WearForecast first = WearForecastCodecTest.twoWeeks(START_DAY, 0);
+        mSender.update(first);
+        byte[] full = lastFrame();
+        deliverAndAck(full);
+
+        WearForecast second = WearForecastCodecTest.twoWeeks(START_DAY, 1);
+        mSender.update(second);
+        assertTrue(lastFrame().length < full.length);
+        deliverAndAck(lastFrame());
+        assertEquals(second, mWatchForecast);
+    }
+
+    @Test
+    public void testLostFrameDoesNotBreakTheNextDelta() throws WearFrameException {
+        mSender.update(WearForecastCodecTest.twoWeeks(START_DAY, 0));
+        deliverAndAck(lastFrame());
+
+        // Never reaches the watch
+        mSender.update(WearForecastCodecTest.twoWeeks(START_DAY, 1));
+
+        WearForecast third = WearForecastCodecTest.twoWeeks(START_DAY, 2);
+        mSender.update(third);
+        deliverAndAck(lastFrame());
+        assertEquals(third, mWatchForecast);
+    }
+
+    @Test
+    public void testAppliedFrameWithAckInFlightDoesNotBreakTheNextDelta()
+            throws WearFrameException {
+        mSender.update(WearForecastCodecTest.twoWeeks(START_DAY, 0));
+        deliverAndAck(lastFrame());
+
+        // The watch applies it, but the phone updates again before the ack arrives
+        mSender.update(WearForecastCodecTest.twoWeeks(START_DAY, 1));
+        deliver(lastFrame());
+
+        WearForecast third = WearForecastCodecTest.twoWeeks(START_DAY, 2);
+        mSender.update(third);
+        deliverAndAck(lastFrame());
+        assertEquals(third, mWatchForecast);
+
+        // Acknowledged again, back to deltas
+        byte[] full = lastFrame();
+        mSender.update(WearForecastCodecTest.twoWeeks(START_DAY, 3));
+        assertTrue(lastFrame().length < full.length);
+        deliverAndAck(lastFrame());
+    }
+
+    @Test
+    public void testResyncSendsAFullFrame() throws WearFrameException {
+        mSender.update(WearForecastCodecTest.twoWeeks(START_DAY, 0));
+        deliverAndAck(lastFrame());
+        WearForecast second = WearForecastCodecTest.twoWeeks(START_DAY, 1);
+        mSender.update(second);
+
+        // The watch was reset and lost everything
+        mWatchForecast = null;
+        mWatchSequence = 0;
+        try {
+            deliverAndAck(lastFrame());
+            fail("The delta should need its base");
+        } catch (WearFrameException e) {
+            assertTrue(e.isMissingBase());
+        }
+
+        assertTrue(mSender.resync());
+        deliverAndAck(lastFrame());
+        assertEquals(second, mWatchForecast);
+    }
+
+    @Test
+    public void testResyncWithoutForecast() {
+        assertFalse(mSender.resync());
+        assertTrue(mFrames.isEmpty());
+    }
+
+    @Test
+    public void testRestore() throws WearFrameException {
+        mSender.update(WearForecastCodecTest.twoWeeks(START_DAY, 0));
+        deliverAndAck(lastFrame());
+        mSender.update(WearForecastCodecTest.twoWeeks(START_DAY, 1));
+
+        WearForecastSender restored = new WearForecastSender(new WearForecastSender.Transport() {
+            @Override
+            public void send(byte[] frame) {
+                mFrames.add(frame);
+            }
+        });
+        restored.restore(mSender.getSentState(), mSender.getAckedState());
+        mSender = restored;
+
+        assertFalse(mSender.update(WearForecastCodecTest.twoWeeks(START_DAY, 1)));
+        WearForecast third = WearForecastCodecTest.twoWeeks(START_DAY, 2);
+        assertTrue(mSender.update(third));
+        deliverAndAck(lastFrame());
+        assertEquals(third, mWatchForecast);
+    }
+
+    @Test
+    public void testRestoreDropsCorruptState() {
+        mSender.restore(new byte[]{42}, null);
+        assertNull(mSender.getSent());
+        assertNull(mSender.getSentState());
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.android.sunshine.core;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class WearForecastStoreTest {
+    private static final int START_DAY = 17000;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mFile;
+
+    @Before
+    public void setUp() {
+        mFile = new File(mFolder.getRoot(), "forecast/forecast.bin");
+    }
+
+    @Test
+    public void testForecastSurvivesRestart() throws WearFrameException {
+        WearForecast first = WearForecastCodecTest.twoWeeks(START_DAY, 0);
+        WearForecast second = WearForecastCodecTest.twoWeeks(START_DAY + 1, 1);
+        WearForecastStore store = new WearForecastStore(mFile);
+        assertFalse(store.load());
+        store.apply(WearForecastCodec.encodeFull(1, first));
+        store.apply(WearForecastCodec.encodeDelta(2, 1, first, second));
+
+        WearForecastStore restarted = new WearForecastStore(mFile);
+        assertTrue(restarted.load());
+        assertEquals(second, restarted.getForecast());
+        assertEquals(2, restarted.getSequence());
+
+        // Deltas against the stored forecast still apply after the restart
+        WearForecast third = WearForecastCodecTest.twoWeeks(START_DAY + 2, 2);
+        assertEquals(third, restarted.apply(WearForecastCodec.encodeDelta(3, 2, second, third)));
+    }
+
+    @Test
+    public void testRollsOverWithoutNewFrames() throws WearFrameException {
+        WearForecastStore store = new WearForecastStore(mFile);
+        store.apply(WearForecastCodec.encodeFull(1, WearForecastCodecTest.twoWeeks(START_DAY, 0)));
+
+        assertEquals(0, store.indexOf(START_DAY));
+        assertEquals(1, store.indexOf(START_DAY + 1));
+        assertEquals(13, store.indexOf(START_DAY + 13));
+        assertEquals(-1, store.indexOf(START_DAY + 14));
+        assertEquals(-1, store.indexOf(START_DAY - 1));
+    }
+
+    @Test
+    public void testRejectedFrameKeepsForecast() throws WearFrameException {
+        WearForecast first = WearForecastCodecTest.twoWeeks(START_DAY, 0);
+        WearForecastStore store = new WearForecastStore(mFile);
+        store.apply(WearForecastCodec.encodeFull(1, first));
+        try {
+            store.apply(WearForecastCodec.encodeDelta(3, 2, first,
+                    WearForecastCodecTest.twoWeeks(START_DAY, 1)));
+            fail("A delta against an unknown base should be rejected");
+        } catch (WearFrameException e) {
+            assertTrue(e.isMissingBase());
+        }
+        assertEquals(first, store.getForecast());
+        assertEquals(1, store.getSequence());
+    }
+
+    @Test
+    public void testCorruptFileIsIgnored() throws IOException {
+        mFile.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(mFile);
+        out.write(new byte[]{1, 0, 5});
+        out.close();
+
+        WearForecastStore store = new WearForecastStore(mFile);
+        assertFalse(store.load());
+        assertNull(store.getForecast());
+        assertEquals(-1, store.indexOf(START_DAY));
+    }
+}
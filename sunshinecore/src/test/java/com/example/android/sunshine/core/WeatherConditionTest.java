@@ -0,0 +1,63 @@
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class WeatherConditionTest {
+    /**
+     * The chain of range checks both Utility classes used before the table, with the condition
+     * in place of the icon.
+     */
+    private static WeatherCondition legacyCondition(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return WeatherCondition.STORM;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return WeatherCondition.LIGHT_RAIN;
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return WeatherCondition.RAIN;
+        } else if (weatherId == 511) {
+            return WeatherCondition.SNOW;
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return WeatherCondition.RAIN;
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return WeatherCondition.SNOW;
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return WeatherCondition.FOG;
+        } else if (weatherId == 761 || weatherId == 781) {
+            return WeatherCondition.TORNADO;
+        } else if (weatherId == 800) {
+            return WeatherCondition.CLEAR;
+        } else if (weatherId == 801) {
+            return WeatherCondition.LIGHT_CLOUDS;
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return WeatherCondition.CLOUDS;
+        }
+        return null;
+    }
+
+    @Test
+    public void testMatchesRangeChecks() {
+        for (int id = -1; id <= 1000; id++) {
+            assertEquals("Condition of " + id, legacyCondition(id),
+                    WeatherCondition.forWeatherId(id));
+        }
+    }
+
+    @Test
+    public void testUnknownCodes() {
+        assertNull(WeatherCondition.forWeatherId(0));
+        assertNull(WeatherCondition.forWeatherId(199));
+        assertNull(WeatherCondition.forWeatherId(233));
+        assertNull(WeatherCondition.forWeatherId(900));
+        assertNull(WeatherCondition.forWeatherId(Integer.MIN_VALUE));
+        assertNull(WeatherCondition.forWeatherId(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testTornadoIsDrawnAsStorm() {
+        assertEquals("storm", WeatherCondition.forWeatherId(781).getArtName());
+        assertEquals(WeatherCondition.FOG, WeatherCondition.forWeatherId(761));
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.android.sunshine.app;
+
+/**
+ * The offset the ambient face is drawn at on screens with burn-in protection.  It moves one step
+ * a minute around a square of (2 * steps + 1) positions a side, so no pixel stays lit for long
+ * and the face never moves more than a step at a time.
+ */
+public class BurnInShift {
+    private final int mStepPixels;
+    private final int[] mXs;
+    private final int[] mYs;
+
+    /**
+     * @param steps      how many steps the face moves away from its place, in each direction.
+     * @param stepPixels the size of a step.
+     */
+    public BurnInShift(int steps, int stepPixels) {
+        mStepPixels = stepPixels;
+        int side = 2 * steps + 1;
+        mXs = new int[side * side];
+        mYs = new int[side * side];
+        // Row by row, every other row backwards, so consecutive positions are neighbours
+        int i = 0;
+        for (int row = 0; row < side; row++) {
+            for (int column = 0; column < side; column++) {
+                mXs[i] = (row % 2 == 0 ? column : side - 1 - column) - steps;
+                mYs[i] = row - steps;
+                i++;
+            }
+        }
+    }
+
+    /**
+     * @return how many minutes it takes to visit every position.
+     */
+    public int getCycle() {
+        return mXs.length;
+    }
+
+    public int getX(long minute) {
+        return mXs[index(minute)] * mStepPixels;
+    }
+
+    public int getY(long minute) {
+        return mYs[index(minute)] * mStepPixels;
+    }
+
+    private int index(long minute) {
+        // Back and forth, so the last position of a cycle neighbours the first of the next
+        int length = mXs.length;
+        int position = (int) (((minute % (2 * length)) + 2 * length) % (2 * length));
+        return position < length ? position : 2 * length - 1 - position;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.android.sunshine.app;
+
+/**
+ * Decides which layers of the watch face have to be redrawn.  Every layer is stamped with a
+ * value derived from everything it shows, the minute for the time, the day and forecast for the
+ * date and forecast, and only a layer whose stamp changed since it was last drawn is drawn
+ * again.  Not thread safe.
+ */
+public class LayerStamps {
+    private final long[] mStamps;
+    private final boolean[] mValid;
+    private final int[] mRebuilds;
+
+    public LayerStamps(int layers) {
+        mStamps = new long[layers];
+        mValid = new boolean[layers];
+        mRebuilds = new int[layers];
+    }
+
+    /**
+     * @return true if the layer has to be drawn for this stamp, which it is then assumed to be.
+     */
+    public boolean needsRebuild(int layer, long stamp) {
+        if (mValid[layer] && mStamps[layer] == stamp) {
+            return false;
+        }
+        mValid[layer] = true;
+        mStamps[layer] = stamp;
+        mRebuilds[layer]++;
+        return true;
+    }
+
+    /**
+     * Have every layer drawn again, after something all of them depend on changed.
+     */
+    public void invalidateAll() {
+        for (int i = 0; i < mValid.length; i++) {
+            mValid[i] = false;
+        }
+    }
+
+    /**
+     * @return how often a layer was drawn.
+     */
+    public int getRebuilds(int layer) {
+        return mRebuilds[layer];
+    }
+}
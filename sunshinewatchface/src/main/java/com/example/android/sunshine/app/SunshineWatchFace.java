@@ -24,23 +24,30 @@ import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Rect;
 import android.graphics.Typeface;
+import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
-import android.text.format.Time;
 import android.util.DisplayMetrics;
 import android.util.Log;
+import android.util.SparseArray;
 import android.view.Gravity;
 import android.view.SurfaceHolder;
 import android.view.WindowInsets;
 
+import com.example.android.sunshine.core.WearForecast;
+import com.example.android.sunshine.core.WearForecastCodec;
+import com.example.android.sunshine.core.WearForecastStore;
+import com.example.android.sunshine.core.WearFrameException;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.ResultCallback;
@@ -48,21 +55,27 @@ import com.google.android.gms.wearable.DataApi;
 import com.google.android.gms.wearable.DataEvent;
 import com.google.android.gms.wearable.DataEventBuffer;
 import com.google.android.gms.wearable.DataItem;
+import com.google.android.gms.wearable.DataItemBuffer;
 import com.google.android.gms.wearable.DataMap;
 import com.google.android.gms.wearable.DataMapItem;
+import com.google.android.gms.wearable.MessageApi;
+import com.google.android.gms.wearable.MessageEvent;
+import com.google.android.gms.wearable.Node;
+import com.google.android.gms.wearable.NodeApi;
 import com.google.android.gms.wearable.PutDataMapRequest;
 import com.google.android.gms.wearable.PutDataRequest;
 import com.google.android.gms.wearable.Wearable;
 
+import java.io.File;
 import java.lang.ref.WeakReference;
-import java.text.SimpleDateFormat;
 import java.util.Locale;
+import java.util.Random;
 import java.util.TimeZone;
-import java.util.concurrent.TimeUnit;
 
 /**
- * Digital watch face with seconds. In ambient mode, the seconds aren't displayed. On devices with
- * low-bit ambient mode, the text is drawn without anti-aliasing in ambient mode.
+ * Digital watch face showing hours and minutes. In interactive mode it only wakes when the face
+ * changes, see {@link TickScheduler}. On devices with low-bit ambient mode, the text is drawn
+ * without anti-aliasing in ambient mode.
  */
 public class SunshineWatchFace extends CanvasWatchFaceService {
     public static final String LOG_TAG = SunshineWatchFace.class.getSimpleName();
@@ -74,12 +87,6 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
     private static final Typeface BOLD_TYPEFACE =
             Typeface.create(Typeface.SANS_SERIF, Typeface.NORMAL);
 
-    /**
-     * Update rate in milliseconds for interactive mode. We update once a second since seconds are
-     * displayed in interactive mode.
-     */
-    private static final long INTERACTIVE_UPDATE_RATE_MS = TimeUnit.SECONDS.toMillis(1);
-
     /**
      * Handler message id for updating the time periodically in interactive mode.
      */
@@ -112,14 +119,23 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
 
     public class Engine extends CanvasWatchFaceService.Engine implements
             DataApi.DataListener,
+            MessageApi.MessageListener,
             GoogleApiClient.ConnectionCallbacks,
             GoogleApiClient.OnConnectionFailedListener {
         final Handler mUpdateTimeHandler = new EngineHandler(this);
         boolean mRegisteredTimeZoneReceiver = false;
 
-        private static final String FORECAST_UPDATE_PATH = "/forecast_update";
-        private static final String FORECAST_UPDATE_KEY =
-                "com.example.android.sunshine.app.forecast_update";
+        // Asking the phone for the forecast, which answers with a full frame
+        private static final String FORECAST_REQUEST_PATH = "/forecast_request";
+        private static final String FORECAST_RESPONSE_PATH = "/forecast_response";
+        private static final String REQUEST_ID_KEY =
+                "com.example.android.sunshine.app.wearable.request_id";
+        private static final long REQUEST_TIMEOUT_MILLIS = 30 * 1000;
+
+        // The request waiting for an answer, if mRequestPending
+        private int mRequestId = new Random().nextInt();
+        private boolean mRequestPending;
+        private long mRequestSentAt;
 
         Paint mBackgroundPaint;
         Paint mTextPaint;
@@ -137,14 +153,51 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
         float mMessageHeight = 10f;
 
         boolean mAmbient;
-        Time mTime;
         final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                mTime.clear(intent.getStringExtra("time-zone"));
-                mTime.setToNow();
+                TimeZone timeZone = TimeZone.getTimeZone(intent.getStringExtra("time-zone"));
+                mTimeText.setTimeZone(timeZone);
+                mTickScheduler.setTimeZone(timeZone);
+                invalidate();
+                updateTimer();
             }
         };
+
+        // What onDraw would otherwise format, decode and measure on every frame
+        TimeTextCache mTimeText;
+        TickScheduler mTickScheduler;
+        TextWidthCache mHourWidths;
+        TextWidthCache mSecondTextWidths;
+        TextWidthCache mHighTempWidths;
+        TextWidthCache mMessageWidths;
+        final SparseArray<Bitmap> mIcons = new SparseArray<>();
+        String mTimeSeparator;
+        String mSeparatorString;
+        String mMessageString;
+
+        // The face is composed of layers which are only drawn again when what they show changed,
+        // into mFrame, which is all most frames draw
+        private static final int LAYER_BACKGROUND = 0;
+        private static final int LAYER_DAY = 1;
+        private static final int LAYER_TIME = 2;
+        private static final int LAYER_AMBIENT = 3;
+        final LayerStamps mLayerStamps = new LayerStamps(4);
+        final Bitmap[] mLayers = new Bitmap[3];
+        final Canvas[] mLayerCanvases = new Canvas[3];
+        Bitmap mFrame;
+        Canvas mFrameCanvas;
+        float mTimeYOffset;
+        float mDateYOffset;
+        float mSeparatorYOffset;
+        float mForecastYOffset;
+        // Bumped whenever the shown forecast changes
+        long mForecastVersion;
+
+        // Draw time statistics, logged when debugging
+        private static final int DRAW_STATS_FRAMES = 600;
+        long mDrawNanos;
+        int mDrawCount;
         int mTapCount;
 
         float mXOffset;
@@ -155,21 +208,42 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
          * disable anti-aliasing in ambient mode.
          */
         boolean mLowBitAmbient;
+        boolean mBurnInProtection;
+
+        // Ambient mode has its own paints, white on black, and draws straight into mFrame once a
+        // minute, moved around on screens which burn in
+        private static final int BURN_IN_STEPS = 2;
+        Paint mAmbientTimePaint;
+        Paint mAmbientDatePaint;
+        Paint mAmbientTextPaint;
+        TextWidthCache mAmbientTimeWidths;
+        TextWidthCache mAmbientDateWidths;
+        TextWidthCache mAmbientTextWidths;
+        BurnInShift mBurnInShift;
 
         // Data Layer items
         private static final String FORECAST_PATH = "/forecast";
 
-        private static final String WEATHERID_KEY =
-                "com.example.android.sunshine.app.wearable.weatherid";
-        private static final String HIGHTEMP_KEY =
-                "com.example.android.sunshine.app.wearable.hightemp";
-        private static final String LOWTEMP_KEY =
-                "com.example.android.sunshine.app.wearable.lowtemp";
+        private static final String FRAME_KEY =
+                "com.example.android.sunshine.app.wearable.frame";
+        private static final String FORECAST_ACK_PATH = "/forecast_ack";
+        private static final String FORECAST_ACK_SEQUENCE_KEY =
+                "com.example.android.sunshine.app.wearable.ack_sequence";
 
         private String mHighTemp;
         private String mLowTemp;
         private Integer mWeatherId;
 
+        // Every day the phone sent, kept in a file so we can show it without asking again
+        private static final String FORECAST_FILE = "forecast.bin";
+        private WearForecastStore mForecastStore;
+        // The day mWeatherId, mHighTemp and mLowTemp are for
+        private int mForecastDay = Integer.MIN_VALUE;
+        // When the engine was created and whether its first frame with a forecast was drawn
+        private long mCreatedAt;
+        private boolean mFirstForecastDrawn;
+        private String mForecastSource = "none";
+
         GoogleApiClient mGoogleApiClient = new GoogleApiClient.Builder(SunshineWatchFace.this)
                 .addConnectionCallbacks(this)
                 .addOnConnectionFailedListener(this)
@@ -179,6 +253,7 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
         @Override
         public void onCreate(SurfaceHolder holder) {
             super.onCreate(holder);
+            mCreatedAt = SystemClock.elapsedRealtime();
 
             setWatchFaceStyle(new WatchFaceStyle.Builder(SunshineWatchFace.this)
                     .setCardPeekMode(WatchFaceStyle.PEEK_MODE_VARIABLE)
@@ -205,17 +280,98 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
             mHighTempPaint = createTextPaint(getColor(R.color.digital_text), BOLD_TYPEFACE);
             mLowTempPaint = createTextPaint(getColor(R.color.secondary_text));
             mMessagePaint = createTextPaint(getColor(R.color.digital_text));
+            mAmbientTimePaint = createTextPaint(Color.WHITE);
+            mAmbientDatePaint = createTextPaint(Color.WHITE);
+            mAmbientTextPaint = createTextPaint(Color.WHITE);
+            mBurnInShift = new BurnInShift(BURN_IN_STEPS,
+                    resources.getDimensionPixelSize(R.dimen.burn_in_step));
+
+            mTimeText = new TimeTextCache("EEE, MMM dd yyyy", Locale.US, TimeZone.getDefault());
+            // The face has no seconds to show, so the scheduler stays in minute mode
+            mTickScheduler = new TickScheduler(new TickScheduler.Clock() {
+                @Override
+                public long currentTimeMillis() {
+                    return System.currentTimeMillis();
+                }
+            }, TimeZone.getDefault());
+            mHourWidths = createWidthCache(mHourPaint);
+            mSecondTextWidths = createWidthCache(mSecondTextPaint);
+            mHighTempWidths = createWidthCache(mHighTempPaint);
+            mMessageWidths = createWidthCache(mMessagePaint);
+            mAmbientTimeWidths = createWidthCache(mAmbientTimePaint);
+            mAmbientDateWidths = createWidthCache(mAmbientDatePaint);
+            mAmbientTextWidths = createWidthCache(mAmbientTextPaint);
+            mTimeSeparator = getString(R.string.time_separator);
+            mSeparatorString = getString(R.string.watch_face_separator);
+            mMessageString = getString(R.string.temperary_message);
+            mSecondTextPaint.setAlpha(100);
 
-            mTime = new Time();
-
+            mForecastStore = new WearForecastStore(new File(getFilesDir(), FORECAST_FILE));
+            // Loaded before the first frame, so a restart doesn't wait for the phone
+            if (mForecastStore.load()) {
+                mForecastSource = "file";
+            }
+            showForecastFor(today());
         }
 
         @Override
         public void onDestroy() {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            if (mFrame != null) {
+                mFrame.recycle();
+                for (Bitmap layer : mLayers) {
+                    layer.recycle();
+                }
+            }
             super.onDestroy();
         }
 
+        private TextWidthCache createWidthCache(final Paint paint) {
+            return new TextWidthCache(new TextWidthCache.Measurer() {
+                @Override
+                public float measureText(String text) {
+                    return paint.measureText(text);
+                }
+            });
+        }
+
+        /**
+         * Forget measured widths and scaled icons, after the sizes they depend on changed.
+         */
+        private void clearRenderCache() {
+            mLayerStamps.invalidateAll();
+            mHourWidths.clear();
+            mSecondTextWidths.clear();
+            mHighTempWidths.clear();
+            mMessageWidths.clear();
+            mAmbientTimeWidths.clear();
+            mAmbientDateWidths.clear();
+            mAmbientTextWidths.clear();
+            mIcons.clear();
+        }
+
+        /**
+         * @return the icon of a weather condition, decoded and scaled once, or null if there's
+         * no icon for it.
+         */
+        private Bitmap getIcon(int weatherId) {
+            int iconId = Utility.getIconResourceForWeatherCondition(weatherId);
+            if (iconId == -1) {
+                return null;
+            }
+            Bitmap icon = mIcons.get(iconId);
+            if (icon == null) {
+                Resources resources = getResources();
+                int size = resources.getDimensionPixelSize(R.dimen.forecast_icon_size);
+                icon = BitmapFactory.decodeResource(resources, iconId);
+                if (icon.getWidth() != size || icon.getHeight() != size) {
+                    icon = Bitmap.createScaledBitmap(icon, size, size, true);
+                }
+                mIcons.put(iconId, icon);
+            }
+            return icon;
+        }
+
         private Paint createTextPaint(int defaultInteractiveColor) {
             return createTextPaint(defaultInteractiveColor, NORMAL_TYPEFACE);
         }
@@ -234,19 +390,16 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
 
             if (visible) {
                 registerReceiver();
+                // The forecast is requested once connected, if the data layer has none either
                 mGoogleApiClient.connect();
 
-                // Send message to update the forecast if needed
-                if (mWeatherId == null || mHighTemp == null || mLowTemp == null) {
-                    sendForecastRequest();
-                }
-
                 // Update time zone in case it changed while we weren't visible.
-                mTime.clear(TimeZone.getDefault().getID());
-                mTime.setToNow();
+                mTimeText.setTimeZone(TimeZone.getDefault());
+                mTickScheduler.setTimeZone(TimeZone.getDefault());
             } else {
                 unregisterReceiver();
                 Wearable.DataApi.removeListener(mGoogleApiClient, this);
+                Wearable.MessageApi.removeListener(mGoogleApiClient, this);
                 mGoogleApiClient.disconnect();
             }
 
@@ -297,6 +450,10 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
             mHighTempPaint.setTextSize(mForecastHeight * metrics.density);
             mLowTempPaint.setTextSize(mForecastHeight * metrics.density);
             mMessagePaint.setTextSize(mMessageHeight * metrics.density);
+            mAmbientTimePaint.setTextSize(textSize);
+            mAmbientDatePaint.setTextSize(mDateHeight * metrics.density);
+            mAmbientTextPaint.setTextSize(mForecastHeight * metrics.density);
+            clearRenderCache();
 
         }
 
@@ -304,6 +461,16 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
         public void onPropertiesChanged(Bundle properties) {
             super.onPropertiesChanged(properties);
             mLowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
+            mBurnInProtection = properties.getBoolean(PROPERTY_BURN_IN_PROTECTION, false);
+
+            // Low-bit screens only show pure colors, anti-aliased edges would be dithered
+            mAmbientTimePaint.setAntiAlias(!mLowBitAmbient);
+            mAmbientDatePaint.setAntiAlias(!mLowBitAmbient);
+            mAmbientTextPaint.setAntiAlias(!mLowBitAmbient);
+            // Bold strokes are what burns in
+            mAmbientTimePaint.setTypeface(mBurnInProtection ? NORMAL_TYPEFACE : BOLD_TYPEFACE);
+            mAmbientTimeWidths.clear();
+            mLayerStamps.invalidateAll();
         }
 
         @Override
@@ -317,9 +484,8 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
             super.onAmbientModeChanged(inAmbientMode);
             if (mAmbient != inAmbientMode) {
                 mAmbient = inAmbientMode;
-                if (mLowBitAmbient) {
-                    mTextPaint.setAntiAlias(!inAmbientMode);
-                }
+                // Both modes draw into mFrame, whatever is in there is the other mode's
+                mLayerStamps.invalidateAll();
                 invalidate();
             }
 
@@ -355,83 +521,185 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
 
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
-            // Draw the background.
+            long drawStart = SystemClock.elapsedRealtimeNanos();
+
+            // Update the time
+            mTimeText.update(System.currentTimeMillis());
+
+            // Past midnight the next stored day takes over
+            if (mTimeText.getDay() != mForecastDay) {
+                showForecastFor(mTimeText.getDay());
+            }
+
+            int width = bounds.width();
+            int height = bounds.height();
+            if (mFrame == null || mFrame.getWidth() != width || mFrame.getHeight() != height) {
+                createLayers(width, height);
+            }
             if (isInAmbientMode()) {
-                canvas.drawColor(getColor(R.color.ambient_background));
-            } else {
-                canvas.drawRect(0, 0, bounds.width(), bounds.height(), mBackgroundPaint);
+                if (mLayerStamps.needsRebuild(LAYER_AMBIENT,
+                        mForecastVersion << 32 ^ mTimeText.getMinute())) {
+                    drawAmbientFrame(width);
+                }
+                canvas.drawBitmap(mFrame, bounds.left, bounds.top, null);
+                logFirstForecastFrame();
+                return;
             }
 
-            // Update the time
-            mTime.setToNow();
+            // The hour's width moves the icon, so it's part of the day layer's stamp
+            float hourOffset = (width / 2) - (mHourWidths.measureText(mTimeText.getHourText())
+                    - mHourWidths.measureText(mTimeSeparator) / 2);
 
-            mSecondTextPaint.setAlpha(100);
+            boolean changed = false;
+            if (mLayerStamps.needsRebuild(LAYER_BACKGROUND, 0)) {
+                drawBackgroundLayer(width, height);
+                changed = true;
+            }
+            if (mLayerStamps.needsRebuild(LAYER_DAY,
+                    mForecastVersion ^ ((long) Float.floatToIntBits(hourOffset) << 32))) {
+                drawDayLayer(width, hourOffset);
+                changed = true;
+            }
+            if (mLayerStamps.needsRebuild(LAYER_TIME, mTimeText.getMinute())) {
+                drawTimeLayer(width, hourOffset);
+                changed = true;
+            }
+            if (changed) {
+                mFrameCanvas.drawBitmap(mLayers[LAYER_BACKGROUND], 0, 0, null);
+                mFrameCanvas.drawBitmap(mLayers[LAYER_DAY], 0, 0, null);
+                mFrameCanvas.drawBitmap(mLayers[LAYER_TIME], 0, 0, null);
+            }
+            canvas.drawBitmap(mFrame, bounds.left, bounds.top, null);
+            logFirstForecastFrame();
+
+            if (Log.isLoggable(LOG_TAG, Log.DEBUG)) {
+                mDrawNanos += SystemClock.elapsedRealtimeNanos() - drawStart;
+                if (++mDrawCount == DRAW_STATS_FRAMES) {
+                    Log.d(LOG_TAG, "onDraw took " + (mDrawNanos / mDrawCount / 1000)
+                            + "us per frame, layers drawn: "
+                            + mLayerStamps.getRebuilds(LAYER_BACKGROUND) + " background, "
+                            + mLayerStamps.getRebuilds(LAYER_DAY) + " day, "
+                            + mLayerStamps.getRebuilds(LAYER_TIME) + " time");
+                    mDrawNanos = 0;
+                    mDrawCount = 0;
+                }
+            }
+        }
 
-            // Set the strings
-            String hourString = String.format("%02d:", mTime.hour);
-            String minuteString = String.format("%02d", mTime.minute);
-            SimpleDateFormat dateFormat = new SimpleDateFormat("EEE, MMM dd yyyy", Locale.US);
-            String dateString = dateFormat.format(System.currentTimeMillis());
-            String separatorString = getString(R.string.watch_face_separator);
-
-            // Calculate the offsets
-            float x = mXOffset;
-            float y = mYOffset;
-            float centerScreen = bounds.width() / 2;
-            float hourOffset = centerScreen - (mHourPaint.measureText(hourString)
-                    - (mHourPaint.measureText(getString(R.string.time_separator))) / 2);
-            float minutesOffset = centerScreen +
-                    (mHourPaint.measureText(getString(R.string.time_separator)) / 2);
-            float dateXOffset = centerScreen - (mSecondTextPaint.measureText(dateString) / 2);
-            float separatorXOffset = centerScreen - (mSecondTextPaint.measureText(separatorString) / 2);
-
-            float timeYOffset = (canvas.getHeight() / 5) * 2;
+        /**
+         * Allocate the frame and the layers for a surface size, every layer is drawn again.
+         */
+        private void createLayers(int width, int height) {
+            mFrame = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mFrameCanvas = new Canvas(mFrame);
+            for (int i = 0; i < mLayers.length; i++) {
+                mLayers[i] = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                mLayerCanvases[i] = new Canvas(mLayers[i]);
+            }
+            mLayerStamps.invalidateAll();
 
+            mTimeYOffset = (height / 5) * 2;
             DisplayMetrics metrics = getResources().getDisplayMetrics();
-            float dateYOffset = timeYOffset + (mDateHeight * metrics.density);
-            float separatorYOffset = dateYOffset + (20f * metrics.density);
+            mDateYOffset = mTimeYOffset + (mDateHeight * metrics.density);
+            mSeparatorYOffset = mDateYOffset + (20f * metrics.density);
+            mForecastYOffset = mSeparatorYOffset + (height / 5);
+        }
 
-            // Draw the time
-            canvas.drawText(hourString, hourOffset, timeYOffset, mHourPaint);
-            canvas.drawText(minuteString, minutesOffset, timeYOffset, mMinutePaint);
-
-            // Draw the date
-            canvas.drawText(dateString, dateXOffset, dateYOffset, mSecondTextPaint);
+        private void drawBackgroundLayer(int width, int height) {
+            Canvas canvas = mLayerCanvases[LAYER_BACKGROUND];
+            canvas.drawRect(0, 0, width, height, mBackgroundPaint);
 
             // Draw the separator
-            canvas.drawText(separatorString, separatorXOffset, separatorYOffset, mSecondTextPaint);
+            float separatorXOffset = (width / 2)
+                    - (mSecondTextWidths.measureText(mSeparatorString) / 2);
+            canvas.drawText(mSeparatorString, separatorXOffset, mSeparatorYOffset,
+                    mSecondTextPaint);
+        }
+
+        private void drawDayLayer(int width, float hourOffset) {
+            Canvas canvas = mLayerCanvases[LAYER_DAY];
+            mLayers[LAYER_DAY].eraseColor(Color.TRANSPARENT);
+            float centerScreen = width / 2;
 
-            float forecastYOffset = separatorYOffset + (canvas.getHeight() / 5);
+            // Draw the date
+            String dateString = mTimeText.getDateText();
+            float dateXOffset = centerScreen - (mSecondTextWidths.measureText(dateString) / 2);
+            canvas.drawText(dateString, dateXOffset, mDateYOffset, mSecondTextPaint);
+
+            float forecastYOffset = mForecastYOffset;
 
             // Check if the forecast data has been set
             if (mWeatherId != null && mHighTemp != null && mLowTemp != null) {
 
-                // Hide when in ambient mode
-                if (!mAmbient) {
-                    // Draw the Bitmap
-                    Integer iconId = Utility.getIconResourceForWeatherCondition(mWeatherId);
-                    Bitmap icon = BitmapFactory.decodeResource(getApplicationContext().getResources(),
-                            iconId);
+                // Draw the Bitmap
+                Bitmap icon = getIcon(mWeatherId);
+                if (icon != null) {
                     canvas.drawBitmap(icon, hourOffset - 10, forecastYOffset - 45, null);
                 }
 
                 // Draw the HighTemp
                 float forecastHighTempXOffset = centerScreen -
-                        (mHighTempPaint.measureText(mHighTemp) / 2);
+                        (mHighTempWidths.measureText(mHighTemp) / 2);
                 canvas.drawText(mHighTemp, forecastHighTempXOffset, forecastYOffset, mHighTempPaint);
 
                 // Draw the LowTemp
                 float forecastLowTempXOffset = forecastHighTempXOffset +
-                        mHighTempPaint.measureText(mHighTemp) + 15;
+                        mHighTempWidths.measureText(mHighTemp) + 15;
                 canvas.drawText(mLowTemp, forecastLowTempXOffset, forecastYOffset, mLowTempPaint);
             } else {
-                String messageString = getResources().getString(R.string.temperary_message);
+                String messageString = mMessageString;
                 float tempMessageXOffset = centerScreen -
-                        (mMessagePaint.measureText(messageString) / 2);
+                        (mMessageWidths.measureText(messageString) / 2);
                 canvas.drawText(messageString, tempMessageXOffset, forecastYOffset, mMessagePaint);
             }
         }
 
+        /**
+         * Draw the ambient face into mFrame: the time, date and temperatures in white on black,
+         * without the icon and separator, shifted on screens with burn-in protection.
+         */
+        private void drawAmbientFrame(int width) {
+            Canvas canvas = mFrameCanvas;
+            canvas.drawColor(getColor(R.color.ambient_background));
+
+            long minute = mTimeText.getMinute();
+            float centerScreen = width / 2;
+            float dx = mBurnInProtection ? mBurnInShift.getX(minute) : 0;
+            float dy = mBurnInProtection ? mBurnInShift.getY(minute) : 0;
+
+            String hourString = mTimeText.getHourText();
+            float timeSeparatorWidth = mAmbientTimeWidths.measureText(mTimeSeparator);
+            float hourOffset = centerScreen - (mAmbientTimeWidths.measureText(hourString)
+                    - timeSeparatorWidth / 2);
+            canvas.drawText(hourString, hourOffset + dx, mTimeYOffset + dy, mAmbientTimePaint);
+            canvas.drawText(mTimeText.getMinuteText(), centerScreen + timeSeparatorWidth / 2 + dx,
+                    mTimeYOffset + dy, mAmbientTimePaint);
+
+            String dateString = mTimeText.getDateText();
+            canvas.drawText(dateString,
+                    centerScreen - mAmbientDateWidths.measureText(dateString) / 2 + dx,
+                    mDateYOffset + dy, mAmbientDatePaint);
+
+            if (mHighTemp != null && mLowTemp != null) {
+                float highWidth = mAmbientTextWidths.measureText(mHighTemp);
+                float highXOffset = centerScreen - highWidth / 2;
+                canvas.drawText(mHighTemp, highXOffset + dx, mForecastYOffset + dy,
+                        mAmbientTextPaint);
+                canvas.drawText(mLowTemp, highXOffset + highWidth + 15 + dx,
+                        mForecastYOffset + dy, mAmbientTextPaint);
+            }
+        }
+
+        private void drawTimeLayer(int width, float hourOffset) {
+            Canvas canvas = mLayerCanvases[LAYER_TIME];
+            mLayers[LAYER_TIME].eraseColor(Color.TRANSPARENT);
+            float minutesOffset = (width / 2) + (mHourWidths.measureText(mTimeSeparator) / 2);
+
+            // Draw the time
+            canvas.drawText(mTimeText.getHourText(), hourOffset, mTimeYOffset, mHourPaint);
+            canvas.drawText(mTimeText.getMinuteText(), minutesOffset, mTimeYOffset, mMinutePaint);
+        }
+
         /**
          * Starts the {@link #mUpdateTimeHandler} timer if it should be running and isn't currently
          * or stops it if it shouldn't be running but currently is.
@@ -457,10 +725,8 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
         private void handleUpdateTimeMessage() {
             invalidate();
             if (shouldTimerBeRunning()) {
-                long timeMs = System.currentTimeMillis();
-                long delayMs = INTERACTIVE_UPDATE_RATE_MS
-                        - (timeMs % INTERACTIVE_UPDATE_RATE_MS);
-                mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME, delayMs);
+                mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME,
+                        mTickScheduler.delayUntilNextTick());
             }
         }
 
@@ -472,20 +738,64 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
             for (DataEvent event : dataEventBuffer) {
                 DataItem dataItem = event.getDataItem();
                 String path = dataItem.getUri().getPath();
-                if (FORECAST_PATH.equals(path)) {
+                if (event.getType() == DataEvent.TYPE_CHANGED && FORECAST_PATH.equals(path)) {
                     DataMap dataMap = DataMapItem.fromDataItem(dataItem).getDataMap();
-                    updateForecast(
-                            dataMap.getInt(WEATHERID_KEY),
-                            dataMap.getString(HIGHTEMP_KEY),
-                            dataMap.getString(LOWTEMP_KEY)
-                    );
+                    applyFrame(dataMap.getByteArray(FRAME_KEY), "data event");
                 }
             }
         }
 
+        @Override
+        public void onMessageReceived(MessageEvent messageEvent) {
+            if (!FORECAST_RESPONSE_PATH.equals(messageEvent.getPath())) {
+                return;
+            }
+            DataMap response = DataMap.fromByteArray(messageEvent.getData());
+            if (!mRequestPending || response.getInt(REQUEST_ID_KEY) != mRequestId) {
+                // An answer to a request we gave up on, or a second delivery
+                return;
+            }
+            mRequestPending = false;
+            // No frame if the phone has no forecast yet, it comes on the DataItem after a sync
+            applyFrame(response.getByteArray(FRAME_KEY), "response");
+        }
+
         @Override
         public void onConnected(@Nullable Bundle bundle) {
             Wearable.DataApi.addListener(mGoogleApiClient, Engine.this);
+            Wearable.MessageApi.addListener(mGoogleApiClient, Engine.this);
+            loadForecastDataItem();
+        }
+
+        /**
+         * Apply the forecast the data layer already holds. Frames the phone put while we weren't
+         * listening never come as events, and it's quicker than asking the phone for one.
+         */
+        private void loadForecastDataItem() {
+            Uri uri = new Uri.Builder()
+                    .scheme(PutDataRequest.WEAR_URI_SCHEME)
+                    .path(FORECAST_PATH)
+                    .build();
+            Wearable.DataApi.getDataItems(mGoogleApiClient, uri)
+                    .setResultCallback(new ResultCallback<DataItemBuffer>() {
+                        @Override
+                        public void onResult(@NonNull DataItemBuffer dataItems) {
+                            try {
+                                for (DataItem dataItem : dataItems) {
+                                    DataMap dataMap =
+                                            DataMapItem.fromDataItem(dataItem).getDataMap();
+                                    applyFrame(dataMap.getByteArray(FRAME_KEY), "data item");
+                                }
+                            } finally {
+                                dataItems.release();
+                            }
+
+                            // Send message to update the forecast if needed
+                            if (mForecastStore.indexOf(today()) == -1) {
+                                sendForecastRequest();
+                            }
+                        }
+                    });
         }
 
         @Override
@@ -498,26 +808,109 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
 
         }
 
-        public void updateForecast(Integer weatherId, String highTemp, String lowTemp) {
-            mWeatherId = weatherId;
-            mHighTemp = highTemp;
-            mLowTemp = lowTemp;
+        /**
+         * Apply a forecast frame from the phone and acknowledge it, so the phone sends the next
+         * one as a delta against it.  A delta we can't apply makes us ask for the full forecast.
+         */
+        private void applyFrame(byte[] frame, String source) {
+            if (frame == null) {
+                return;
+            }
+            try {
+                if (mForecastStore.getForecast() != null
+                        && WearForecastCodec.sequenceOf(frame) == mForecastStore.getSequence()) {
+                    // Already stored, most likely the data item we read back on connect
+                    sendAcknowledgement(mForecastStore.getSequence());
+                    return;
+                }
+                mForecastStore.apply(frame);
+            } catch (WearFrameException e) {
+                Log.d(LOG_TAG, "Can't apply the Forecast update: " + e.getMessage());
+                if (e.isMissingBase()) {
+                    sendForecastRequest();
+                }
+                return;
+            }
+            sendAcknowledgement(mForecastStore.getSequence());
+            mForecastSource = source;
 
+            showForecastFor(today());
             invalidate();
         }
 
+        /**
+         * Show the stored forecast of a day, or the message if we have none for it.
+         */
+        private void showForecastFor(int day) {
+            mForecastDay = day;
+            mForecastVersion++;
+            int i = mForecastStore.indexOf(day);
+            if (i == -1) {
+                mWeatherId = null;
+                mHighTemp = null;
+                mLowTemp = null;
+                mTickScheduler.setForecastExpiry(Long.MAX_VALUE);
+                return;
+            }
+            WearForecast forecast = mForecastStore.getForecast();
+            // The end of the last stored day, measured from its noon to stay clear of DST jumps
+            long lastDay = forecast.getStartDay() + forecast.size() - 1;
+            long lastNoon = lastDay * TickScheduler.DAY_IN_MILLIS + TickScheduler.DAY_IN_MILLIS / 2
+                    - mTimeText.getTimeZone().getOffset(lastDay * TickScheduler.DAY_IN_MILLIS);
+            mTickScheduler.setForecastExpiry(mTickScheduler.nextMidnight(lastNoon));
+            mWeatherId = forecast.getWeatherId(i);
+            mHighTemp = forecast.getHigh(i) + "\u00B0";
+            mLowTemp = forecast.getLow(i) + "\u00B0";
+        }
+
+        /**
+         * Log, once, how long after the engine was created it first drew a forecast, and where
+         * that forecast came from.
+         */
+        private void logFirstForecastFrame() {
+            if (mFirstForecastDrawn || mWeatherId == null) {
+                return;
+            }
+            mFirstForecastDrawn = true;
+            Log.d(LOG_TAG, "First forecast frame "
+                    + (SystemClock.elapsedRealtime() - mCreatedAt) + "ms after onCreate, from "
+                    + mForecastSource);
+        }
+
+        private int today() {
+            mTimeText.update(System.currentTimeMillis());
+            return mTimeText.getDay();
+        }
+
+        private void sendAcknowledgement(int sequence) {
+            PutDataMapRequest putDataMapRequest = PutDataMapRequest.create(FORECAST_ACK_PATH);
+            putDataMapRequest.getDataMap().putInt(FORECAST_ACK_SEQUENCE_KEY, sequence);
+            Wearable.DataApi.putDataItem(mGoogleApiClient, putDataMapRequest.asPutDataRequest());
+        }
+
+        /**
+         * Ask the phone for the forecast, unless a request is already waiting for its answer.
+         */
         private void sendForecastRequest() {
-            PutDataMapRequest putDataMapRequest = PutDataMapRequest.create(FORECAST_UPDATE_PATH);
-            putDataMapRequest.getDataMap().putLong(FORECAST_UPDATE_KEY, System.currentTimeMillis());
-            PutDataRequest putDataRequest = putDataMapRequest.asPutDataRequest();
-            Wearable.DataApi.putDataItem(mGoogleApiClient, putDataRequest)
-                    .setResultCallback(new ResultCallback<DataApi.DataItemResult>() {
+            long now = SystemClock.elapsedRealtime();
+            if (mRequestPending && now - mRequestSentAt < REQUEST_TIMEOUT_MILLIS) {
+                return;
+            }
+            mRequestPending = true;
+            mRequestSentAt = now;
+            DataMap request = new DataMap();
+            request.putInt(REQUEST_ID_KEY, ++mRequestId);
+            final byte[] data = request.toByteArray();
+            Wearable.NodeApi.getConnectedNodes(mGoogleApiClient)
+                    .setResultCallback(new ResultCallback<NodeApi.GetConnectedNodesResult>() {
                         @Override
-                        public void onResult(@NonNull DataApi.DataItemResult dataItemResult) {
-                            if (!dataItemResult.getStatus().isSuccess()) {
-                                Log.d(LOG_TAG, "Failed to send Forecast update request!");
-                            } else {
-                                Log.d(LOG_TAG, "Successfully sent the Forecast update request");
+                        public void onResult(@NonNull NodeApi.GetConnectedNodesResult result) {
+                            for (Node node : result.getNodes()) {
+                                Wearable.MessageApi.sendMessage(mGoogleApiClient, node.getId(),
+                                        FORECAST_REQUEST_PATH, data);
+                            }
+                            if (result.getNodes().isEmpty()) {
+                                Log.d(LOG_TAG, "No phone to ask for the Forecast");
                             }
                         }
                     });
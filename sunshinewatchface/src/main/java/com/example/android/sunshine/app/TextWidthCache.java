@@ -0,0 +1,42 @@
+package com.example.android.sunshine.app;
+
+import java.util.HashMap;
+
+/**
+ * Remembers the widths one paint measured, so the strings a watch face draws over and over are
+ * measured once.  Has to be cleared whenever the paint's size or typeface changes.
+ */
+public class TextWidthCache {
+    // Enough for every hour, minute and date string of a day, more means a stream of new ones
+    private static final int MAX_ENTRIES = 128;
+
+    /**
+     * Measures text, with Paint.measureText on a device.
+     */
+    public interface Measurer {
+        float measureText(String text);
+    }
+
+    private final Measurer mMeasurer;
+    private final HashMap<String, Float> mWidths = new HashMap<>();
+
+    public TextWidthCache(Measurer measurer) {
+        mMeasurer = measurer;
+    }
+
+    public float measureText(String text) {
+        Float width = mWidths.get(text);
+        if (width == null) {
+            if (mWidths.size() == MAX_ENTRIES) {
+                mWidths.clear();
+            }
+            width = mMeasurer.measureText(text);
+            mWidths.put(text, width);
+        }
+        return width;
+    }
+
+    public void clear() {
+        mWidths.clear();
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.android.sunshine.app;
+
+import java.util.TimeZone;
+
+/**
+ * Works out when the watch face next looks different, so the interactive timer sleeps until
+ * then instead of waking every second.  The face changes at the next minute, or second in
+ * seconds mode, at local midnight, when the date and forecast day move on, and when the
+ * forecast it shows expires.  Not thread safe.
+ */
+public class TickScheduler {
+    static final long SECOND_IN_MILLIS = 1000;
+    static final long MINUTE_IN_MILLIS = 60 * SECOND_IN_MILLIS;
+    static final long DAY_IN_MILLIS = 24 * 60 * MINUTE_IN_MILLIS;
+
+    /**
+     * The time, System.currentTimeMillis on a device.
+     */
+    public interface Clock {
+        long currentTimeMillis();
+    }
+
+    private final Clock mClock;
+    private TimeZone mTimeZone;
+    private boolean mSecondsMode;
+    private long mForecastExpiry = Long.MAX_VALUE;
+
+    public TickScheduler(Clock clock, TimeZone timeZone) {
+        mClock = clock;
+        mTimeZone = timeZone;
+    }
+
+    public void setTimeZone(TimeZone timeZone) {
+        mTimeZone = timeZone;
+    }
+
+    /**
+     * Tick every second, for faces which show seconds.
+     */
+    public void setSecondsMode(boolean secondsMode) {
+        mSecondsMode = secondsMode;
+    }
+
+    /**
+     * @param expiry when the forecast shown stops being valid, Long.MAX_VALUE if never.
+     */
+    public void setForecastExpiry(long expiry) {
+        mForecastExpiry = expiry;
+    }
+
+    /**
+     * @return the next time after now at which the face changes.
+     */
+    public long nextDeadline() {
+        long now = mClock.currentTimeMillis();
+        long offset = mTimeZone.getOffset(now);
+        long local = now + offset;
+
+        long unit = mSecondsMode ? SECOND_IN_MILLIS : MINUTE_IN_MILLIS;
+        long deadline = nextBoundary(local, unit) - offset;
+        deadline = Math.min(deadline, nextBoundary(local, DAY_IN_MILLIS) - offset);
+        if (mForecastExpiry > now) {
+            deadline = Math.min(deadline, mForecastExpiry);
+        }
+        return deadline;
+    }
+
+    /**
+     * @return the milliseconds to wait until {@link #nextDeadline}, at least 1.
+     */
+    public long delayUntilNextTick() {
+        return Math.max(1, nextDeadline() - mClock.currentTimeMillis());
+    }
+
+    /**
+     * @return the start of the local day after the one a time is on.
+     */
+    public long nextMidnight(long millis) {
+        long offset = mTimeZone.getOffset(millis);
+        return nextBoundary(millis + offset, DAY_IN_MILLIS) - offset;
+    }
+
+    // The first multiple of unit after a time
+    private static long nextBoundary(long millis, long unit) {
+        long remainder = millis % unit;
+        if (remainder < 0) {
+            remainder += unit;
+        }
+        return millis - remainder + unit;
+    }
+}
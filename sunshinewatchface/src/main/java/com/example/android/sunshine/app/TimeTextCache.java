@@ -0,0 +1,110 @@
+package com.example.android.sunshine.app;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * The time and date strings of the watch face, rebuilt only when the minute or the day they
+ * show changes.  Hours and minutes come from tables built once, so a frame, or even a new
+ * minute, allocates nothing, and the date is formatted once a day.  Not thread safe.
+ */
+public class TimeTextCache {
+    private static final long MINUTE_IN_MILLIS = 60 * 1000;
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private static final String[] HOUR_TEXTS = new String[24];
+    private static final String[] MINUTE_TEXTS = new String[60];
+
+    static {
+        for (int i = 0; i < HOUR_TEXTS.length; i++) {
+            HOUR_TEXTS[i] = String.format(Locale.US, "%02d:", i);
+        }
+        for (int i = 0; i < MINUTE_TEXTS.length; i++) {
+            MINUTE_TEXTS[i] = String.format(Locale.US, "%02d", i);
+        }
+    }
+
+    private final SimpleDateFormat mDateFormat;
+    private TimeZone mTimeZone;
+
+    private long mMinute = Long.MIN_VALUE;
+    private int mDay = Integer.MIN_VALUE;
+    private String mHourText;
+    private String mMinuteText;
+    private String mDateText;
+
+    public TimeTextCache(String datePattern, Locale locale, TimeZone timeZone) {
+        mDateFormat = new SimpleDateFormat(datePattern, locale);
+        setTimeZone(timeZone);
+    }
+
+    /**
+     * Switch to another time zone, the next {@link #update} rebuilds every string.
+     */
+    public void setTimeZone(TimeZone timeZone) {
+        mTimeZone = timeZone;
+        mDateFormat.setTimeZone(timeZone);
+        mMinute = Long.MIN_VALUE;
+        mDay = Integer.MIN_VALUE;
+    }
+
+    public TimeZone getTimeZone() {
+        return mTimeZone;
+    }
+
+    /**
+     * Bring the strings up to a time.
+     *
+     * @return true if the minute changed since the last update, so the strings may have.
+     */
+    public boolean update(long millis) {
+        long minute = floorDiv(millis + mTimeZone.getOffset(millis), MINUTE_IN_MILLIS);
+        if (minute == mMinute) {
+            return false;
+        }
+        mMinute = minute;
+        int minuteOfDay = (int) (minute - floorDiv(minute, MINUTES_PER_DAY) * MINUTES_PER_DAY);
+        mHourText = HOUR_TEXTS[minuteOfDay / 60];
+        mMinuteText = MINUTE_TEXTS[minuteOfDay % 60];
+
+        int day = (int) floorDiv(minute, MINUTES_PER_DAY);
+        if (day != mDay) {
+            mDay = day;
+            mDateText = mDateFormat.format(new Date(millis));
+        }
+        return true;
+    }
+
+    public String getHourText() {
+        return mHourText;
+    }
+
+    public String getMinuteText() {
+        return mMinuteText;
+    }
+
+    public String getDateText() {
+        return mDateText;
+    }
+
+    /**
+     * @return the local minute of the last update, counted from 1970-01-01 00:00.
+     */
+    public long getMinute() {
+        return mMinute;
+    }
+
+    /**
+     * @return the local day of the last update, counted like WearForecast.localEpochDay.
+     */
+    public int getDay() {
+        return mDay;
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        return (x % y != 0 && (x < 0) != (y < 0)) ? q - 1 : q;
+    }
+}
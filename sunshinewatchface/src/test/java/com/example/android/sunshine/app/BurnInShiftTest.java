@@ -0,0 +1,38 @@
+package com.example.android.sunshine.app;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BurnInShiftTest {
+    private static final int STEPS = 2;
+    private static final int STEP_PIXELS = 3;
+
+    @Test
+    public void testVisitsEveryPosition() {
+        BurnInShift shift = new BurnInShift(STEPS, STEP_PIXELS);
+        Set<String> positions = new HashSet<>();
+        for (int minute = 0; minute < shift.getCycle(); minute++) {
+            positions.add(shift.getX(minute) + "," + shift.getY(minute));
+        }
+        assertEquals(25, positions.size());
+    }
+
+    @Test
+    public void testMovesOneStepAtATimeWithinBounds() {
+        BurnInShift shift = new BurnInShift(STEPS, STEP_PIXELS);
+        int max = STEPS * STEP_PIXELS;
+        for (long minute = -100; minute < 1000; minute++) {
+            int x = shift.getX(minute);
+            int y = shift.getY(minute);
+            assertTrue(Math.abs(x) <= max && Math.abs(y) <= max);
+            int dx = Math.abs(shift.getX(minute + 1) - x);
+            int dy = Math.abs(shift.getY(minute + 1) - y);
+            assertTrue("Jumped at minute " + minute, dx + dy <= STEP_PIXELS);
+        }
+    }
+}
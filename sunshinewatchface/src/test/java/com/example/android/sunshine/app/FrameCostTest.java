@@ -0,0 +1,109 @@
+package com.example.android.sunshine.app;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares what the text work of one interactive onDraw allocates, the way onDraw used to do
+ * it and through the render caches, over two hours of one frame a second across a midnight.
+ * Drawing itself needs a device, the rest of the frame is the same either way.
+ */
+public class FrameCostTest {
+    private static final long FRAME_MILLIS = 1000;
+    private static final int FRAMES = 2 * 60 * 60;
+    // 2016-07-14 23:00 UTC
+    private static final long START = 16997L * 24 * 60 * 60 * 1000 - 60 * 60 * 1000;
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    // Keeps the results alive so the JIT can't drop the work
+    private float mSink;
+    private int mMeasured;
+
+    private final TextWidthCache.Measurer mMeasurer = new TextWidthCache.Measurer() {
+        @Override
+        public float measureText(String text) {
+            mMeasured++;
+            return text.length() * 10f;
+        }
+    };
+
+    private void legacyFrame(long now) {
+        String hourString = String.format("%02d:", (now / 3600000) % 24);
+        String minuteString = String.format("%02d", (now / 60000) % 60);
+        SimpleDateFormat dateFormat = new SimpleDateFormat("EEE, MMM dd yyyy", Locale.US);
+        dateFormat.setTimeZone(UTC);
+        String dateString = dateFormat.format(now);
+        mSink += mMeasurer.measureText(hourString) + mMeasurer.measureText(":")
+                + mMeasurer.measureText(minuteString) + mMeasurer.measureText(dateString)
+                + mMeasurer.measureText("21\u00B0");
+    }
+
+    private void cachedFrame(TimeTextCache timeText, TextWidthCache widths, long now) {
+        timeText.update(now);
+        mSink += widths.measureText(timeText.getHourText()) + widths.measureText(":")
+                + widths.measureText(timeText.getMinuteText())
+                + widths.measureText(timeText.getDateText())
+                + widths.measureText("21\u00B0");
+    }
+
+    /**
+     * The HotSpot per thread counter Allocations reads in the sunshinecore tests.  This module
+     * only sees sunshinecore's main classes, not its tests, hence the copy.
+     */
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private long measureLegacy() {
+        long before = allocatedBytes();
+        for (int i = 0; i < FRAMES; i++) {
+            legacyFrame(START + i * FRAME_MILLIS);
+        }
+        return allocatedBytes() - before;
+    }
+
+    private long measureCached(TimeTextCache timeText, TextWidthCache widths) {
+        long before = allocatedBytes();
+        for (int i = 0; i < FRAMES; i++) {
+            cachedFrame(timeText, widths, START + i * FRAME_MILLIS);
+        }
+        return allocatedBytes() - before;
+    }
+
+    @Test
+    public void testAllocationsPerFrame() {
+        TimeTextCache timeText = new TimeTextCache("EEE, MMM dd yyyy", Locale.US, UTC);
+        TextWidthCache widths = new TextWidthCache(mMeasurer);
+
+        // The first pass fills the caches, like the first minutes on the watch
+        measureCached(timeText, widths);
+        // Two hours, sixty minutes, two dates, the colon and the temperature, measured once each
+        assertEquals(2 + 60 + 2 + 2, mMeasured);
+
+        // Warm up, so the numbers are of compiled code
+        for (int i = 0; i < 3; i++) {
+            measureLegacy();
+            measureCached(timeText, widths);
+        }
+        long legacy = measureLegacy();
+        mMeasured = 0;
+        long cached = measureCached(timeText, widths);
+
+        // Formatting every frame costs about four kilobytes at the time of writing
+        assertTrue("Uncached frames allocated " + legacy + " bytes",
+                legacy / (double) FRAMES > 1000);
+        // A new minute picks strings from tables, only a new day formats a date
+        assertTrue("Cached frames allocated " + cached + " bytes",
+                cached / (double) FRAMES < 1);
+        assertEquals("Every width came from the cache", 0, mMeasured);
+    }
+}
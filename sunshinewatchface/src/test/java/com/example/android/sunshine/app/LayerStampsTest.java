@@ -0,0 +1,69 @@
+package com.example.android.sunshine.app;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LayerStampsTest {
+    private static final int BACKGROUND = 0;
+    private static final int DAY = 1;
+    private static final int TIME = 2;
+
+    @Test
+    public void testOnlyChangedLayersAreRebuilt() {
+        LayerStamps layers = new LayerStamps(3);
+        assertTrue(layers.needsRebuild(TIME, 1));
+        assertFalse(layers.needsRebuild(TIME, 1));
+        assertTrue(layers.needsRebuild(TIME, 2));
+        assertTrue(layers.needsRebuild(DAY, 2));
+        assertFalse(layers.needsRebuild(DAY, 2));
+    }
+
+    @Test
+    public void testInvalidateAll() {
+        LayerStamps layers = new LayerStamps(3);
+        layers.needsRebuild(BACKGROUND, 0);
+        layers.needsRebuild(TIME, 7);
+        layers.invalidateAll();
+        assertTrue(layers.needsRebuild(BACKGROUND, 0));
+        assertTrue(layers.needsRebuild(TIME, 7));
+        assertEquals(2, layers.getRebuilds(TIME));
+    }
+
+    /**
+     * A day of interactive frames, one a second, stamped the way the Engine stamps them.
+     * Redrawing everything every frame meant three layers per frame.
+     */
+    @Test
+    public void testRebuildsPerDay() {
+        TimeZone utc = TimeZone.getTimeZone("UTC");
+        TimeTextCache timeText = new TimeTextCache("EEE, MMM dd yyyy", Locale.US, utc);
+        LayerStamps layers = new LayerStamps(3);
+        long start = 16997L * 24 * 60 * 60 * 1000;
+        int frames = 24 * 60 * 60;
+        int drawn = 0;
+        for (int i = 0; i < frames; i++) {
+            timeText.update(start + i * 1000L);
+            if (layers.needsRebuild(BACKGROUND, 0)) {
+                drawn++;
+            }
+            if (layers.needsRebuild(DAY, timeText.getDay())) {
+                drawn++;
+            }
+            if (layers.needsRebuild(TIME, timeText.getMinute())) {
+                drawn++;
+            }
+        }
+        assertEquals(1 + 1 + 24 * 60, drawn);
+        assertTrue("Layers drawn per frame " + drawn / (double) frames,
+                drawn / (double) frames < 0.02);
+        assertEquals(1, layers.getRebuilds(BACKGROUND));
+        assertEquals(1, layers.getRebuilds(DAY));
+        assertEquals(24 * 60, layers.getRebuilds(TIME));
+    }
+}
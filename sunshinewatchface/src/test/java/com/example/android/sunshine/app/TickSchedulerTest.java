@@ -0,0 +1,91 @@
+package com.example.android.sunshine.app;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+public class TickSchedulerTest {
+    private static final long SECOND = TickScheduler.SECOND_IN_MILLIS;
+    private static final long MINUTE = TickScheduler.MINUTE_IN_MILLIS;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = TickScheduler.DAY_IN_MILLIS;
+
+    // 2016-07-15 00:00 UTC
+    private static final long MIDNIGHT = 16997 * DAY;
+
+    private long mNow;
+    private TickScheduler mScheduler;
+
+    @Before
+    public void setUp() {
+        mScheduler = new TickScheduler(new TickScheduler.Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return mNow;
+            }
+        }, TimeZone.getTimeZone("UTC"));
+    }
+
+    @Test
+    public void testSleepsUntilNextMinute() {
+        mNow = MIDNIGHT + 10 * HOUR + 20 * SECOND + 250;
+        assertEquals(MIDNIGHT + 10 * HOUR + MINUTE, mScheduler.nextDeadline());
+        assertEquals(39 * SECOND + 750, mScheduler.delayUntilNextTick());
+    }
+
+    @Test
+    public void testOnTheBoundaryWaitsAFullMinute() {
+        mNow = MIDNIGHT + 10 * HOUR;
+        assertEquals(MINUTE, mScheduler.delayUntilNextTick());
+    }
+
+    @Test
+    public void testSecondsMode() {
+        mScheduler.setSecondsMode(true);
+        mNow = MIDNIGHT + 10 * HOUR + 20 * SECOND + 250;
+        assertEquals(750, mScheduler.delayUntilNextTick());
+    }
+
+    @Test
+    public void testForecastExpiryComesFirst() {
+        mNow = MIDNIGHT + 10 * HOUR;
+        mScheduler.setForecastExpiry(MIDNIGHT + 10 * HOUR + 5 * SECOND);
+        assertEquals(5 * SECOND, mScheduler.delayUntilNextTick());
+
+        // Once past, it's ignored
+        mNow = MIDNIGHT + 10 * HOUR + 10 * SECOND;
+        assertEquals(50 * SECOND, mScheduler.delayUntilNextTick());
+    }
+
+    @Test
+    public void testTicksForAWholeDayLandOnMinutes() {
+        mNow = MIDNIGHT + 123;
+        int ticks = 0;
+        while (mNow < MIDNIGHT + DAY) {
+            mNow = mScheduler.nextDeadline();
+            assertEquals(0, mNow % MINUTE);
+            ticks++;
+        }
+        assertEquals("Was 86400 ticks of a second", 24 * 60, ticks);
+    }
+
+    @Test
+    public void testHalfHourTimeZone() {
+        mScheduler.setTimeZone(TimeZone.getTimeZone("Asia/Kolkata"));
+        // 23:59:30 in India, UTC+5:30
+        mNow = MIDNIGHT + 18 * HOUR + 29 * MINUTE + 30 * SECOND;
+        assertEquals(MIDNIGHT + 18 * HOUR + 30 * MINUTE, mScheduler.nextDeadline());
+        assertEquals(MIDNIGHT + 18 * HOUR + 30 * MINUTE, mScheduler.nextMidnight(mNow));
+    }
+
+    @Test
+    public void testNextMidnight() {
+        mScheduler.setTimeZone(TimeZone.getTimeZone("America/Los_Angeles"));
+        // 2016-07-15 10:00 in Los Angeles, UTC-7 in summer
+        long morning = MIDNIGHT + 17 * HOUR;
+        assertEquals(MIDNIGHT + DAY + 7 * HOUR, mScheduler.nextMidnight(morning));
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.android.sunshine.app;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TimeTextCacheTest {
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final long MINUTE = 60 * 1000;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+
+    // 2016-07-15 00:00 UTC
+    private static final long MIDNIGHT = 16997 * DAY;
+
+    @Test
+    public void testFormatsTime() {
+        TimeTextCache cache = new TimeTextCache("EEE, MMM dd yyyy", Locale.US, UTC);
+        assertTrue(cache.update(MIDNIGHT + 9 * HOUR + 5 * MINUTE + 30 * 1000));
+        assertEquals("09:", cache.getHourText());
+        assertEquals("05", cache.getMinuteText());
+        assertEquals("Fri, Jul 15 2016", cache.getDateText());
+        assertEquals(16997, cache.getDay());
+    }
+
+    @Test
+    public void testOnlyRebuildsOnNewMinute() {
+        TimeTextCache cache = new TimeTextCache("EEE, MMM dd yyyy", Locale.US, UTC);
+        cache.update(MIDNIGHT + HOUR);
+        String date = cache.getDateText();
+        assertFalse(cache.update(MIDNIGHT + HOUR + 59 * 1000));
+        assertTrue(cache.update(MIDNIGHT + HOUR + MINUTE));
+        assertEquals("01", cache.getMinuteText());
+        assertSame("The date is formatted once a day", date, cache.getDateText());
+    }
+
+    @Test
+    public void testRollsOverAtLocalMidnight() {
+        TimeZone tokyo = TimeZone.getTimeZone("Asia/Tokyo");
+        TimeTextCache cache = new TimeTextCache("EEE, MMM dd yyyy", Locale.US, tokyo);
+        // 23:59 in Tokyo is 14:59 UTC
+        cache.update(MIDNIGHT + 14 * HOUR + 59 * MINUTE);
+        assertEquals("23:", cache.getHourText());
+        assertEquals("Fri, Jul 15 2016", cache.getDateText());
+        cache.update(MIDNIGHT + 15 * HOUR);
+        assertEquals("00:", cache.getHourText());
+        assertEquals("Sat, Jul 16 2016", cache.getDateText());
+        assertEquals(16998, cache.getDay());
+    }
+
+    @Test
+    public void testTimeZoneChangeRebuilds() {
+        TimeTextCache cache = new TimeTextCache("EEE, MMM dd yyyy", Locale.US, UTC);
+        cache.update(MIDNIGHT + 12 * HOUR);
+        cache.setTimeZone(TimeZone.getTimeZone("America/Los_Angeles"));
+        assertTrue(cache.update(MIDNIGHT + 12 * HOUR));
+        assertEquals("05:", cache.getHourText());
+    }
+
+    @Test
+    public void testBeforeEpoch() {
+        TimeTextCache cache = new TimeTextCache("EEE, MMM dd yyyy", Locale.US, UTC);
+        cache.update(-MINUTE);
+        assertEquals("23:", cache.getHourText());
+        assertEquals("59", cache.getMinuteText());
+        assertEquals(-1, cache.getDay());
+    }
+}